@@ -0,0 +1,585 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled.internal.codegen;
+
+import com.google.common.base.CaseFormat;
+import com.zeoflow.jx.file.ArrayTypeName;
+import com.zeoflow.jx.file.ClassName;
+import com.zeoflow.jx.file.CodeBlock;
+import com.zeoflow.jx.file.FieldSpec;
+import com.zeoflow.jx.file.MethodSpec;
+import com.zeoflow.jx.file.ParameterSpec;
+import com.zeoflow.jx.file.ParameterizedTypeName;
+import com.zeoflow.jx.file.TypeName;
+import com.zeoflow.parcelled.Parcelled;
+import com.zeoflow.parcelled.ParcelledColumnar;
+import com.zeoflow.parcelled.ParcelledEnum;
+import com.zeoflow.parcelled.ParcelledEnumId;
+import com.zeoflow.parcelled.internal.common.Visibility;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+
+import static javax.lang.model.element.Modifier.FINAL;
+import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.STATIC;
+
+/**
+ * Generates the typed codecs of the collection and nested object properties of a single
+ * <code>Parcelled_*</code> class.
+ * <p>
+ * Collections whose element types are known at compile time are written as their size followed
+ * by the elements, each one with the codec of its type, instead of going through
+ * <code>Parcel.writeValue</code> for every element. The loops that can not be delegated to the
+ * <code>Parcel</code> or to the runtime are generated by {@link ContainerCodecs}, shared by all
+ * the properties of the same type, and must be added to the generated class through
+ * {@link #methods()} and {@link #fields()}.
+ * <p>
+ * Nested {@link Parcelled} objects and objects of a final <code>Parcelable</code> class are
+ * inlined: they are written by calling their writer directly and read through their generated
+ * reader or <code>CREATOR</code>, without the class name written by
+ * <code>Parcel.writeParcelable</code> and the reflective <code>CREATOR</code> lookup of
+ * <code>Parcel.readParcelable</code>.
+ * <p>
+ * Enums are written by name unless a {@link ParcelledEnum} annotation selects the compact
+ * ordinal or stable id encoding.
+ * <p>
+ * Lists of a {@link ParcelledColumnar} class are written column by column by its generated
+ * <code>BATCH</code>.
+ */
+final class CollectionCodecs extends ContainerCodecs
+{
+
+    private static final ClassName PARCEL = ClassName.get("android.os", "Parcel");
+    private static final String PARCELABLE = "android.os.Parcelable";
+    private static final ClassName PARCELLED_LISTS = ClassName.get("com.zeoflow.parcelled", "ParcelledLists");
+
+    private final ErrorReporter errorReporter;
+    private final ClassName generatedClass;
+    private final String pkg;
+    private final Map<TypeName, FieldSpec> enumValues = new LinkedHashMap<>();
+    private FieldSpec classLoader;
+
+    CollectionCodecs(ProcessingEnvironment env, ErrorReporter errorReporter, ClassName generatedClass)
+    {
+        super(env, ParameterSpec.builder(PARCEL, "dest").build(), ParameterSpec.builder(PARCEL, "in").build(), true);
+        this.errorReporter = errorReporter;
+        this.generatedClass = generatedClass;
+        this.pkg = generatedClass.packageName();
+    }
+
+    /**
+     * @return the static fields used by the generated code so far, to be added to the generated class
+     */
+    List<FieldSpec> fields()
+    {
+        List<FieldSpec> fields = new ArrayList<>(enumValues.values());
+        if (classLoader != null)
+        {
+            fields.add(classLoader);
+        }
+        return fields;
+    }
+
+    /**
+     * Returns the static field caching the class loader handed to the reflective
+     * <code>Parcel</code> readers.
+     *
+     * @return <code>CLASS_LOADER</code> field of the generated class
+     */
+    FieldSpec classLoader()
+    {
+        if (classLoader == null)
+        {
+            classLoader = FieldSpec.builder(ClassLoader.class, "CLASS_LOADER", PRIVATE, STATIC, FINAL)
+                    .initializer("$T.class.getClassLoader()", generatedClass)
+                    .build();
+        }
+        return classLoader;
+    }
+
+    /**
+     * Returns whether a property of the given type is written inline: the type is either a
+     * reachable {@link Parcelled} class or a final <code>Parcelable</code> class with a public
+     * <code>CREATOR</code>.
+     *
+     * @param type property type
+     *
+     * @return true if {@link #writeInline} and {@link #readInline} can be used for the type
+     */
+    boolean isInlined(TypeMirror type)
+    {
+        Kind kind = kindOf(type);
+        return kind == Kind.PARCELLED || kind == Kind.PARCELABLE;
+    }
+
+    /**
+     * Returns whether the codec of the given type already encodes {@code null}, in which case no
+     * presence flag needs to be written for a <code>@Nullable</code> property.
+     *
+     * @param type     property type
+     * @param property property element
+     *
+     * @return true for the inlined, list, map and compact enum codecs
+     */
+    boolean isNullSafe(TypeMirror type, Element property)
+    {
+        if (kindOf(type) == Kind.ENUM)
+        {
+            return enumEncoding(type, property) != ParcelledEnum.Encoding.NAME;
+        }
+        return isInlined(type) || isSpecializedList(type) || isSpecializedMap(type);
+    }
+
+    /**
+     * Returns the encoding of an enum: the one selected on the property, if any, otherwise the one
+     * selected on the enum itself, otherwise {@link ParcelledEnum.Encoding#NAME}.
+     *
+     * @param type     enum type
+     * @param property property element, or {@code null} for collection elements
+     *
+     * @return enum encoding
+     */
+    ParcelledEnum.Encoding enumEncoding(TypeMirror type, Element property)
+    {
+        ParcelledEnum annotation = property == null ? null : property.getAnnotation(ParcelledEnum.class);
+        if (annotation == null)
+        {
+            annotation = types.asElement(type).getAnnotation(ParcelledEnum.class);
+        }
+        return annotation == null ? ParcelledEnum.Encoding.NAME : annotation.value();
+    }
+
+    /**
+     * Returns the expression writing the enum {@code value} with a compact encoding; {@code null}
+     * is written as {@code -1}.
+     */
+    CodeBlock writeEnum(TypeMirror type, ParcelledEnum.Encoding encoding, String value, ParameterSpec out)
+    {
+        if (encoding == ParcelledEnum.Encoding.ORDINAL)
+        {
+            return CodeBlock.of("$N.writeInt($N == null ? -1 : $N.ordinal())", out, value, value);
+        }
+        return CodeBlock.of("$N.writeInt($N($N))", out, enumIdWriter(type), value);
+    }
+
+    /**
+     * Returns the expression reading an enum written by {@link #writeEnum}.
+     */
+    CodeBlock readEnum(TypeMirror type, ParcelledEnum.Encoding encoding)
+    {
+        if (encoding == ParcelledEnum.Encoding.ORDINAL)
+        {
+            return CodeBlock.of("$N(in)", enumOrdinalReader(type));
+        }
+        return CodeBlock.of("$N(in)", enumIdReader(type));
+    }
+
+    private MethodSpec enumOrdinalReader(TypeMirror type)
+    {
+        TypeName typeName = TypeName.get(type);
+        TypeName key = ParameterizedTypeName.get(ClassName.get(ParcelledEnum.class), typeName);
+        MethodSpec method = readMethods.get(key);
+        if (method != null)
+        {
+            return method;
+        }
+        FieldSpec values = enumValues.get(typeName);
+        if (values == null)
+        {
+            // values() clones the array on every call
+            String name = nameAllocator.newName(upperName(typeName) + "_VALUES");
+            values = FieldSpec.builder(ArrayTypeName.of(typeName), name, PRIVATE, STATIC, FINAL)
+                    .initializer("$T.values()", typeName)
+                    .build();
+            enumValues.put(typeName, values);
+        }
+        method = MethodSpec.methodBuilder(nameAllocator.newName("read" + simpleName(typeName) + "Ordinal"))
+                .addModifiers(PRIVATE, STATIC)
+                .returns(typeName)
+                .addParameter(PARCEL, "in")
+                .addStatement("int ordinal = in.readInt()")
+                // -1 or a constant appended by a newer version of the enum
+                .addStatement("return ordinal < 0 || ordinal >= $N.length ? null : $N[ordinal]", values, values)
+                .build();
+        readMethods.put(key, method);
+        return method;
+    }
+
+    private MethodSpec enumIdWriter(TypeMirror type)
+    {
+        TypeName typeName = TypeName.get(type);
+        TypeName key = ParameterizedTypeName.get(ClassName.get(ParcelledEnumId.class), typeName);
+        MethodSpec method = writeMethods.get(key);
+        if (method != null)
+        {
+            return method;
+        }
+        CodeBlock.Builder block = CodeBlock.builder();
+        block.beginControlFlow("if (value == null)");
+        block.addStatement("return -1");
+        block.endControlFlow();
+        block.beginControlFlow("switch (value)");
+        for (Map.Entry<String, Integer> constant : enumIds(type).entrySet())
+        {
+            block.addStatement("case $N: return $L", constant.getKey(), constant.getValue());
+        }
+        block.addStatement("default: throw new $T(value.name())", IllegalArgumentException.class);
+        block.endControlFlow();
+
+        method = MethodSpec.methodBuilder(nameAllocator.newName("idOf" + simpleName(typeName)))
+                .addModifiers(PRIVATE, STATIC)
+                .returns(int.class)
+                .addParameter(typeName, "value")
+                .addCode(block.build())
+                .build();
+        writeMethods.put(key, method);
+        return method;
+    }
+
+    private MethodSpec enumIdReader(TypeMirror type)
+    {
+        TypeName typeName = TypeName.get(type);
+        TypeName key = ParameterizedTypeName.get(ClassName.get(ParcelledEnumId.class), typeName);
+        MethodSpec method = readMethods.get(key);
+        if (method != null)
+        {
+            return method;
+        }
+        CodeBlock.Builder block = CodeBlock.builder();
+        block.beginControlFlow("switch (in.readInt())");
+        for (Map.Entry<String, Integer> constant : enumIds(type).entrySet())
+        {
+            block.addStatement("case $L: return $T.$N", constant.getValue(), typeName, constant.getKey());
+        }
+        // -1 or an id declared by a newer version of the enum
+        block.addStatement("default: return null");
+        block.endControlFlow();
+
+        method = MethodSpec.methodBuilder(nameAllocator.newName("read" + simpleName(typeName) + "Id"))
+                .addModifiers(PRIVATE, STATIC)
+                .returns(typeName)
+                .addParameter(PARCEL, "in")
+                .addCode(block.build())
+                .build();
+        readMethods.put(key, method);
+        return method;
+    }
+
+    /**
+     * Collects the {@link ParcelledEnumId} of every constant of the given enum, erroring out if one
+     * is missing, negative or duplicated.
+     */
+    private Map<String, Integer> enumIds(TypeMirror type)
+    {
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        Map<Integer, String> constants = new HashMap<>();
+        for (Element constant : types.asElement(type).getEnclosedElements())
+        {
+            if (constant.getKind() != ElementKind.ENUM_CONSTANT)
+            {
+                continue;
+            }
+            ParcelledEnumId id = constant.getAnnotation(ParcelledEnumId.class);
+            if (id == null || id.value() < 0)
+            {
+                errorReporter.abortWithError("@ParcelledEnum(ID) requires a non-negative @ParcelledEnumId on every constant", constant);
+            }
+            if (constants.containsKey(id.value()))
+            {
+                errorReporter.abortWithError("@ParcelledEnumId(" + id.value() + ") is already used by " + constants.get(id.value()), constant);
+            }
+            constants.put(id.value(), constant.getSimpleName().toString());
+            ids.put(constant.getSimpleName().toString(), id.value());
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the statements writing the nested object {@code value}; {@code null} is allowed.
+     */
+    CodeBlock writeInline(TypeMirror type, String value, ParameterSpec out, ParameterSpec flags)
+    {
+        CodeBlock.Builder block = CodeBlock.builder();
+        writeElement(block, type, value, out, flags);
+        return block.build();
+    }
+
+    /**
+     * Returns the expression reading a nested object of the given type from {@code in}.
+     */
+    CodeBlock readInline(TypeMirror type)
+    {
+        if (kindOf(type) == Kind.PARCELLED)
+        {
+            return CodeBlock.of("$T.readValue(in)", generatedClassOf(type));
+        }
+        TypeName typeName = TypeName.get(type);
+        return CodeBlock.of("in.readInt() == 0 ? ($T) $T.CREATOR.createFromParcel(in) : null", typeName, typeName);
+    }
+
+    /**
+     * Returns whether the given <code>List</code> type has a typed codec: its declared type must be
+     * satisfied by an <code>ArrayList</code> and its element type must be a String, a boxed
+     * primitive, an enum or an inlined class (see {@link #isInlined(TypeMirror)}).
+     *
+     * @param type property type
+     *
+     * @return true if {@link #writeList} and {@link #readList} can be used for the type
+     */
+    boolean isSpecializedList(TypeMirror type)
+    {
+        return listElementType(type) != null;
+    }
+
+    /**
+     * Returns the expression writing the list {@code value} of the given type.
+     */
+    CodeBlock writeList(TypeMirror type, String value, ParameterSpec out, ParameterSpec flags)
+    {
+        TypeMirror elementType = listElementType(type);
+        TypeName elementName = TypeName.get(elementType);
+        switch (kindOf(elementType))
+        {
+            case STRING:
+                return CodeBlock.of("$N.writeStringList($N)", out, value);
+            case BOXED:
+                return CodeBlock.of("$T.write$LList($N, $N)", PARCELLED_LISTS, simpleName(elementName), value, out);
+            case PARCELLED:
+                if (isColumnar(elementType))
+                {
+                    return CodeBlock.of("$T.BATCH.write($N, $N, $N)", generatedClassOf(elementType), value, out, flags);
+                }
+                // otherwise one element after the other
+                return callListWriter(elementType, value, out, flags);
+            default:
+                return callListWriter(elementType, value, out, flags);
+        }
+    }
+
+    /**
+     * Returns the expression reading a list of the given type from {@code in}.
+     */
+    CodeBlock readList(TypeMirror type)
+    {
+        TypeMirror elementType = listElementType(type);
+        TypeName elementName = TypeName.get(elementType);
+        switch (kindOf(elementType))
+        {
+            case STRING:
+                return CodeBlock.of("in.createStringArrayList()");
+            case BOXED:
+                return CodeBlock.of("$T.read$LList(in)", PARCELLED_LISTS, simpleName(elementName));
+            case PARCELLED:
+                if (isColumnar(elementType))
+                {
+                    return CodeBlock.of("$T.BATCH.read(in)", generatedClassOf(elementType));
+                }
+                // otherwise one element after the other
+                return CodeBlock.of("$N(in)", listReader(elementType));
+            default:
+                return CodeBlock.of("$N(in)", listReader(elementType));
+        }
+    }
+
+    /**
+     * Returns whether the lists of the given {@link Parcelled} class are written column by column
+     * by its {@link ParcelledColumnar} codec.
+     */
+    private boolean isColumnar(TypeMirror type)
+    {
+        return types.asElement(type).getAnnotation(ParcelledColumnar.class) != null;
+    }
+
+    /**
+     * Returns whether the given <code>Map</code> type has a typed codec: its declared type must be
+     * satisfied by a <code>HashMap</code> and both its key and value types must be a String, a
+     * boxed primitive, an enum or an inlined class (see {@link #isInlined(TypeMirror)}).
+     *
+     * @param type property type
+     *
+     * @return true if {@link #writeMap} and {@link #readMap} can be used for the type
+     */
+    boolean isSpecializedMap(TypeMirror type)
+    {
+        return mapEntryTypes(type) != null;
+    }
+
+    /**
+     * Returns the expression writing the map {@code value} of the given type.
+     */
+    CodeBlock writeMap(TypeMirror type, String value, ParameterSpec out, ParameterSpec flags)
+    {
+        List<? extends TypeMirror> entryTypes = mapEntryTypes(type);
+        return callMapWriter(entryTypes.get(0), entryTypes.get(1), value, out, flags);
+    }
+
+    /**
+     * Returns the expression reading a map of the given type from {@code in}.
+     */
+    CodeBlock readMap(TypeMirror type)
+    {
+        List<? extends TypeMirror> entryTypes = mapEntryTypes(type);
+        return CodeBlock.of("$N(in)", mapReader(entryTypes.get(0), entryTypes.get(1)));
+    }
+
+    @Override
+    boolean isElement(TypeMirror type)
+    {
+        return kindOf(type) != null;
+    }
+
+    @Override
+    void writeElement(CodeBlock.Builder block, TypeMirror type, String value, ParameterSpec out, ParameterSpec flags)
+    {
+        TypeName typeName = TypeName.get(type);
+        switch (kindOf(type))
+        {
+            case STRING:
+                block.addStatement("$N.writeString($N)", out, value);
+                break;
+            case BOXED:
+                writeBoxed(block, typeName, value, out);
+                break;
+            case ENUM:
+                ParcelledEnum.Encoding encoding = enumEncoding(type, null);
+                if (encoding == ParcelledEnum.Encoding.NAME)
+                    writeEnumName(block, value, out);
+                else
+                    block.addStatement("$L", writeEnum(type, encoding, value, out));
+                break;
+            case PARCELLED:
+                block.addStatement("$T.writeValue($N, $N, $N)", generatedClassOf(type), value, out, flags);
+                break;
+            case PARCELABLE:
+                block.beginControlFlow("if ($N == null)", value);
+                block.addStatement("$N.writeInt(1)", out);
+                block.nextControlFlow("else");
+                block.addStatement("$N.writeInt(0)", out);
+                block.addStatement("$N.writeToParcel($N, $N)", value, out, flags);
+                block.endControlFlow();
+                break;
+        }
+    }
+
+    @Override
+    CodeBlock readElement(TypeMirror type)
+    {
+        TypeName typeName = TypeName.get(type);
+        switch (kindOf(type))
+        {
+            case STRING:
+                return CodeBlock.of("in.readString()");
+            case BOXED:
+                return readBoxed(typeName);
+            case ENUM:
+                ParcelledEnum.Encoding encoding = enumEncoding(type, null);
+                if (encoding == ParcelledEnum.Encoding.NAME)
+                {
+                    return CodeBlock.of("$N(in)", enumNameReader(type));
+                }
+                return readEnum(type, encoding);
+            default:
+                return readInline(type);
+        }
+    }
+
+    private Kind kindOf(TypeMirror type)
+    {
+        if (type.getKind() != TypeKind.DECLARED)
+        {
+            return null;
+        }
+        TypeName typeName = TypeName.get(type);
+        if (typeName.equals(STRING))
+        {
+            return Kind.STRING;
+        }
+        if (typeName.isBoxedPrimitive())
+        {
+            return Kind.BOXED;
+        }
+        TypeElement element = (TypeElement) types.asElement(type);
+        if (element.getKind() == ElementKind.ENUM)
+        {
+            return Kind.ENUM;
+        }
+        if (element.getKind() != ElementKind.CLASS
+                || !element.getTypeParameters().isEmpty()
+                || !isReachable(element))
+        {
+            return null;
+        }
+        if (element.getAnnotation(Parcelled.class) != null)
+        {
+            return Kind.PARCELLED;
+        }
+        if (element.getModifiers().contains(Modifier.FINAL)
+                && types.isAssignable(type, elements.getTypeElement(PARCELABLE).asType())
+                && hasCreator(element))
+        {
+            return Kind.PARCELABLE;
+        }
+        return null;
+    }
+
+    private boolean isReachable(TypeElement element)
+    {
+        return pkg.equals(TypeUtil.packageNameOf(element))
+                || Visibility.effectiveVisibilityOfElement(element) == Visibility.PUBLIC;
+    }
+
+    private static boolean hasCreator(TypeElement element)
+    {
+        for (VariableElement field : ElementFilter.fieldsIn(element.getEnclosedElements()))
+        {
+            if (field.getSimpleName().contentEquals("CREATOR")
+                    && field.getModifiers().contains(Modifier.PUBLIC)
+                    && field.getModifiers().contains(STATIC))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String upperName(TypeName typeName)
+    {
+        return CaseFormat.UPPER_CAMEL.to(CaseFormat.UPPER_UNDERSCORE, simpleName(typeName));
+    }
+
+    private enum Kind
+    {
+        STRING,
+        BOXED,
+        ENUM,
+        PARCELLED,
+        PARCELABLE
+    }
+
+}
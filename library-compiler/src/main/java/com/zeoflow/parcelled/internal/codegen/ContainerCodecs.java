@@ -0,0 +1,433 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled.internal.codegen;
+
+import com.zeoflow.jx.file.ClassName;
+import com.zeoflow.jx.file.CodeBlock;
+import com.zeoflow.jx.file.MethodSpec;
+import com.zeoflow.jx.file.NameAllocator;
+import com.zeoflow.jx.file.ParameterSpec;
+import com.zeoflow.jx.file.ParameterizedTypeName;
+import com.zeoflow.jx.file.TypeName;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.STATIC;
+
+/**
+ * Generates the loops over the lists and maps of a single <code>Parcelled_*</code> class, as
+ * private static methods shared by all the properties of the same type, which must be added to
+ * the generated class through {@link #methods()}.
+ * <p>
+ * A list or map is written as its size ({@code -1} for {@code null}) followed by its elements,
+ * each one written by {@link #writeElement} and read by {@link #readElement} of the subclass; the
+ * boxed primitives and the enums written by name are encoded here, the same for every target. The
+ * target is a <code>Parcel</code> for {@link CollectionCodecs} and a
+ * <code>ParcelledSink</code>/<code>ParcelledSource</code> for {@link PortableCodecs}.
+ */
+abstract class ContainerCodecs
+{
+
+    static final ClassName LIST = ClassName.get("java.util", "List");
+    static final ClassName ARRAY_LIST = ClassName.get("java.util", "ArrayList");
+    static final ClassName MAP = ClassName.get("java.util", "Map");
+    static final ClassName HASH_MAP = ClassName.get("java.util", "HashMap");
+    static final TypeName STRING = ClassName.get("java.lang", "String");
+
+    final Types types;
+    final Elements elements;
+    final NameAllocator nameAllocator = new NameAllocator();
+    final Map<TypeName, MethodSpec> writeMethods = new LinkedHashMap<>();
+    final Map<TypeName, MethodSpec> readMethods = new LinkedHashMap<>();
+    final ParameterSpec out;
+    final ParameterSpec in;
+    private final boolean flags;
+
+    /**
+     * @param out   target written to, as named in the generated methods
+     * @param in    source read from, as named in the generated methods
+     * @param flags whether the writers take the <code>Parcelable</code> flags
+     */
+    ContainerCodecs(ProcessingEnvironment env, ParameterSpec out, ParameterSpec in, boolean flags)
+    {
+        this.types = env.getTypeUtils();
+        this.elements = env.getElementUtils();
+        this.out = out;
+        this.in = in;
+        this.flags = flags;
+    }
+
+    /**
+     * Returns whether the given type can be an element of a list or a key or value of a map.
+     */
+    abstract boolean isElement(TypeMirror type);
+
+    /**
+     * Adds the statements writing the single element {@code value}; {@code null} is allowed.
+     *
+     * @param flags the <code>Parcelable</code> flags, {@code null} if the target has none
+     */
+    abstract void writeElement(CodeBlock.Builder block, TypeMirror type, String value, ParameterSpec out,
+            ParameterSpec flags);
+
+    /**
+     * Returns the expression reading a single element of the given type.
+     */
+    abstract CodeBlock readElement(TypeMirror type);
+
+    /**
+     * @return the helper methods generated so far, to be added to the generated class
+     */
+    List<MethodSpec> methods()
+    {
+        List<MethodSpec> methods = new ArrayList<>(writeMethods.values());
+        methods.addAll(readMethods.values());
+        return methods;
+    }
+
+    /**
+     * Returns the element type of a list whose declared type is satisfied by an
+     * <code>ArrayList</code>, {@code null} if the type is not such a list of elements.
+     */
+    final TypeMirror listElementType(TypeMirror type)
+    {
+        if (type.getKind() != TypeKind.DECLARED)
+        {
+            return null;
+        }
+        DeclaredType declaredType = (DeclaredType) type;
+        if (declaredType.getTypeArguments().size() != 1)
+        {
+            return null;
+        }
+        TypeMirror arrayList = types.erasure(elements.getTypeElement(ARRAY_LIST.toString()).asType());
+        if (!types.isAssignable(arrayList, types.erasure(type)))
+        {
+            return null;
+        }
+        TypeMirror elementType = declaredType.getTypeArguments().get(0);
+        return isElement(elementType) ? elementType : null;
+    }
+
+    /**
+     * Returns the key and value types of a map whose declared type is satisfied by a
+     * <code>HashMap</code>, {@code null} if the type is not such a map of elements.
+     */
+    final List<? extends TypeMirror> mapEntryTypes(TypeMirror type)
+    {
+        if (type.getKind() != TypeKind.DECLARED)
+        {
+            return null;
+        }
+        DeclaredType declaredType = (DeclaredType) type;
+        if (declaredType.getTypeArguments().size() != 2)
+        {
+            return null;
+        }
+        TypeMirror hashMap = types.erasure(elements.getTypeElement(HASH_MAP.toString()).asType());
+        if (!types.isAssignable(hashMap, types.erasure(type)))
+        {
+            return null;
+        }
+        List<? extends TypeMirror> entryTypes = declaredType.getTypeArguments();
+        if (!isElement(entryTypes.get(0)) || !isElement(entryTypes.get(1)))
+        {
+            return null;
+        }
+        return entryTypes;
+    }
+
+    /**
+     * Returns the expression writing the list {@code value} with {@link #listWriter}.
+     */
+    final CodeBlock callListWriter(TypeMirror elementType, String value, ParameterSpec out, ParameterSpec flags)
+    {
+        return call(listWriter(elementType), value, out, flags);
+    }
+
+    /**
+     * Returns the expression writing the map {@code value} with {@link #mapWriter}.
+     */
+    final CodeBlock callMapWriter(TypeMirror keyType, TypeMirror valueType, String value, ParameterSpec out,
+            ParameterSpec flags)
+    {
+        return call(mapWriter(keyType, valueType), value, out, flags);
+    }
+
+    private CodeBlock call(MethodSpec writer, String value, ParameterSpec out, ParameterSpec flags)
+    {
+        return this.flags
+                ? CodeBlock.of("$N($N, $N, $N)", writer, value, out, flags)
+                : CodeBlock.of("$N($N, $N)", writer, value, out);
+    }
+
+    final MethodSpec listWriter(TypeMirror elementType)
+    {
+        TypeName elementName = TypeName.get(elementType);
+        TypeName listName = ParameterizedTypeName.get(LIST, elementName);
+        MethodSpec method = writeMethods.get(listName);
+        if (method != null)
+        {
+            return method;
+        }
+        ParameterSpec value = ParameterSpec.builder(listName, "value").build();
+        ParameterSpec flags = flagsParameter();
+
+        CodeBlock.Builder block = CodeBlock.builder();
+        block.beginControlFlow("if ($N == null)", value);
+        block.addStatement("$N.writeInt(-1)", out);
+        block.addStatement("return");
+        block.endControlFlow();
+        block.addStatement("$N.writeInt($N.size())", out, value);
+        block.beginControlFlow("for ($T element : $N)", elementName, value);
+        writeElement(block, elementType, "element", out, flags);
+        block.endControlFlow();
+
+        method = writer("writeListOf" + simpleName(elementName), value, flags)
+                .addCode(block.build())
+                .build();
+        writeMethods.put(listName, method);
+        return method;
+    }
+
+    final MethodSpec listReader(TypeMirror elementType)
+    {
+        TypeName elementName = TypeName.get(elementType);
+        MethodSpec method = readMethods.get(ParameterizedTypeName.get(LIST, elementName));
+        if (method != null)
+        {
+            return method;
+        }
+        TypeName listName = ParameterizedTypeName.get(ARRAY_LIST, elementName);
+
+        CodeBlock.Builder block = CodeBlock.builder();
+        block.addStatement("int size = $N.readInt()", in);
+        block.beginControlFlow("if (size < 0)");
+        block.addStatement("return null");
+        block.endControlFlow();
+        block.addStatement("$T value = new $T<>(size)", listName, ARRAY_LIST);
+        block.beginControlFlow("for (int i = 0; i < size; i++)");
+        block.addStatement("$T element = $L", elementName, readElement(elementType));
+        block.addStatement("value.add(element)");
+        block.endControlFlow();
+        block.addStatement("return value");
+
+        method = reader("readListOf" + simpleName(elementName), listName)
+                .addCode(block.build())
+                .build();
+        readMethods.put(ParameterizedTypeName.get(LIST, elementName), method);
+        return method;
+    }
+
+    final MethodSpec mapWriter(TypeMirror keyType, TypeMirror valueType)
+    {
+        TypeName keyName = TypeName.get(keyType);
+        TypeName valueName = TypeName.get(valueType);
+        TypeName mapName = ParameterizedTypeName.get(MAP, keyName, valueName);
+        MethodSpec method = writeMethods.get(mapName);
+        if (method != null)
+        {
+            return method;
+        }
+        ParameterSpec value = ParameterSpec.builder(mapName, "value").build();
+        ParameterSpec flags = flagsParameter();
+
+        CodeBlock.Builder block = CodeBlock.builder();
+        block.beginControlFlow("if ($N == null)", value);
+        block.addStatement("$N.writeInt(-1)", out);
+        block.addStatement("return");
+        block.endControlFlow();
+        block.addStatement("$N.writeInt($N.size())", out, value);
+        block.beginControlFlow("for ($T entry : $N.entrySet())",
+                ParameterizedTypeName.get(MAP.nestedClass("Entry"), keyName, valueName), value);
+        block.addStatement("$T key = entry.getKey()", keyName);
+        writeElement(block, keyType, "key", out, flags);
+        block.addStatement("$T element = entry.getValue()", valueName);
+        writeElement(block, valueType, "element", out, flags);
+        block.endControlFlow();
+
+        method = writer("writeMapOf" + simpleName(keyName) + "To" + simpleName(valueName), value, flags)
+                .addCode(block.build())
+                .build();
+        writeMethods.put(mapName, method);
+        return method;
+    }
+
+    final MethodSpec mapReader(TypeMirror keyType, TypeMirror valueType)
+    {
+        TypeName keyName = TypeName.get(keyType);
+        TypeName valueName = TypeName.get(valueType);
+        MethodSpec method = readMethods.get(ParameterizedTypeName.get(MAP, keyName, valueName));
+        if (method != null)
+        {
+            return method;
+        }
+        TypeName mapName = ParameterizedTypeName.get(HASH_MAP, keyName, valueName);
+
+        CodeBlock.Builder block = CodeBlock.builder();
+        block.addStatement("int size = $N.readInt()", in);
+        block.beginControlFlow("if (size < 0)");
+        block.addStatement("return null");
+        block.endControlFlow();
+        // sized so that the decoded entries never trigger a rehash
+        block.addStatement("$T value = new $T<>(size < 3 ? size + 1 : (int) (size / 0.75f + 1.0f))", mapName, HASH_MAP);
+        block.beginControlFlow("for (int i = 0; i < size; i++)");
+        block.addStatement("$T key = $L", keyName, readElement(keyType));
+        block.addStatement("$T element = $L", valueName, readElement(valueType));
+        block.addStatement("value.put(key, element)");
+        block.endControlFlow();
+        block.addStatement("return value");
+
+        method = reader("readMapOf" + simpleName(keyName) + "To" + simpleName(valueName), mapName)
+                .addCode(block.build())
+                .build();
+        readMethods.put(ParameterizedTypeName.get(MAP, keyName, valueName), method);
+        return method;
+    }
+
+    /**
+     * Returns the expression writing the primitive {@code value} of the given type.
+     */
+    final CodeBlock writePrimitive(TypeName type, String value, ParameterSpec out)
+    {
+        if (type.equals(TypeName.LONG))
+            return CodeBlock.of("$N.writeLong($N)", out, value);
+        else if (type.equals(TypeName.FLOAT))
+            return CodeBlock.of("$N.writeFloat($N)", out, value);
+        else if (type.equals(TypeName.DOUBLE))
+            return CodeBlock.of("$N.writeDouble($N)", out, value);
+        else if (type.equals(TypeName.BOOLEAN))
+            return CodeBlock.of("$N.writeInt($N ? 1 : 0)", out, value);
+        return CodeBlock.of("$N.writeInt($N)", out, value);
+    }
+
+    /**
+     * Returns the expression reading a primitive of the given type.
+     */
+    final CodeBlock readPrimitive(TypeName type)
+    {
+        if (type.equals(TypeName.LONG))
+            return CodeBlock.of("$N.readLong()", in);
+        else if (type.equals(TypeName.FLOAT))
+            return CodeBlock.of("$N.readFloat()", in);
+        else if (type.equals(TypeName.DOUBLE))
+            return CodeBlock.of("$N.readDouble()", in);
+        else if (type.equals(TypeName.BOOLEAN))
+            return CodeBlock.of("$N.readInt() != 0", in);
+        else if (type.equals(TypeName.INT))
+            return CodeBlock.of("$N.readInt()", in);
+        return CodeBlock.of("($T) $N.readInt()", type, in);
+    }
+
+    /**
+     * Adds the statements writing a boxed primitive as a presence flag, {@code 0} when present,
+     * followed by its value.
+     */
+    final void writeBoxed(CodeBlock.Builder block, TypeName type, String value, ParameterSpec out)
+    {
+        block.beginControlFlow("if ($N == null)", value);
+        block.addStatement("$N.writeInt(1)", out);
+        block.nextControlFlow("else");
+        block.addStatement("$N.writeInt(0)", out);
+        block.addStatement("$L", writePrimitive(type.unbox(), value, out));
+        block.endControlFlow();
+    }
+
+    final CodeBlock readBoxed(TypeName type)
+    {
+        return CodeBlock.of("$N.readInt() == 0 ? $L : null", in, readPrimitive(type.unbox()));
+    }
+
+    /**
+     * Adds the statement writing an enum by the name of its constant.
+     */
+    final void writeEnumName(CodeBlock.Builder block, String value, ParameterSpec out)
+    {
+        block.addStatement("$N.writeString($N == null ? null : $N.name())", out, value, value);
+    }
+
+    /**
+     * Returns the method reading an enum written by {@link #writeEnumName}.
+     */
+    final MethodSpec enumNameReader(TypeMirror type)
+    {
+        TypeName typeName = TypeName.get(type);
+        MethodSpec method = readMethods.get(typeName);
+        if (method != null)
+        {
+            return method;
+        }
+        method = MethodSpec.methodBuilder(nameAllocator.newName("read" + simpleName(typeName)))
+                .addModifiers(PRIVATE, STATIC)
+                .returns(typeName)
+                .addParameter(in)
+                .addStatement("$T name = $N.readString()", STRING, in)
+                .addStatement("return name == null ? null : $T.valueOf(name)", typeName)
+                .build();
+        readMethods.put(typeName, method);
+        return method;
+    }
+
+    final ClassName generatedClassOf(TypeMirror type)
+    {
+        TypeElement element = (TypeElement) types.asElement(type);
+        String generated = TypeUtil.generatedClassName(element, "Parcelled_");
+        return ClassName.get(TypeUtil.packageNameOf(element), TypeUtil.simpleNameOf(generated));
+    }
+
+    static String simpleName(TypeName typeName)
+    {
+        return ((ClassName) typeName).simpleName();
+    }
+
+    private ParameterSpec flagsParameter()
+    {
+        return flags ? ParameterSpec.builder(int.class, "flags").build() : null;
+    }
+
+    private MethodSpec.Builder writer(String name, ParameterSpec value, ParameterSpec flags)
+    {
+        MethodSpec.Builder builder = MethodSpec.methodBuilder(nameAllocator.newName(name))
+                .addModifiers(PRIVATE, STATIC)
+                .addParameter(value)
+                .addParameter(out);
+        if (flags != null)
+        {
+            builder.addParameter(flags);
+        }
+        return builder;
+    }
+
+    private MethodSpec.Builder reader(String name, TypeName returns)
+    {
+        return MethodSpec.methodBuilder(nameAllocator.newName(name))
+                .addModifiers(PRIVATE, STATIC)
+                .returns(returns)
+                .addParameter(in);
+    }
+
+}
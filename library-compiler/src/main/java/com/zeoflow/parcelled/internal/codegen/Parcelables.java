@@ -19,11 +19,15 @@ import com.zeoflow.jx.file.ArrayTypeName;
 import com.zeoflow.jx.file.ClassName;
 import com.zeoflow.jx.file.CodeBlock;
 import com.zeoflow.jx.file.FieldSpec;
+import com.zeoflow.jx.file.NameAllocator;
 import com.zeoflow.jx.file.ParameterSpec;
 import com.zeoflow.jx.file.ParameterizedTypeName;
 import com.zeoflow.jx.file.TypeName;
+import com.zeoflow.parcelled.ParcelledEnum;
 
+import java.util.List;
 import java.util.Set;
+import java.util.function.Function;
 
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.TypeElement;
@@ -54,6 +58,7 @@ class Parcelables
     private static final TypeName PERSISTABLE_BUNDLE = ClassName.get("android.os", "PersistableBundle");
     private static final TypeName SIZE = ClassName.get("android.util", "Size");
     private static final TypeName SIZE_F = ClassName.get("android.util", "SizeF");
+    private static final TypeName DATE = ClassName.get("java.util", "Date");
     private static final TypeName TEXT_UTILS = ClassName.get("android.text", "TextUtils");
     private static final TypeName ENUM = ClassName.get(Enum.class);
 
@@ -67,20 +72,64 @@ class Parcelables
     private static final TypeName PARCELABLE_ARRAY = ArrayTypeName.of(PARCELABLE);
     private static final TypeName OBJECT_ARRAY = ArrayTypeName.of(TypeName.OBJECT);
 
+    // Varint codecs
+    private static final ClassName VARINT_WRITER = ClassName.get("com.zeoflow.parcelled", "ParcelledVarintWriter");
+    private static final ClassName VARINT_READER = ClassName.get("com.zeoflow.parcelled", "ParcelledVarintReader");
+    static final String VARINTS = "varints";
+
+    // Session shared by the objects of a parcel
+    static final ClassName SESSION = ClassName.get("com.zeoflow.parcelled", "ParcelledSession");
+    static final ClassName SECTIONS = ClassName.get("com.zeoflow.parcelled", "ParcelledSections");
+    // Arrays reused by readFrom()
+    private static final ClassName ARRAYS = ClassName.get("com.zeoflow.parcelled", "ParcelledArrays");
+    // Codec of the Date properties
+    private static final ClassName DATES = ClassName.get("com.zeoflow.parcelled", "ParcelledDates");
+    // Codecs of the compressed properties
+    private static final ClassName COMPRESSION = ClassName.get("com.zeoflow.parcelled", "ParcelledCompression");
+    private static final ClassName COMPRESSION_CODEC = ClassName.get("com.zeoflow.parcelled", "ParcelledCompressed", "Codec");
+    // Size estimates
+    static final ClassName SIZES = ClassName.get("com.zeoflow.parcelled", "ParcelledSizes");
+    // Nested class holding the type adapters
+    static final String ADAPTER_HOLDER = "AdapterHolder";
+
     private static final Set<TypeName> VALID_TYPES = ImmutableSet.of(STRING, MAP, LIST, BOOLEAN_ARRAY,
             BYTE_ARRAY, CHAR_ARRAY, INT_ARRAY, LONG_ARRAY, STRING_ARRAY, SPARSE_ARRAY, SPARSE_BOOLEAN_ARRAY,
             BUNDLE, PARCELABLE, PARCELABLE_ARRAY, CHAR_SEQUENCE, I_BINDER, OBJECT_ARRAY,
             SERIALIZABLE, PERSISTABLE_BUNDLE, SIZE, SIZE_F);
 
-    static void readValue(CodeBlock.Builder block, ParcelledProcessor.Property property, final TypeName parcelableType)
+    static void readValue(CodeBlock.Builder block, ParcelledProcessor.Property property, final TypeName parcelableType, CollectionCodecs codecs)
     {
+        TypeMirror propertyType = property.element.asType();
+        boolean nullable = property.nullBit >= 0 || property.nullFlag;
 
-        if (property.isNullable())
+        if (property.nullBit >= 0)
+        {
+            block.add("$L == 0 ? ", headerBit(property.nullBit));
+        } else if (property.nullFlag)
         {
             block.add("in.readInt() == 0 ? ");
         }
 
-        if (parcelableType.equals(STRING))
+        if (property.valueBit >= 0)
+        {
+            block.add("$L != 0", headerBit(property.valueBit));
+        } else if (property.stringTable)
+        {
+            block.add("$T.readString(in)", SESSION);
+        } else if (property.varint)
+        {
+            block.add("$N.$L()", VARINTS, varintMethod("read", property.typeName));
+        } else if (codecs.isInlined(propertyType))
+        {
+            block.add(codecs.readInline(propertyType));
+        } else if (property.compressed != null)
+        {
+            block.add("$T.$L(in)", COMPRESSION, property.typeName.equals(STRING) ? "readString" : "createByteArray");
+        } else if (property.typeName.equals(DATE))
+        {
+            // instead of Java serialization
+            block.add("$T.readDate(in)", DATES);
+        } else if (parcelableType.equals(STRING))
         {
             block.add("in.readString()");
         } else if (parcelableType.equals(TypeName.BYTE) || parcelableType.equals(TypeName.BYTE.box()))
@@ -111,26 +160,32 @@ class Parcelables
         {
             if (property.typeName.equals(PARCELABLE))
             {
-                block.add("in.readParcelable($T.class.getClassLoader())", parcelableType);
+                block.add("in.readParcelable($N)", codecs.classLoader());
             } else
             {
-                block.add("($T) in.readParcelable($T.class.getClassLoader())", property.typeName, property.typeName);
+                block.add("($T) in.readParcelable($N)", property.typeName, codecs.classLoader());
             }
         } else if (parcelableType.equals(CHAR_SEQUENCE))
         {
             block.add("$T.CHAR_SEQUENCE_CREATOR.createFromParcel(in)", TEXT_UTILS);
+        } else if (parcelableType.equals(MAP) && codecs.isSpecializedMap(propertyType))
+        {
+            block.add(codecs.readMap(propertyType));
         } else if (parcelableType.equals(MAP))
         {
-            block.add("($T) in.readHashMap($T.class.getClassLoader())", property.typeName, parcelableType);
+            block.add("($T) in.readHashMap($N)", property.typeName, codecs.classLoader());
+        } else if (parcelableType.equals(LIST) && codecs.isSpecializedList(propertyType))
+        {
+            block.add(codecs.readList(propertyType));
         } else if (parcelableType.equals(LIST))
         {
-            block.add("($T) in.readArrayList($T.class.getClassLoader())", property.typeName, parcelableType);
+            block.add("($T) in.readArrayList($N)", property.typeName, codecs.classLoader());
         } else if (parcelableType.equals(BOOLEAN_ARRAY))
         {
             block.add("in.createBooleanArray()");
         } else if (parcelableType.equals(BYTE_ARRAY))
         {
-            block.add("in.createByteArray()");
+            block.add("$T.readByteArray(in, this.$N)", ARRAYS, property.fieldName);
         } else if (parcelableType.equals(CHAR_ARRAY))
         {
             block.add("in.createCharArray()");
@@ -148,13 +203,13 @@ class Parcelables
             }
         } else if (parcelableType.equals(OBJECT_ARRAY))
         {
-            block.add("in.readArray($T.class.getClassLoader())", parcelableType);
+            block.add("in.readArray($N)", codecs.classLoader());
         } else if (parcelableType.equals(INT_ARRAY))
         {
-            block.add("in.createIntArray()");
+            block.add("$T.readIntArray(in, this.$N)", ARRAYS, property.fieldName);
         } else if (parcelableType.equals(LONG_ARRAY))
         {
-            block.add("in.createLongArray()");
+            block.add("$T.readLongArray(in, this.$N)", ARRAYS, property.fieldName);
         } else if (parcelableType.equals(SERIALIZABLE))
         {
             if (property.typeName.equals(SERIALIZABLE))
@@ -169,23 +224,23 @@ class Parcelables
             ArrayTypeName atype = (ArrayTypeName) property.typeName;
             if (atype.componentType.equals(PARCELABLE))
             {
-                block.add("in.readParcelableArray($T.class.getClassLoader())", parcelableType);
+                block.add("in.readParcelableArray($N)", codecs.classLoader());
             } else
             {
-                block.add("($T) in.readParcelableArray($T.class.getClassLoader())", atype, parcelableType);
+                block.add("($T) in.readParcelableArray($N)", atype, codecs.classLoader());
             }
         } else if (parcelableType.equals(SPARSE_ARRAY))
         {
-            block.add("in.readSparseArray($T.class.getClassLoader())", parcelableType);
+            block.add("in.readSparseArray($N)", codecs.classLoader());
         } else if (parcelableType.equals(SPARSE_BOOLEAN_ARRAY))
         {
             block.add("in.readSparseBooleanArray()");
         } else if (parcelableType.equals(BUNDLE))
         {
-            block.add("in.readBundle($T.class.getClassLoader())", property.typeName);
+            block.add("in.readBundle($N)", codecs.classLoader());
         } else if (parcelableType.equals(PERSISTABLE_BUNDLE))
         {
-            block.add("in.readPersistableBundle($T.class.getClassLoader())", property.typeName);
+            block.add("in.readPersistableBundle($N)", codecs.classLoader());
         } else if (parcelableType.equals(SIZE))
         {
             block.add("in.readSize()");
@@ -194,13 +249,20 @@ class Parcelables
             block.add("in.readSizeF()");
         } else if (parcelableType.equals(ENUM))
         {
-            block.add("$T.valueOf(in.readString())", property.typeName);
+            ParcelledEnum.Encoding encoding = codecs.enumEncoding(propertyType, property.element);
+            if (encoding == ParcelledEnum.Encoding.NAME)
+            {
+                block.add("$T.valueOf(in.readString())", property.typeName);
+            } else
+            {
+                block.add(codecs.readEnum(propertyType, encoding));
+            }
         } else
         {
-            block.add("($T) in.readValue($T.class.getClassLoader())", property.typeName, parcelableType);
+            block.add("($T) in.readValue($N)", property.typeName, codecs.classLoader());
         }
 
-        if (property.isNullable())
+        if (nullable)
         {
             block.add(" : null");
         }
@@ -208,17 +270,339 @@ class Parcelables
 
     public static void readValueWithTypeAdapter(CodeBlock.Builder block, ParcelledProcessor.Property property, final FieldSpec adapter)
     {
-        if (property.isNullable())
+        if (property.nullBit >= 0)
+        {
+            block.add("$L == 0 ? ", headerBit(property.nullBit));
+        } else if (property.nullFlag)
         {
             block.add("in.readInt() == 0 ? ");
         }
-        block.add("$N.fromParcel(in)", adapter);
-        if (property.isNullable())
+        block.add("$N.$N.fromParcel(in)", ADAPTER_HOLDER, adapter);
+        if (property.nullBit >= 0 || property.nullFlag)
         {
             block.add(" : null");
         }
     }
 
+    /**
+     * Returns the number of <code>int</code> header words needed for the given number of bits.
+     */
+    static int headerWords(int headerBits)
+    {
+        return (headerBits + Integer.SIZE - 1) / Integer.SIZE;
+    }
+
+    /**
+     * Writes the bit-packed header: one bit for the value of every boolean property and one bit
+     * for the {@code null} flag of every <code>@Nullable</code> property whose codec does not
+     * encode {@code null} itself, packed in as few <code>int</code>s as possible.
+     */
+    public static CodeBlock writeHeader(List<ParcelledProcessor.Property> properties, int headerBits, ParameterSpec out)
+    {
+        CodeBlock.Builder block = CodeBlock.builder();
+        for (int word = 0; word < headerWords(headerBits); word++)
+        {
+            CodeBlock.Builder bits = CodeBlock.builder();
+            for (ParcelledProcessor.Property p : properties)
+            {
+                if (p.valueBit / Integer.SIZE == word && p.valueBit >= 0)
+                {
+                    String value = p.nullBit >= 0 ? "Boolean.TRUE.equals(" + p.fieldName + ")" : p.fieldName;
+                    addHeaderTerm(bits, CodeBlock.of("($L ? $L : 0)", value, bitMask(p.valueBit)));
+                }
+                if (p.nullBit / Integer.SIZE == word && p.nullBit >= 0)
+                {
+                    addHeaderTerm(bits, CodeBlock.of("($N == null ? $L : 0)", p.fieldName, bitMask(p.nullBit)));
+                }
+            }
+            block.addStatement("$N.writeInt($L)", out, bits.build());
+        }
+        return block.build();
+    }
+
+    /**
+     * Reads the header written by {@link #writeHeader} into the <code>header0..N</code> locals.
+     */
+    public static CodeBlock readHeader(int headerBits)
+    {
+        CodeBlock.Builder block = CodeBlock.builder();
+        for (int word = 0; word < headerWords(headerBits); word++)
+        {
+            block.addStatement("int header$L = in.readInt()", word);
+        }
+        return block.build();
+    }
+
+    private static void addHeaderTerm(CodeBlock.Builder bits, CodeBlock term)
+    {
+        if (!bits.isEmpty())
+        {
+            bits.add(" | ");
+        }
+        bits.add(term);
+    }
+
+    static CodeBlock headerBit(int bit)
+    {
+        return CodeBlock.of("(header$L & $L)", bit / Integer.SIZE, bitMask(bit));
+    }
+
+    private static String bitMask(int bit)
+    {
+        return "1 << " + bit % Integer.SIZE;
+    }
+
+    /**
+     * Returns whether the given type can be written to the varint block.
+     */
+    static boolean isVarintType(TypeName type)
+    {
+        return varintSuffix(type) != null;
+    }
+
+    /**
+     * Writes the varint block: the version followed by every varint property, in declaration
+     * order, skipping the {@code null} values already flagged in the header.
+     */
+    public static CodeBlock writeVarints(int version, List<ParcelledProcessor.Property> properties, ParameterSpec out)
+    {
+        return writeVarints(version, properties, p -> null, out);
+    }
+
+    /**
+     * Writes a varint block holding the given version, unless it is negative, followed by the
+     * varint properties whose condition holds, in declaration order; a {@code null} condition
+     * selects the property unconditionally.
+     */
+    static CodeBlock writeVarints(
+            int version,
+            List<ParcelledProcessor.Property> properties,
+            Function<ParcelledProcessor.Property, CodeBlock> condition,
+            ParameterSpec out)
+    {
+        NameAllocator names = new NameAllocator();
+        properties.forEach(p -> names.newName(p.fieldName, p));
+        int capacity = varintCapacity(properties);
+        String varints = names.newName(VARINTS);
+
+        CodeBlock.Builder block = CodeBlock.builder();
+        block.addStatement("$T $N = new $T($L)", VARINT_WRITER, varints, VARINT_WRITER, capacity);
+        if (version >= 0)
+        {
+            block.addStatement("$N.writeInt(/* version */ $L)", varints, version);
+        }
+        for (ParcelledProcessor.Property p : properties)
+        {
+            if (!p.varint)
+            {
+                continue;
+            }
+            CodeBlock selected = condition.apply(p);
+            if (selected != null)
+            {
+                block.beginControlFlow("if ($L)", selected);
+            }
+            if (p.nullBit >= 0)
+            {
+                block.beginControlFlow("if ($N != null)", p.fieldName);
+            }
+            block.addStatement("$N.$L($N)", varints, varintMethod("write", p.typeName), p.fieldName);
+            if (p.nullBit >= 0)
+            {
+                block.endControlFlow();
+            }
+            if (selected != null)
+            {
+                block.endControlFlow();
+            }
+        }
+        block.addStatement("$N.writeTo($N)", varints, out);
+        return block.build();
+    }
+
+    /**
+     * Returns the initial capacity of the varint block: enough for the version and the varint
+     * properties, growing only for the arrays.
+     */
+    static int varintCapacity(List<ParcelledProcessor.Property> properties)
+    {
+        int capacity = 5;
+        for (ParcelledProcessor.Property p : properties)
+        {
+            if (p.varint)
+            {
+                capacity += varintCapacity(p.typeName);
+            }
+        }
+        return capacity;
+    }
+
+    /**
+     * Reads the varint block written by {@link #writeVarints} into the {@link #VARINTS} local and
+     * the version from it.
+     */
+    public static CodeBlock readVarints()
+    {
+        return CodeBlock.builder()
+                .add(openVarints())
+                .addStatement("this.version = $N.readInt()", VARINTS)
+                .build();
+    }
+
+    /**
+     * Reads a varint block without version into the {@link #VARINTS} local.
+     */
+    static CodeBlock openVarints()
+    {
+        return CodeBlock.builder()
+                .addStatement("$T $N = new $T(in)", VARINT_READER, VARINTS, VARINT_READER)
+                .build();
+    }
+
+    /**
+     * Decodes and drops the value of a varint property, for projections not reading it.
+     */
+    static CodeBlock skipVarint(ParcelledProcessor.Property p)
+    {
+        CodeBlock read = CodeBlock.of("$N.$L()", VARINTS, varintMethod("read", p.typeName));
+        if (p.nullBit >= 0)
+        {
+            return CodeBlock.builder()
+                    .beginControlFlow("if ($L == 0)", headerBit(p.nullBit))
+                    .addStatement("$L", read)
+                    .endControlFlow()
+                    .build();
+        }
+        return CodeBlock.builder().addStatement("$L", read).build();
+    }
+
+    /**
+     * Returns whether the property is a <code>Date</code> written by the built-in codec, which
+     * leaves {@code null} to the null flag of the property.
+     */
+    static boolean isDate(ParcelledProcessor.Property property)
+    {
+        return property.typeAdapter == null && property.typeName.equals(DATE);
+    }
+
+    /**
+     * Returns the number of bytes written for a value of the given type when it has a fixed width,
+     * otherwise {@code -1}.
+     */
+    static int fixedWidth(TypeName type)
+    {
+        TypeName unboxed = type.isBoxedPrimitive() ? type.unbox() : type;
+        if (unboxed.equals(TypeName.LONG) || unboxed.equals(TypeName.DOUBLE))
+        {
+            return 8;
+        } else if (unboxed.isPrimitive())
+        {
+            return 4;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the expression estimating the number of bytes {@link #writeValue} writes for a
+     * property: exact for the fixed-width values, estimated by {@code ParcelledSizes} otherwise.
+     * Returns {@code null} when the value is written to the header or to the varint block only.
+     */
+    static CodeBlock sizeOf(ParcelledProcessor.Property property, Types typeUtils, CollectionCodecs codecs)
+    {
+        if (property.valueBit >= 0)
+        {
+            return null;
+        }
+        if (property.varint)
+        {
+            // the block is sized for the scalars, the arrays are written one varint per element
+            return property.typeName instanceof ArrayTypeName
+                    ? CodeBlock.of("(this.$N == null ? 0 : this.$N.length * $L)", property.fieldName, property.fieldName,
+                    varintSuffix(property.typeName).equals("LongArray") ? 10 : 5)
+                    : null;
+        }
+
+        TypeMirror propertyType = property.element.asType();
+        int width = property.typeName.equals(DATE) ? 8 : fixedWidth(property.typeName);
+        if (width < 0 && property.typeAdapter == null && !codecs.isInlined(propertyType)
+                && getTypeNameFromProperty(property, typeUtils).equals(ENUM)
+                && codecs.enumEncoding(propertyType, property.element) != ParcelledEnum.Encoding.NAME)
+        {
+            width = 4;
+        }
+        if (property.stringTable || property.compressed != null)
+        {
+            // the marker of the table or of the compression, followed by the value at most
+            return CodeBlock.of("4 + $T.sizeOf(this.$N)", SIZES, property.fieldName);
+        } else if (width < 0)
+        {
+            // strings, collections and objects estimate their own null flag
+            return CodeBlock.of("$T.sizeOf(this.$N)", SIZES, property.fieldName);
+        }
+        if (property.nullBit >= 0)
+        {
+            return CodeBlock.of("(this.$N == null ? 0 : $L)", property.fieldName, width);
+        } else if (property.nullFlag)
+        {
+            return CodeBlock.of("(this.$N == null ? 4 : $L)", property.fieldName, 4 + width);
+        }
+        return CodeBlock.of("$L", width);
+    }
+
+    private static String varintMethod(String prefix, TypeName type)
+    {
+        String suffix = varintSuffix(type);
+        return type instanceof ArrayTypeName && prefix.equals("read") ? "create" + suffix : prefix + suffix;
+    }
+
+    private static String varintSuffix(TypeName type)
+    {
+        TypeName unboxed = type.isBoxedPrimitive() ? type.unbox() : type;
+        if (unboxed.equals(TypeName.BYTE))
+        {
+            return "Byte";
+        } else if (unboxed.equals(TypeName.SHORT))
+        {
+            return "Short";
+        } else if (unboxed.equals(TypeName.CHAR))
+        {
+            return "Char";
+        } else if (unboxed.equals(TypeName.INT))
+        {
+            return "Int";
+        } else if (unboxed.equals(TypeName.LONG))
+        {
+            return "Long";
+        } else if (unboxed.equals(INT_ARRAY))
+        {
+            return "IntArray";
+        } else if (unboxed.equals(LONG_ARRAY))
+        {
+            return "LongArray";
+        }
+        return null;
+    }
+
+    private static int varintCapacity(TypeName type)
+    {
+        TypeName unboxed = type.isBoxedPrimitive() ? type.unbox() : type;
+        if (unboxed.equals(TypeName.BYTE))
+        {
+            return 2;
+        } else if (unboxed.equals(TypeName.SHORT) || unboxed.equals(TypeName.CHAR))
+        {
+            return 3;
+        } else if (unboxed.equals(TypeName.INT))
+        {
+            return 5;
+        } else if (unboxed.equals(TypeName.LONG))
+        {
+            return 10;
+        }
+        // arrays grow the block as needed
+        return 16;
+    }
+
     public static CodeBlock writeVersion(int version, ParameterSpec out)
     {
         CodeBlock.Builder block = CodeBlock.builder();
@@ -229,21 +613,48 @@ class Parcelables
         return block.build();
     }
 
-    public static CodeBlock writeValue(ParcelledProcessor.Property property, ParameterSpec out, ParameterSpec flags, Types typeUtils)
+    public static CodeBlock writeValue(ParcelledProcessor.Property property, ParameterSpec out, ParameterSpec flags, Types typeUtils, CollectionCodecs codecs)
     {
         CodeBlock.Builder block = CodeBlock.builder();
+        TypeMirror propertyType = property.element.asType();
+
+        if (codecs.isInlined(propertyType))
+        {
+            // nested objects encode null themselves
+            return codecs.writeInline(propertyType, property.fieldName, out, flags);
+        }
 
-        if (property.isNullable())
+        if (property.stringTable)
         {
-            block.beginControlFlow("if ($N == null)", property.fieldName);
-            block.addStatement("$N.writeInt(1)", out);
-            block.nextControlFlow("else");
-            block.addStatement("$N.writeInt(0)", out);
+            // the table encodes null itself
+            return block.addStatement("$T.writeString($N, $N)", SESSION, out, property.fieldName).build();
+        }
+
+        if (property.valueBit >= 0 || property.varint)
+        {
+            // the value is part of the header or of the varint block
+            return block.build();
+        }
+
+        boolean nullable = property.nullBit >= 0 || property.nullFlag;
+        if (property.nullBit >= 0)
+        {
+            // the null flag is part of the header
+            block.beginControlFlow("if ($N != null)", property.fieldName);
+        } else if (property.nullFlag)
+        {
+            block.add(writeNullFlag(property, out));
         }
 
         TypeName type = getTypeNameFromProperty(property, typeUtils);
 
-        if (type.equals(STRING))
+        if (property.compressed != null)
+            block.add("$T.$L($N, $N, /* threshold */ $L, $T.$L)", COMPRESSION,
+                    property.typeName.equals(STRING) ? "writeString" : "writeByteArray", out, property.fieldName,
+                    property.compressed.threshold(), COMPRESSION_CODEC, property.compressed.codec());
+        else if (property.typeName.equals(DATE))
+            block.add("$T.writeDate($N, $N)", DATES, property.fieldName, out);
+        else if (type.equals(STRING))
             block.add("$N.writeString($N)", out, property.fieldName);
         else if (type.equals(TypeName.BYTE) || type.equals(TypeName.BYTE.box()))
             block.add("$N.writeInt($N)", out, property.fieldName);
@@ -267,8 +678,12 @@ class Parcelables
             block.add("$N.writeParcelable($N, $N)", out, property.fieldName, flags);
         else if (type.equals(CHAR_SEQUENCE))
             block.add("$T.writeToParcel($N, $N, $N)", TEXT_UTILS, property.fieldName, out, flags);
+        else if (type.equals(MAP) && codecs.isSpecializedMap(propertyType))
+            block.add(codecs.writeMap(propertyType, property.fieldName, out, flags));
         else if (type.equals(MAP))
             block.add("$N.writeMap($N)", out, property.fieldName);
+        else if (type.equals(LIST) && codecs.isSpecializedList(propertyType))
+            block.add(codecs.writeList(propertyType, property.fieldName, out, flags));
         else if (type.equals(LIST))
             block.add("$N.writeList($N)", out, property.fieldName);
         else if (type.equals(BOOLEAN_ARRAY))
@@ -303,6 +718,8 @@ class Parcelables
             block.add("$N.writeSize($N)", out, property.fieldName);
         else if (type.equals(SIZE_F))
             block.add("$N.writeSizeF($N)", out, property.fieldName);
+        else if (type.equals(ENUM) && codecs.enumEncoding(propertyType, property.element) != ParcelledEnum.Encoding.NAME)
+            block.add(codecs.writeEnum(propertyType, codecs.enumEncoding(propertyType, property.element), property.fieldName, out));
         else if (type.equals(ENUM))
             block.add("$N.writeString($N.name())", out, property.fieldName);
         else
@@ -310,7 +727,7 @@ class Parcelables
 
         block.add(";\n");
 
-        if (property.isNullable())
+        if (nullable)
         {
             block.endControlFlow();
         }
@@ -321,17 +738,17 @@ class Parcelables
     {
         CodeBlock.Builder block = CodeBlock.builder();
 
-        if (p.isNullable())
+        if (p.nullBit >= 0)
         {
-            block.beginControlFlow("if ($N == null)", p.fieldName);
-            block.addStatement("$N.writeInt(1)", out);
-            block.nextControlFlow("else");
-            block.addStatement("$N.writeInt(0)", out);
+            block.beginControlFlow("if ($N != null)", p.fieldName);
+        } else if (p.nullFlag)
+        {
+            block.add(writeNullFlag(p, out));
         }
 
-        block.addStatement("$N.toParcel($N, $N)", adapter, p.fieldName, out);
+        block.addStatement("$N.$N.toParcel($N, $N)", ADAPTER_HOLDER, adapter, p.fieldName, out);
 
-        if (p.isNullable())
+        if (p.nullBit >= 0 || p.nullFlag)
         {
             block.endControlFlow();
         }
@@ -339,6 +756,52 @@ class Parcelables
         return block.build();
     }
 
+    /**
+     * Opens the block writing a property whose null flag is written inline: {@code 1} for
+     * {@code null}, otherwise {@code 0} followed by the value.
+     */
+    private static CodeBlock writeNullFlag(ParcelledProcessor.Property p, ParameterSpec out)
+    {
+        return CodeBlock.builder()
+                .beginControlFlow("if ($N == null)", p.fieldName)
+                .addStatement("$N.writeInt(1)", out)
+                .nextControlFlow("else")
+                .addStatement("$N.writeInt(0)", out)
+                .build();
+    }
+
+    /**
+     * Returns how a property is written when its codec relies on Java serialization or on the
+     * reflective <code>Parcel.writeValue</code>, otherwise {@code null}. Used by the strict mode.
+     */
+    static String reflectiveCodec(ParcelledProcessor.Property property, Types typeUtils, CollectionCodecs codecs)
+    {
+        TypeMirror propertyType = property.element.asType();
+        if (property.typeAdapter != null || property.stringTable || property.varint
+                || property.typeName.equals(DATE) || codecs.isInlined(propertyType))
+        {
+            return null;
+        }
+        TypeName type = getTypeNameFromProperty(property, typeUtils);
+        if (type == null || !isValidType(type) && !type.equals(ENUM))
+        {
+            return "Parcel.writeValue()";
+        } else if (type.equals(SERIALIZABLE))
+        {
+            return "Java serialization";
+        } else if (type.equals(LIST) && !codecs.isSpecializedList(propertyType))
+        {
+            return "Parcel.writeList(), which calls writeValue() for every element";
+        } else if (type.equals(MAP) && !codecs.isSpecializedMap(propertyType))
+        {
+            return "Parcel.writeMap(), which calls writeValue() for every entry";
+        } else if (type.equals(OBJECT_ARRAY) || type.equals(SPARSE_ARRAY))
+        {
+            return "Parcel.writeValue() for every element";
+        }
+        return null;
+    }
+
     static boolean isTypeRequiresSuppressWarnings(TypeName type)
     {
         return type.equals(LIST) ||
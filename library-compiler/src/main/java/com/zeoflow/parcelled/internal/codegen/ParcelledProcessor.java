@@ -32,25 +32,49 @@ import com.zeoflow.jx.file.ParameterSpec;
 import com.zeoflow.jx.file.ParameterizedTypeName;
 import com.zeoflow.jx.file.TypeName;
 import com.zeoflow.jx.file.TypeSpec;
+import com.zeoflow.jx.file.WildcardTypeName;
 import com.zeoflow.parcelled.Default;
 import com.zeoflow.parcelled.Parcelled;
 import com.zeoflow.parcelled.ParcelledAdapter;
+import com.zeoflow.parcelled.ParcelledAdapters;
+import com.zeoflow.parcelled.ParcelledColumnar;
+import com.zeoflow.parcelled.ParcelledCompressed;
+import com.zeoflow.parcelled.ParcelledDelta;
+import com.zeoflow.parcelled.ParcelledDoubleAdapter;
+import com.zeoflow.parcelled.ParcelledIdentity;
+import com.zeoflow.parcelled.ParcelledIntAdapter;
+import com.zeoflow.parcelled.ParcelledLazy;
+import com.zeoflow.parcelled.ParcelledLongAdapter;
+import com.zeoflow.parcelled.ParcelledPooled;
+import com.zeoflow.parcelled.ParcelledPortable;
+import com.zeoflow.parcelled.ParcelledProjection;
+import com.zeoflow.parcelled.ParcelledSpillable;
+import com.zeoflow.parcelled.ParcelledTracked;
+import com.zeoflow.parcelled.ParcelledStringTable;
+import com.zeoflow.parcelled.ParcelledTypeAdapter;
+import com.zeoflow.parcelled.ParcelledVarint;
 import com.zeoflow.parcelled.ParcelledVersion;
 import com.zeoflow.parcelled.internal.common.MoreElements;
+import com.zeoflow.parcelled.internal.common.Visibility;
 
 import java.io.IOException;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
@@ -58,7 +82,10 @@ import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.MirroredTypeException;
+import javax.lang.model.type.MirroredTypesException;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.ElementFilter;
@@ -70,14 +97,30 @@ import static javax.lang.model.element.Modifier.FINAL;
 import static javax.lang.model.element.Modifier.PRIVATE;
 import static javax.lang.model.element.Modifier.PUBLIC;
 import static javax.lang.model.element.Modifier.STATIC;
+import static javax.lang.model.element.Modifier.VOLATILE;
 
 @SupportedAnnotationTypes("com.zeoflow.parcelled.Parcelled")
+@SupportedOptions(ParcelledProcessor.OPTION_STRICT)
 public final class ParcelledProcessor extends AbstractProcessor
 {
 
+    /**
+     * Processor option failing the build on the properties written through Java serialization or
+     * the reflective <code>Parcel.writeValue()</code>: <code>-Aparcelled.strict=true</code>
+     */
+    static final String OPTION_STRICT = "parcelled.strict";
+
+    private static final ClassName ADAPTERS = ClassName.get("com.zeoflow.parcelled", "ParcelledTypeAdapters");
+    private static final ClassName SIZED = ClassName.get("com.zeoflow.parcelled", "ParcelledSized");
+    private static final ClassName POOL = ClassName.get("com.zeoflow.parcelled", "ParcelledPool");
+    private static final ClassName BATCH = ClassName.get("com.zeoflow.parcelled", "ParcelledBatch");
+    private static final ClassName SPILL = ClassName.get("com.zeoflow.parcelled", "ParcelledSpill");
+    private static final ClassName RECORDS = ClassName.get("com.zeoflow.parcelled", "ParcelledRecords");
+
     private ErrorReporter mErrorReporter;
     private Types mTypeUtils;
     private boolean requiresSuppressWarnings = false;
+    private boolean strict = false;
     private static AnnotationSpec createSuppressUncheckedWarningAnnotation()
     {
         return AnnotationSpec.builder(SuppressWarnings.class)
@@ -90,6 +133,7 @@ public final class ParcelledProcessor extends AbstractProcessor
         super.init(processingEnv);
         mErrorReporter = new ErrorReporter(processingEnv);
         mTypeUtils = processingEnv.getTypeUtils();
+        strict = Boolean.parseBoolean(processingEnv.getOptions().get(OPTION_STRICT));
     }
     @Override
     public SourceVersion getSupportedSourceVersion()
@@ -192,6 +236,16 @@ public final class ParcelledProcessor extends AbstractProcessor
         // get the properties
         ImmutableList<Property> properties = buildProperties(nonPrivateFields);
 
+        // versioned properties must have distinct section tags
+        checkSectionTags(properties);
+
+        // apply the default adapters of the class and of its package
+        assignDefaultAdapters(type, properties);
+        // only Strings and byte arrays are compressed
+        checkCompressed(properties);
+        // lazy sections are read on their own, without the objects written before them
+        checkLazyIdentity(properties);
+
         // get the type adapters
         ImmutableMap<TypeMirror, FieldSpec> typeAdapters = getTypeAdapters(properties);
 
@@ -202,6 +256,30 @@ public final class ParcelledProcessor extends AbstractProcessor
         String pkg = TypeUtil.packageNameOf(type);
         TypeName classTypeName = ClassName.get(pkg, className);
         TypeName interfaceTypeName = ClassName.get(pkg, interfaceName);
+        TypeName valueTypeName = ClassName.get(type);
+        // typed codecs of the collection properties
+        CollectionCodecs codecs = new CollectionCodecs(processingEnv, mErrorReporter, ClassName.get(pkg, className));
+        // String properties written through the session string table
+        boolean identity = type.getAnnotation(ParcelledIdentity.class) != null;
+        boolean session = assignStringTable(type, properties) || identity;
+        // instances drawn from a pool before allocating
+        int poolSize = poolSize(type);
+        // size from which the payload is spilled to a file, 0 if never
+        int spillThreshold = spillThreshold(type);
+        // bits of the packed header
+        int headerBits = assignHeaderBits(properties, codecs);
+        // copies of the lazy properties
+        assignLazyFields(properties);
+        // properties that a projection can skip
+        boolean projection = assignProjection(type, properties);
+        // integral properties packed in the varint block
+        boolean varints = assignVarints(type, properties);
+        // properties set through the setters marked dirty
+        boolean tracked = type.getAnnotation(ParcelledTracked.class) != null;
+        if (strict)
+        {
+            checkStrict(properties, codecs);
+        }
         assert className != null;
         // generate writeToParcel()
         TypeSpec.Builder subClass = TypeSpec.classBuilder(className)
@@ -211,7 +289,7 @@ public final class ParcelledProcessor extends AbstractProcessor
                 .addModifiers(FINAL)
                 .addSuperinterface(interfaceTypeName)
                 // overrides IParcelled_Address
-                .addMethod(generateIParcelled(properties))
+                .addMethod(generateIParcelled(properties, tracked))
                 // extends from original abstract class
                 .superclass(ClassName.get(pkg, classToExtend))
                 // Add the AUDO-DEFAULT constructor
@@ -219,13 +297,30 @@ public final class ParcelledProcessor extends AbstractProcessor
                 // Add the DEFAULT constructor
                 .addMethod(generateConstructor(properties))
                 // Add the private constructor
-                .addMethod(generateConstructorFromParcel(processingEnv, properties, typeAdapters))
+                .addMethod(generateConstructorFromParcel(projection))
+                // decodes a parcel, also into an existing instance
+                .addMethod(generateReadFrom(processingEnv, properties, typeAdapters, codecs, headerBits, varints, session, identity, projection, tracked, spillThreshold))
+                // projections, if any
+                .addMethods(generateProjection(type, classTypeName, valueTypeName, projection))
                 // overrides describeContents()
-                .addMethod(generateDescribeContents())
+                .addMethod(generateDescribeContents(spillThreshold))
                 // static final CREATOR
-                .addField(generateCreator(classTypeName))
+                .addField(generateCreator(classTypeName, poolSize > 0))
                 // overrides writeToParcel()
-                .addMethod(generateWriteToParcel(version, processingEnv, properties, typeAdapters));
+                .addMethod(generateWriteToParcel(version, processingEnv, properties, typeAdapters, codecs, headerBits, varints, session, identity, spillThreshold))
+                // overrides ParcelledSized.sizeOf()
+                .addSuperinterface(SIZED)
+                .addMethod(generateSizeOf(version, properties, codecs, headerBits, varints, identity, spillThreshold))
+                // static writer used by the other Parcelled_ classes
+                .addMethod(generateWriteValue(valueTypeName, ancestoIsParcelable(processingEnv, type), identity))
+                // static reader used by the other Parcelled_ classes
+                .addMethod(generateReadValue(valueTypeName, classTypeName, identity, poolSize > 0))
+                // accessors of the lazy properties
+                .addMethods(generateLazyGetters(processingEnv, properties, typeAdapters, codecs))
+                .addFields(generateLazyFields(properties))
+                // typed collection codecs
+                .addMethods(codecs.methods())
+                .addFields(codecs.fields());
 
         if (!ancestoIsParcelable(processingEnv, type))
         {
@@ -233,9 +328,44 @@ public final class ParcelledProcessor extends AbstractProcessor
             subClass.addSuperinterface(ClassName.get("android.os", "Parcelable"));
         }
 
+        if (Visibility.effectiveVisibilityOfElement(type) == Visibility.PUBLIC)
+        {
+            // Other packages call into writeValue()/readValue() directly
+            subClass.addModifiers(PUBLIC);
+        }
+
+        if (poolSize > 0)
+        {
+            generatePool(subClass, classTypeName, properties, poolSize, tracked);
+        }
+
+        if (tracked)
+        {
+            generateTracked(subClass, properties);
+        }
+
+        if (type.getAnnotation(ParcelledDelta.class) != null)
+        {
+            generateDelta(subClass, version, interfaceTypeName, valueTypeName, properties, typeAdapters, codecs, headerBits, varints, session, identity, tracked);
+        }
+
+        if (type.getAnnotation(ParcelledPortable.class) != null)
+        {
+            generatePortable(subClass, type, version, classTypeName, properties, typeAdapters, identity, tracked);
+        }
+
+        if (type.getAnnotation(ParcelledColumnar.class) != null)
+        {
+            generateBatch(subClass, version, classTypeName, valueTypeName, properties, typeAdapters, codecs);
+        }
+
         if (!typeAdapters.isEmpty())
         {
-            typeAdapters.values().forEach(subClass::addField);
+            // holder initialized on the first use of an adapter, not with the class
+            subClass.addType(TypeSpec.classBuilder(Parcelables.ADAPTER_HOLDER)
+                    .addModifiers(PRIVATE, STATIC, FINAL)
+                    .addFields(typeAdapters.values())
+                    .build());
         }
 
         JavaFile javaFile = JavaFile.builder(pkg, subClass.build()).build();
@@ -272,7 +402,116 @@ public final class ParcelledProcessor extends AbstractProcessor
         TypeSpec.Builder subClass = TypeSpec.interfaceBuilder(className)
                 // Add the private constructor
                 .addModifiers(PUBLIC)
-                .addMethod(generateInterfaceSet(properties));
+                .addMethod(generateInterfaceSet(properties))
+                .addMethod(MethodSpec.methodBuilder("readFrom")
+                        .addJavadoc("Decodes the parcel into this instance, reusing its arrays of the same length$L\n",
+                                type.getAnnotation(ParcelledTracked.class) != null ? ", and marks it clean" : "")
+                        .addModifiers(PUBLIC, Modifier.ABSTRACT)
+                        .addParameter(ClassName.get("android.os", "Parcel"), "in")
+                        .build());
+        boolean tracked = type.getAnnotation(ParcelledTracked.class) != null;
+        if (type.getAnnotation(ParcelledProjection.class) != null || tracked)
+        {
+            // beyond 64 properties the mask is a long[], indexed by the number of the property
+            boolean wide = properties.size() > Long.SIZE;
+            for (int i = 0; i < properties.size(); i++)
+            {
+                Property p = properties.get(i);
+                subClass.addField(wide
+                        ? FieldSpec.builder(int.class, p.indexConstant(), PUBLIC, STATIC, FINAL).initializer("$L", i).build()
+                        : FieldSpec.builder(long.class, p.fieldConstant(), PUBLIC, STATIC, FINAL).initializer("1L << $L", i).build());
+            }
+        }
+        if (type.getAnnotation(ParcelledDelta.class) != null)
+        {
+            ClassName parcel = ClassName.get("android.os", "Parcel");
+            subClass.addMethod(MethodSpec.methodBuilder("writeDelta")
+                    .addJavadoc("Writes the properties which changed since {@code previous}, all of them if {@code null}\n")
+                    .addModifiers(PUBLIC, Modifier.ABSTRACT)
+                    .addParameter(ClassName.get(type), "previous")
+                    .addParameter(parcel, "dest")
+                    .build());
+            subClass.addMethod(MethodSpec.methodBuilder("writeDelta")
+                    .addJavadoc("Writes the properties which changed since {@code previous}, all of them if {@code null}\n")
+                    .addModifiers(PUBLIC, Modifier.ABSTRACT)
+                    .addParameter(ClassName.get(type), "previous")
+                    .addParameter(parcel, "dest")
+                    .addParameter(int.class, "flags")
+                    .build());
+            subClass.addMethod(MethodSpec.methodBuilder("applyDelta")
+                    .addJavadoc("Sets the properties written by {@code writeDelta()}, the others are kept$L\n",
+                            tracked ? "; the properties set are marked clean" : "")
+                    .addModifiers(PUBLIC, Modifier.ABSTRACT)
+                    .addParameter(parcel, "in")
+                    .build());
+            if (tracked)
+            {
+                subClass.addMethod(MethodSpec.methodBuilder("writeDirty")
+                        .addJavadoc("Writes the dirty properties as a delta for {@code applyDelta()}\n")
+                        .addModifiers(PUBLIC, Modifier.ABSTRACT)
+                        .addParameter(parcel, "dest")
+                        .build());
+            }
+        }
+        if (tracked)
+        {
+            for (Property p : properties)
+            {
+                subClass.addMethod(MethodSpec.methodBuilder(p.setterName())
+                        .addJavadoc("Sets $N and marks it dirty\n", p.fieldName)
+                        .addModifiers(PUBLIC, Modifier.ABSTRACT)
+                        .addParameter(p.typeName, p.fieldName)
+                        .build());
+            }
+            subClass.addMethod(MethodSpec.methodBuilder("isDirty")
+                    .addJavadoc("Returns whether a property was set since the last {@code clearDirty()}\n")
+                    .addModifiers(PUBLIC, Modifier.ABSTRACT)
+                    .returns(boolean.class)
+                    .build());
+            subClass.addMethod(MethodSpec.methodBuilder("clearDirty")
+                    .addJavadoc("Marks every property clean, typically once they are written\n")
+                    .addModifiers(PUBLIC, Modifier.ABSTRACT)
+                    .build());
+            subClass.addMethod(MethodSpec.methodBuilder("dirtyMask")
+                    .addJavadoc("Returns the bits of the properties set since the last {@code clearDirty()}$L\n",
+                            properties.size() > Long.SIZE ? ", the {@code INDEX_*} bit of word {@code INDEX_* / 64}" : "")
+                    .addModifiers(PUBLIC, Modifier.ABSTRACT)
+                    .returns(properties.size() > Long.SIZE ? TypeName.get(long[].class) : TypeName.LONG)
+                    .build());
+        }
+        if (type.getAnnotation(ParcelledPortable.class) != null)
+        {
+            subClass.addMethod(MethodSpec.methodBuilder("writeTo")
+                    .addJavadoc("Writes this instance to the sink, without going through a {@code Parcel}\n")
+                    .addModifiers(PUBLIC, Modifier.ABSTRACT)
+                    .addParameter(PortableCodecs.SINK, "sink")
+                    .build());
+            subClass.addMethod(MethodSpec.methodBuilder("readFrom")
+                    .addJavadoc("Decodes what {@code writeTo(sink)} wrote into this instance$L\n",
+                            tracked ? ", and marks it clean" : "")
+                    .addModifiers(PUBLIC, Modifier.ABSTRACT)
+                    .addParameter(PortableCodecs.SOURCE, "source")
+                    .build());
+        }
+        if (type.getAnnotation(ParcelledPooled.class) != null)
+        {
+            subClass.addMethod(MethodSpec.methodBuilder("release")
+                    .addJavadoc("Returns this instance to the pool; it must not be used afterwards\n"
+                            + "\n@throws IllegalStateException if it was already released\n")
+                    .addModifiers(PUBLIC, Modifier.ABSTRACT)
+                    .build());
+        }
+        for (Property p : properties)
+        {
+            if (p.lazy)
+            {
+                subClass.addMethod(MethodSpec.methodBuilder(p.getterName())
+                        .addJavadoc("Returns $N, decoded on first access\n", p.fieldName)
+                        .addModifiers(PUBLIC, Modifier.ABSTRACT)
+                        .returns(p.typeName)
+                        .build());
+            }
+        }
 
         String pkg = TypeUtil.packageNameOf(type);
         JavaFile javaFile = JavaFile.builder(pkg, subClass.build()).build();
@@ -301,6 +540,105 @@ public final class ParcelledProcessor extends AbstractProcessor
         return builder.build();
     }
 
+    /**
+     * Assigns the default adapters declared by {@link ParcelledAdapters} on the class, then on its
+     * package, to the properties without {@link ParcelledAdapter} of the type they convert.
+     *
+     * @param type       annotated class
+     * @param properties properties of the class
+     */
+    private void assignDefaultAdapters(TypeElement type, ImmutableList<Property> properties)
+    {
+        List<TypeMirror> adapters = new ArrayList<>();
+        adapters.addAll(defaultAdaptersOf(type));
+        adapters.addAll(defaultAdaptersOf(processingEnv.getElementUtils().getPackageOf(type)));
+        if (adapters.isEmpty())
+        {
+            return;
+        }
+        for (Property p : properties)
+        {
+            if (p.typeAdapter != null)
+            {
+                continue;
+            }
+            for (TypeMirror adapter : adapters)
+            {
+                TypeMirror converted = adaptedType(adapter);
+                if (converted != null && mTypeUtils.isSameType(converted, p.element.asType()))
+                {
+                    p.typeAdapter = adapter;
+                    break;
+                }
+            }
+        }
+    }
+
+    private List<TypeMirror> defaultAdaptersOf(Element element)
+    {
+        ParcelledAdapters annotation = element.getAnnotation(ParcelledAdapters.class);
+        if (annotation == null)
+        {
+            return ImmutableList.of();
+        }
+        try
+        {
+            annotation.value();
+        } catch (MirroredTypesException e)
+        {
+            return new ArrayList<>(e.getTypeMirrors());
+        }
+        return ImmutableList.of();
+    }
+
+    /**
+     * Returns the type converted by an adapter class: the type argument of the
+     * {@link ParcelledTypeAdapter} it implements, or the primitive type of the
+     * {@link ParcelledIntAdapter}, {@link ParcelledLongAdapter} or {@link ParcelledDoubleAdapter}
+     * it implements; {@code null} if it is not an adapter.
+     */
+    private TypeMirror adaptedType(TypeMirror adapter)
+    {
+        for (TypeMirror supertype : mTypeUtils.directSupertypes(adapter))
+        {
+            DeclaredType declared = (DeclaredType) supertype;
+            TypeElement element = (TypeElement) declared.asElement();
+            if (element.getQualifiedName().contentEquals(ParcelledTypeAdapter.class.getCanonicalName()))
+            {
+                return declared.getTypeArguments().isEmpty() ? null : declared.getTypeArguments().get(0);
+            } else if (element.getQualifiedName().contentEquals(ParcelledIntAdapter.class.getCanonicalName()))
+            {
+                return mTypeUtils.getPrimitiveType(TypeKind.INT);
+            } else if (element.getQualifiedName().contentEquals(ParcelledLongAdapter.class.getCanonicalName()))
+            {
+                return mTypeUtils.getPrimitiveType(TypeKind.LONG);
+            } else if (element.getQualifiedName().contentEquals(ParcelledDoubleAdapter.class.getCanonicalName()))
+            {
+                return mTypeUtils.getPrimitiveType(TypeKind.DOUBLE);
+            }
+            TypeMirror inherited = adaptedType(supertype);
+            if (inherited != null)
+            {
+                return inherited;
+            }
+        }
+        return null;
+    }
+
+    private void checkTypeAdapter(Property property)
+    {
+        TypeMirror converted = adaptedType(property.typeAdapter);
+        if (converted == null)
+        {
+            mErrorReporter.abortWithError(property.typeAdapter + " is not a ParcelledTypeAdapter, "
+                    + "ParcelledIntAdapter, ParcelledLongAdapter or ParcelledDoubleAdapter", property.element);
+        } else if (converted.getKind().isPrimitive() && !mTypeUtils.isSameType(converted, property.element.asType()))
+        {
+            mErrorReporter.abortWithError(property.typeAdapter + " converts " + converted
+                    + " values, it cannot be used on a " + property.element.asType() + " property", property.element);
+        }
+    }
+
     private ImmutableMap<TypeMirror, FieldSpec> getTypeAdapters(ImmutableList<Property> properties)
     {
         Map<TypeMirror, FieldSpec> typeAdapters = new LinkedHashMap<>();
@@ -308,19 +646,112 @@ public final class ParcelledProcessor extends AbstractProcessor
         nameAllocator.newName("CREATOR");
         for (Property property : properties)
         {
+            if (property.typeAdapter != null)
+            {
+                checkTypeAdapter(property);
+            }
             if (property.typeAdapter != null && !typeAdapters.containsKey(property.typeAdapter))
             {
                 ClassName typeName = (ClassName) TypeName.get(property.typeAdapter);
                 String name = CaseFormat.LOWER_CAMEL.to(CaseFormat.UPPER_UNDERSCORE, typeName.simpleName());
                 name = nameAllocator.newName(name, typeName);
 
+                // shared by all the generated classes, created on first use
                 typeAdapters.put(property.typeAdapter, FieldSpec.builder(
-                        typeName, NameAllocator.toJavaIdentifier(name), PRIVATE, STATIC, FINAL)
-                        .initializer("new $T()", typeName).build());
+                        typeName, NameAllocator.toJavaIdentifier(name), STATIC, FINAL)
+                        .initializer("$T.get($T.class, $T::new)", ADAPTERS, typeName, typeName).build());
             }
         }
         return ImmutableMap.copyOf(typeAdapters);
     }
+    /**
+     * Assigns the bits of the packed header: a value bit to every boolean property and a null bit
+     * to every <code>@Nullable</code> property whose codec does not encode {@code null} itself.
+     * Versioned and lazy properties write their null flag in their section instead.
+     *
+     * @param properties properties of the class
+     * @param codecs     codecs of the class
+     *
+     * @return number of bits used
+     */
+    private int assignHeaderBits(ImmutableList<Property> properties, CollectionCodecs codecs)
+    {
+        int bit = 0;
+        for (Property p : properties)
+        {
+            boolean adapted = p.typeAdapter != null;
+            boolean nullable = !p.stringTable && needsNullFlag(p, codecs);
+            if (p.hasSection())
+            {
+                // versioned and lazy properties are not part of the fixed layout
+                p.nullFlag = nullable;
+                continue;
+            }
+            if (!adapted && (p.typeName.equals(TypeName.BOOLEAN) || p.typeName.equals(TypeName.BOOLEAN.box())))
+            {
+                p.valueBit = bit++;
+            }
+            if (nullable)
+            {
+                p.nullBit = bit++;
+            }
+        }
+        return bit;
+    }
+
+    /**
+     * Marks the <code>String</code> properties written through the session string table when the
+     * class is annotated with {@link ParcelledStringTable}.
+     *
+     * @param type       annotated class
+     * @param properties properties of the class
+     *
+     * @return whether the class joins the session of the parcel
+     */
+    private boolean assignStringTable(TypeElement type, ImmutableList<Property> properties)
+    {
+        if (type.getAnnotation(ParcelledStringTable.class) == null)
+        {
+            return false;
+        }
+        for (Property p : properties)
+        {
+            p.stringTable = p.typeAdapter == null && p.compressed == null && p.typeName.equals(ClassName.get(String.class));
+        }
+        return true;
+    }
+
+    /**
+     * Marks the integral properties written to the varint block, either all of them when the class
+     * is annotated with {@link ParcelledVarint}, or the annotated ones.
+     *
+     * @param type       annotated class
+     * @param properties properties of the class
+     *
+     * @return whether the class writes a varint block
+     */
+    private boolean assignVarints(TypeElement type, ImmutableList<Property> properties)
+    {
+        boolean all = type.getAnnotation(ParcelledVarint.class) != null;
+        boolean varints = all;
+        for (Property p : properties)
+        {
+            boolean annotated = p.element.getAnnotation(ParcelledVarint.class) != null;
+            if (annotated && (p.typeAdapter != null || !Parcelables.isVarintType(p.typeName)))
+            {
+                mErrorReporter.abortWithError("@ParcelledVarint is only supported on integral properties", p.element);
+            }
+            if (annotated && p.hasSection())
+            {
+                mErrorReporter.abortWithError("@ParcelledVarint is not supported on @ParcelledVersion or @ParcelledLazy properties", p.element);
+            }
+            p.varint = (all || annotated) && !p.hasSection()
+                    && p.typeAdapter == null && Parcelables.isVarintType(p.typeName);
+            varints |= p.varint;
+        }
+        return varints;
+    }
+
     private ImmutableList<Property> buildProperties(List<VariableElement> elements)
     {
         ImmutableList.Builder<Property> builder = ImmutableList.builder();
@@ -333,11 +764,12 @@ public final class ParcelledProcessor extends AbstractProcessor
     }
     /**
      * This method returns a list of all non private fields. If any <code>private</code> fields is
-     * found, the method errors out
+     * found, the method errors out. The <code>static</code> fields belong to the class, not to
+     * its instances, and are ignored.
      *
      * @param type element
      *
-     * @return list of all non-<code>private</code> fields
+     * @return list of all non-<code>private</code> instance fields
      */
     private List<VariableElement> getParcelableFieldsOrError(TypeElement type)
     {
@@ -346,6 +778,10 @@ public final class ParcelledProcessor extends AbstractProcessor
 
         for (VariableElement field : allFields)
         {
+            if (field.getModifiers().contains(STATIC))
+            {
+                continue;
+            }
             if (!field.getModifiers().contains(PRIVATE))
             {
                 nonPrivateFields.add(field);
@@ -408,12 +844,8 @@ public final class ParcelledProcessor extends AbstractProcessor
         return builder.build();
     }
 
-    private MethodSpec generateConstructorFromParcel(
-            ProcessingEnvironment env,
-            ImmutableList<Property> properties,
-            ImmutableMap<TypeMirror, FieldSpec> typeAdapters)
+    private MethodSpec generateConstructorFromParcel(boolean projection)
     {
-
         // Create the PRIVATE constructor from Parcel
         MethodSpec.Builder builder = MethodSpec.constructorBuilder()
                 .addModifiers(PRIVATE)      // private
@@ -422,154 +854,1905 @@ public final class ParcelledProcessor extends AbstractProcessor
         builder.addJavadoc("Parcelable builder");
         builder.addJavadoc("\n");
         builder.addJavadoc("\n@param in {@link " + ClassName.bestGuess("android.os.Parcel") + "}");
+        if (projection)
+        {
+            builder.addParameter(long.class, "fieldMask");
+            builder.addJavadoc("\n@param fieldMask {@code FIELD_*} constants of the properties to read");
+            return builder.addStatement("readFrom(in, fieldMask)").build();
+        }
+        return builder.addStatement("readFrom(in)").build();
+    }
+
+    /**
+     * Generates <code>readFrom(in)</code>, called by the constructor from <code>Parcel</code> and
+     * by the callers decoding a parcel into an existing instance. The arrays of the instance are
+     * reused when they have the decoded length, see <code>ParcelledArrays</code>.
+     */
+    private MethodSpec generateReadFrom(
+            ProcessingEnvironment env,
+            ImmutableList<Property> properties,
+            ImmutableMap<TypeMirror, FieldSpec> typeAdapters,
+            CollectionCodecs codecs,
+            int headerBits,
+            boolean varints,
+            boolean session,
+            boolean identity,
+            boolean projection,
+            boolean tracked,
+            int spillThreshold)
+    {
+        MethodSpec.Builder builder = MethodSpec.methodBuilder("readFrom")
+                .addModifiers(PUBLIC)
+                .addParameter(ClassName.bestGuess("android.os.Parcel"), "in");
+        if (projection)
+        {
+            // the properties not in the mask are skipped
+            builder.addParameter(long.class, "fieldMask");
+            builder.addJavadoc("Reads only the properties in the given mask of {@code FIELD_*} constants into this\n");
+            builder.addJavadoc("instance, skipping the others; the properties not read keep their value$L.\n",
+                    tracked ? " and dirty bit" : "");
+        } else
+        {
+            builder.addAnnotation(Override.class);
+        }
 
         // get a code block builder
         CodeBlock.Builder block = CodeBlock.builder();
 
+        if (tracked)
+        {
+            // the properties read are those of the parcel, not changes of this instance
+            block.addStatement(projection ? "dirty &= ~fieldMask" : "clearDirty()");
+        }
+
+        if (spillThreshold > 0)
+        {
+            // a spilled instance is read from the payload of its file
+            block.addStatement("$T spilled = $T.read(in)", ClassName.get("android.os", "Parcel"), SPILL);
+            block.beginControlFlow("if (spilled != null)");
+            block.beginControlFlow("try");
+            block.addStatement(projection ? "readFrom(spilled, fieldMask)" : "readFrom(spilled)");
+            block.nextControlFlow("finally");
+            block.addStatement("spilled.recycle()");
+            block.endControlFlow();
+            block.addStatement("return");
+            block.endControlFlow();
+        }
+
+        if (session)
+        {
+            // join the session of the parcel
+            block.addStatement("$T.begin(in)", Parcelables.SESSION);
+            block.beginControlFlow("try");
+        }
+        if (identity)
+        {
+            // registered before the properties, which may refer back to it
+            block.addStatement("$T.registerRead(in, this)", Parcelables.SESSION);
+        }
+
         // First thing is reading the Parcelable object version
-        block.add("this.version = in.readInt();\n");
+        if (varints)
+        {
+            // ...which is part of the varint block
+            block.add(Parcelables.readVarints());
+        } else
+        {
+            block.add("this.version = in.readInt();\n");
+        }
+        // ...followed by the packed header
+        block.add(Parcelables.readHeader(headerBits));
 
-        // Now, iterate all properties, check the version initialize them
+        // Now, iterate all the unversioned properties and initialize them
         for (Property p : properties)
         {
-
-            // get the property version
-            int aVersion = p.getAfterVersion();
-            int bVersion = p.getBeforeVersion();
-            if (aVersion > 0 && bVersion > 0)
+            if (p.isVersioned())
             {
-                block.beginControlFlow("if (this.version >= $L && this.version <= $L)", aVersion, bVersion);
-            } else if (aVersion > 0)
-            {
-                block.beginControlFlow("if (this.version >= $L)", aVersion);
-            } else if (bVersion > 0)
-            {
-                block.beginControlFlow("if (this.version <= $L)", bVersion);
+                continue;
             }
-
-            block.add("this.$N = ", p.fieldName);
-
-            if (p.typeAdapter != null && typeAdapters.containsKey(p.typeAdapter))
+            if (projection)
             {
-                Parcelables.readValueWithTypeAdapter(block, p, typeAdapters.get(p.typeAdapter));
+                readProjectedProperty(env, block, p, typeAdapters, codecs);
             } else
             {
-                requiresSuppressWarnings |= Parcelables.isTypeRequiresSuppressWarnings(p.typeName);
-                TypeName parcelableType = Parcelables.getTypeNameFromProperty(p, env.getTypeUtils());
-                Parcelables.readValue(block, p, parcelableType);
+                readProperty(env, block, p, typeAdapters, codecs);
             }
+        }
 
-            block.add(";\n");
-
-            if (aVersion > 0 || bVersion > 0)
+        // ...then the sections of the versioned properties, skipping the unknown ones
+        for (Property p : properties)
+        {
+            if (p.isVersioned())
             {
-                block.endControlFlow();
+                // a section missing from this parcel leaves the property unset
+                block.addStatement("this.$N = $L", p.fieldName, defaultValue(p.typeName));
+                if (p.lazy)
+                {
+                    block.addStatement("this.$N = null", p.lazyField);
+                }
             }
         }
+        readSections(env, block, properties, typeAdapters, codecs, projection);
+
+        if (session)
+        {
+            block.nextControlFlow("finally");
+            block.addStatement("$T.end(in)", Parcelables.SESSION);
+            block.endControlFlow();
+        }
 
         builder.addCode(block.build());
 
         return builder.build();
     }
 
-    private String generatedSubclassName(TypeElement type)
-    {
-        String classNameSuffix = "Parcelled_";
-        return generatedClassName(type, Strings.repeat("$", 0) + classNameSuffix);
-    }
-
-    private String generatedInterfaceName(TypeElement type)
+    /**
+     * Generates the loop reading the sections of the versioned properties.
+     */
+    private void readSections(
+            ProcessingEnvironment env,
+            CodeBlock.Builder block,
+            ImmutableList<Property> properties,
+            ImmutableMap<TypeMirror, FieldSpec> typeAdapters,
+            CollectionCodecs codecs,
+            boolean projection)
     {
-        String classNameSuffix = "IParcelled_";
-        return generatedClassName(type, Strings.repeat("$", 0) + classNameSuffix);
+        block.addStatement("int sections = in.readInt()");
+        block.beginControlFlow("for (int i = 0; i < sections; i++)");
+        block.addStatement("int tag = in.readInt()");
+        block.addStatement("int end = $T.open(in)", Parcelables.SECTIONS);
+        block.beginControlFlow("try");
+        block.beginControlFlow("switch (tag)");
+        for (Property p : properties)
+        {
+            if (p.isVersioned())
+            {
+                block.add("case $L: // $N\n", sectionTag(p), p.fieldName);
+                block.indent();
+                if (projection)
+                {
+                    block.beginControlFlow("if ((fieldMask & $N) != 0)", p.fieldConstant());
+                }
+                readProperty(env, block, p, typeAdapters, codecs);
+                if (projection)
+                {
+                    block.endControlFlow();
+                }
+                block.addStatement("break");
+                block.unindent();
+            }
+        }
+        block.endControlFlow();
+        block.nextControlFlow("finally");
+        block.addStatement("$T.close(in, end)", Parcelables.SECTIONS);
+        block.endControlFlow();
+        block.endControlFlow();
     }
 
-    private String generatedClassName(TypeElement type, String prefix)
+    private void readProperty(
+            ProcessingEnvironment env,
+            CodeBlock.Builder block,
+            Property p,
+            ImmutableMap<TypeMirror, FieldSpec> typeAdapters,
+            CollectionCodecs codecs)
     {
-        StringBuilder name = new StringBuilder(type.getSimpleName().toString());
-        while (type.getEnclosingElement() instanceof TypeElement)
+        if (p.lazy)
+        {
+            // decoded on first access
+            block.addStatement("this.$N = $T.copy(in)", p.lazyField, Parcelables.SECTIONS);
+        } else
         {
-            type = (TypeElement) type.getEnclosingElement();
-            name.insert(0, type.getSimpleName() + "_");
+            readPropertyValue(env, block, p, typeAdapters, codecs);
         }
-        String pkg = TypeUtil.packageNameOf(type);
-        String dot = pkg.isEmpty() ? "" : ".";
-        return pkg + dot + prefix + name;
     }
 
-    private MethodSpec generateWriteToParcel(
-            int version,
+    /**
+     * Reads a property of a {@link ParcelledProjection} class if it is in the field mask, otherwise
+     * skips it: the fixed-width values by moving the data position, the length-prefixed ones with
+     * one jump, and the values of the varint block by decoding them.
+     */
+    private void readProjectedProperty(
             ProcessingEnvironment env,
-            ImmutableList<Property> properties,
-            ImmutableMap<TypeMirror, FieldSpec> typeAdapters)
+            CodeBlock.Builder block,
+            Property p,
+            ImmutableMap<TypeMirror, FieldSpec> typeAdapters,
+            CollectionCodecs codecs)
     {
-        ParameterSpec dest = ParameterSpec
-                .builder(ClassName.get("android.os", "Parcel"), "dest")
-                .build();
-        ParameterSpec flags = ParameterSpec.builder(int.class, "flags").build();
-        MethodSpec.Builder builder = MethodSpec.methodBuilder("writeToParcel")
-                .addAnnotation(Override.class)
-                .addModifiers(PUBLIC)
-                .addParameter(dest)
-                .addParameter(flags);
+        if (p.valueBit >= 0)
+        {
+            // part of the header, nothing to skip
+            readPropertyValue(env, block, p, typeAdapters, codecs);
+            return;
+        }
 
-        // write first the parcelable object version...
-        builder.addCode(Parcelables.writeVersion(version, dest));
+        block.beginControlFlow("if ((fieldMask & $N) != 0)", p.fieldConstant());
+        if (p.prefixed)
+        {
+            block.addStatement("int end = $T.open(in)", Parcelables.SECTIONS);
+            block.beginControlFlow("try");
+            readPropertyValue(env, block, p, typeAdapters, codecs);
+            block.nextControlFlow("finally");
+            block.addStatement("$T.close(in, end)", Parcelables.SECTIONS);
+            block.endControlFlow();
+        } else
+        {
+            readProperty(env, block, p, typeAdapters, codecs);
+        }
 
-        // ...then write all the properties
-        for (Property p : properties)
+        if (p.lazy || p.prefixed)
         {
-            if (p.typeAdapter != null && typeAdapters.containsKey(p.typeAdapter))
+            block.nextControlFlow("else");
+            block.addStatement("$T.skip(in)", Parcelables.SECTIONS);
+        } else if (p.varint)
+        {
+            block.nextControlFlow("else");
+            block.add(Parcelables.skipVarint(p));
+        } else
+        {
+            int width = Parcelables.fixedWidth(p.typeName);
+            if (p.nullBit >= 0)
             {
-                FieldSpec typeAdapter = typeAdapters.get(p.typeAdapter);
-                builder.addCode(Parcelables.writeValueWithTypeAdapter(typeAdapter, p, dest));
+                block.nextControlFlow("else if ($L == 0)", Parcelables.headerBit(p.nullBit));
             } else
             {
-                builder.addCode(Parcelables.writeValue(p, dest, flags, env.getTypeUtils()));
+                block.nextControlFlow("else");
             }
+            block.addStatement("in.setDataPosition(in.dataPosition() + $L)", width);
         }
-
-        return builder.build();
-    }
-
-    private MethodSpec generateDescribeContents()
-    {
-        return MethodSpec.methodBuilder("describeContents")
-                .addAnnotation(Override.class)
-                .addModifiers(PUBLIC)
-                .returns(int.class)
-                .addStatement("return 0")
-                .build();
+        block.endControlFlow();
     }
 
-    private MethodSpec generateIParcelled(ImmutableList<Property> properties)
+    private void readPropertyValue(
+            ProcessingEnvironment env,
+            CodeBlock.Builder block,
+            Property p,
+            ImmutableMap<TypeMirror, FieldSpec> typeAdapters,
+            CollectionCodecs codecs)
     {
-        MethodSpec.Builder builder = MethodSpec.methodBuilder("setValues")
-                .addAnnotation(Override.class)
-                .addModifiers(PUBLIC);
+        block.add("this.$N = ", p.fieldName);
 
-        List<ParameterSpec> params = Lists.newArrayListWithCapacity(properties.size());
-        for (Property property : properties)
+        if (p.typeAdapter != null && typeAdapters.containsKey(p.typeAdapter))
         {
-            params.add(ParameterSpec.builder(property.typeName, property.fieldName).build());
-        }
-        for (ParameterSpec param : params)
+            Parcelables.readValueWithTypeAdapter(block, p, typeAdapters.get(p.typeAdapter));
+        } else
         {
-            builder.addJavadoc("\n@param " + param.name + " {@link " + param.type + "}");
-            builder.addParameter(param.type, param.name);
-            builder.addStatement("this.$N = $N", param.name, param.name);
+            requiresSuppressWarnings |= Parcelables.isTypeRequiresSuppressWarnings(p.typeName);
+            TypeName parcelableType = Parcelables.getTypeNameFromProperty(p, env.getTypeUtils());
+            Parcelables.readValue(block, p, parcelableType, codecs);
         }
 
-        return builder.build();
+        block.add(";\n");
     }
 
-    private FieldSpec generateCreator(TypeName type)
+    private void checkCompressed(ImmutableList<Property> properties)
+    {
+        for (Property p : properties)
+        {
+            if (p.compressed == null)
+            {
+                continue;
+            }
+            if (p.typeAdapter != null)
+            {
+                mErrorReporter.reportError("@ParcelledCompressed property " + p.fieldName
+                        + " can not have a type adapter", p.element);
+            } else if (!p.typeName.equals(ClassName.get(String.class)) && !p.typeName.equals(ArrayTypeName.of(byte.class)))
+            {
+                mErrorReporter.reportError("@ParcelledCompressed property " + p.fieldName
+                        + " must be a String or a byte[]", p.element);
+            } else if (p.compressed.threshold() < 0)
+            {
+                mErrorReporter.reportError("@ParcelledCompressed threshold of " + p.fieldName
+                        + " must not be negative", p.element);
+            }
+        }
+    }
+
+    /**
+     * Reports an error for every {@link ParcelledLazy} property which may hold a
+     * {@link ParcelledIdentity} object: its section is decoded later from a copy, so it can not
+     * refer back to the objects written before it, and a cycle through it would never end.
+     */
+    private void checkLazyIdentity(ImmutableList<Property> properties)
+    {
+        for (Property p : properties)
+        {
+            if (p.lazy && reachesIdentity(p.element.asType(), new HashSet<>()))
+            {
+                mErrorReporter.reportError("@ParcelledLazy property " + p.fieldName
+                        + " can not hold @ParcelledIdentity objects", p.element);
+            }
+        }
+    }
+
+    /**
+     * Returns whether a value of the given type may hold a {@link ParcelledIdentity} object, as
+     * itself, an element or a property of a nested {@link Parcelled} class.
+     */
+    private boolean reachesIdentity(TypeMirror type, Set<String> visited)
+    {
+        if (type.getKind() == TypeKind.ARRAY)
+        {
+            return reachesIdentity(((ArrayType) type).getComponentType(), visited);
+        }
+        if (type.getKind() != TypeKind.DECLARED)
+        {
+            return false;
+        }
+        DeclaredType declared = (DeclaredType) type;
+        TypeElement element = (TypeElement) declared.asElement();
+        if (element.getAnnotation(ParcelledIdentity.class) != null)
+        {
+            return true;
+        }
+        for (TypeMirror argument : declared.getTypeArguments())
+        {
+            if (reachesIdentity(argument, visited))
+            {
+                return true;
+            }
+        }
+        if (element.getAnnotation(Parcelled.class) != null && visited.add(element.getQualifiedName().toString()))
+        {
+            for (VariableElement field : ElementFilter.fieldsIn(element.getEnclosedElements()))
+            {
+                if (!field.getModifiers().contains(Modifier.PRIVATE) && !field.getModifiers().contains(Modifier.STATIC)
+                        && reachesIdentity(field.asType(), visited))
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void checkSectionTags(ImmutableList<Property> properties)
+    {
+        Map<Integer, Property> tags = new LinkedHashMap<>();
+        for (Property p : properties)
+        {
+            if (p.isVersioned())
+            {
+                Property other = tags.put(sectionTag(p), p);
+                if (other != null)
+                {
+                    mErrorReporter.abortWithError("@ParcelledVersion properties " + other.fieldName
+                            + " and " + p.fieldName + " have the same section tag, rename one of them", p.element);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the tag of the section of a versioned property: the hash of its name, which stays
+     * the same across the versions of the class.
+     *
+     * @param p versioned property
+     *
+     * @return section tag
+     */
+    private static int sectionTag(Property p)
+    {
+        return p.fieldName.hashCode();
+    }
+
+    private String generatedSubclassName(TypeElement type)
+    {
+        String classNameSuffix = "Parcelled_";
+        return generatedClassName(type, Strings.repeat("$", 0) + classNameSuffix);
+    }
+
+    private String generatedInterfaceName(TypeElement type)
+    {
+        String classNameSuffix = "IParcelled_";
+        return generatedClassName(type, Strings.repeat("$", 0) + classNameSuffix);
+    }
+
+    private String generatedClassName(TypeElement type, String prefix)
+    {
+        return TypeUtil.generatedClassName(type, prefix);
+    }
+
+    private MethodSpec generateWriteToParcel(
+            int version,
+            ProcessingEnvironment env,
+            ImmutableList<Property> properties,
+            ImmutableMap<TypeMirror, FieldSpec> typeAdapters,
+            CollectionCodecs codecs,
+            int headerBits,
+            boolean varints,
+            boolean session,
+            boolean identity,
+            int spillThreshold)
+    {
+        ParameterSpec dest = ParameterSpec
+                .builder(ClassName.get("android.os", "Parcel"), "dest")
+                .build();
+        ParameterSpec flags = ParameterSpec.builder(int.class, "flags").build();
+        MethodSpec.Builder builder = MethodSpec.methodBuilder("writeToParcel")
+                .addAnnotation(Override.class)
+                .addModifiers(PUBLIC)
+                .addParameter(dest)
+                .addParameter(flags);
+
+        if (spillThreshold > 0)
+        {
+            // a large instance is written to a file instead
+            builder.beginControlFlow("if ($T.write($N, this, $N, /* threshold */ $L))", SPILL, dest, flags, spillThreshold);
+            builder.addStatement("return");
+            builder.endControlFlow();
+        }
+
+        if (session)
+        {
+            // join the session of the parcel
+            builder.addStatement("$T.begin($N)", Parcelables.SESSION, dest);
+            builder.beginControlFlow("try");
+        }
+        if (identity)
+        {
+            builder.addStatement("$T.registerWritten($N, this)", Parcelables.SESSION, dest);
+        }
+
+        // write first the parcelable object version...
+        if (varints)
+        {
+            // ...as part of the varint block
+            builder.addCode(Parcelables.writeVarints(version, properties, dest));
+        } else
+        {
+            builder.addCode(Parcelables.writeVersion(version, dest));
+        }
+        // ...followed by the packed header
+        builder.addCode(Parcelables.writeHeader(properties, headerBits, dest));
+
+        // locals of the generated method must not hide the properties
+        NameAllocator names = new NameAllocator();
+        properties.forEach(p -> names.newName(p.fieldName, p));
+        String start = names.newName("start");
+        if (properties.stream().anyMatch(p -> p.lazy || p.prefixed))
+        {
+            builder.addStatement("int $N", start);
+        }
+
+        // ...then write all the unversioned properties
+        for (Property p : properties)
+        {
+            if (!p.isVersioned())
+            {
+                builder.addCode(writeProperty(env, p, dest, flags, typeAdapters, codecs, start));
+            }
+        }
+
+        // ...and a section for every versioned property in the range of this version
+        List<Property> sections = new ArrayList<>();
+        for (Property p : properties)
+        {
+            if (p.isVersioned() && p.isWritten(version))
+            {
+                sections.add(p);
+            }
+        }
+        // written even when empty, so that a reader skips the sections of later versions
+        builder.addStatement("$N.writeInt(/* sections */ $L)", dest, sections.size());
+        if (!sections.isEmpty())
+        {
+            String section = names.newName("section");
+            builder.addStatement("int $N", section);
+            for (Property p : sections)
+            {
+                builder.addStatement("$N = $T.begin($N, /* $N */ $L)", section, Parcelables.SECTIONS, dest, p.fieldName, sectionTag(p));
+                builder.addCode(writeProperty(env, p, dest, flags, typeAdapters, codecs, start));
+                builder.addStatement("$T.end($N, $N)", Parcelables.SECTIONS, dest, section);
+            }
+        }
+
+        if (session)
+        {
+            builder.nextControlFlow("finally");
+            builder.addStatement("$T.end($N)", Parcelables.SESSION, dest);
+            builder.endControlFlow();
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Generates <code>sizeOf()</code>, the number of bytes written by <code>writeToParcel()</code>:
+     * exact for the version, the header, the section framing and the fixed-width properties,
+     * estimated for the others.
+     *
+     * @param version    version of the class
+     * @param properties properties of the class
+     * @param codecs     codecs of the class
+     * @param headerBits number of header bits
+     * @param varints    whether the class writes a varint block
+     * @param identity   whether the instances are tracked by identity
+     *
+     * @return <code>sizeOf()</code> method
+     */
+    private MethodSpec generateSizeOf(
+            int version,
+            ImmutableList<Property> properties,
+            CollectionCodecs codecs,
+            int headerBits,
+            boolean varints,
+            boolean identity,
+            int spillThreshold)
+    {
+        // the spill marker, the version or the varint block, the header and the section count
+        int size = (spillThreshold > 0 ? 4 : 0)
+                + (varints ? 4 + align(Parcelables.varintCapacity(properties)) : 4)
+                + 4 * Parcelables.headerWords(headerBits) + 4;
+        CodeBlock.Builder block = CodeBlock.builder();
+        for (Property p : properties)
+        {
+            if (p.isVersioned() && !p.isWritten(version))
+            {
+                continue;
+            }
+            // the tag and length of a section, the length of a lazy or projected property
+            size += (p.isVersioned() ? 8 : 0) + (p.lazy || p.prefixed ? 4 : 0);
+            CodeBlock value = Parcelables.sizeOf(p, mTypeUtils, codecs);
+            if (value == null)
+            {
+                continue;
+            }
+            if (p.lazy)
+            {
+                // a lazy property not accessed since it was read is still a copy of its section
+                block.addStatement("$T $N = this.$N", ClassName.get("android.os", "Parcel"), p.lazyField, p.lazyField);
+                block.addStatement("size += $N != null ? $N.dataSize() : $L", p.lazyField, p.lazyField, value);
+            } else if (value.toString().matches("\\d+"))
+            {
+                size += Integer.parseInt(value.toString());
+            } else
+            {
+                block.addStatement("size += $L", value);
+            }
+        }
+
+        MethodSpec.Builder builder = MethodSpec.methodBuilder("sizeOf")
+                .addAnnotation(Override.class)
+                .addModifiers(PUBLIC)
+                .returns(int.class);
+        if (!identity)
+        {
+            return builder.addStatement("int size = $L", size)
+                    .addCode(block.build())
+                    .addStatement("return size")
+                    .build();
+        }
+        // an instance already sized is written as a back-reference, already counted by the caller
+        return builder.beginControlFlow("if (!$T.enter(this))", Parcelables.SIZES)
+                .addStatement("return 0")
+                .endControlFlow()
+                .beginControlFlow("try")
+                .addStatement("int size = $L", size)
+                .addCode(block.build())
+                .addStatement("return size")
+                .nextControlFlow("finally")
+                .addStatement("$T.exit()", Parcelables.SIZES)
+                .endControlFlow()
+                .build();
+    }
+
+    private static int align(int size)
+    {
+        return (size + 3) & ~3;
+    }
+
+    private static String defaultValue(TypeName type)
+    {
+        if (type.equals(TypeName.BOOLEAN))
+        {
+            return "false";
+        } else if (type.equals(TypeName.CHAR))
+        {
+            return "(char) 0";
+        }
+        return type.isPrimitive() ? "0" : "null";
+    }
+
+    private CodeBlock writeProperty(
+            ProcessingEnvironment env,
+            Property p,
+            ParameterSpec dest,
+            ParameterSpec flags,
+            ImmutableMap<TypeMirror, FieldSpec> typeAdapters,
+            CollectionCodecs codecs,
+            String start)
+    {
+        CodeBlock value;
+        if (p.typeAdapter != null && typeAdapters.containsKey(p.typeAdapter))
+        {
+            FieldSpec typeAdapter = typeAdapters.get(p.typeAdapter);
+            value = Parcelables.writeValueWithTypeAdapter(typeAdapter, p, dest);
+        } else
+        {
+            value = Parcelables.writeValue(p, dest, flags, env.getTypeUtils(), codecs);
+        }
+        if (!p.lazy && !p.prefixed)
+        {
+            return value;
+        }
+
+        CodeBlock.Builder block = CodeBlock.builder();
+        if (p.lazy)
+        {
+            // a lazy property not accessed since it was read is decoded before being written again
+            block.addStatement("$N()", p.getterName());
+        }
+        // a lazy section is read later on its own, a prefixed one in line
+        return block.addStatement("$N = $T.$L($N)", start, Parcelables.SECTIONS, p.lazy ? "beginDetached" : "begin", dest)
+                .add(value)
+                .addStatement("$T.end($N, $N)", Parcelables.SECTIONS, dest, start)
+                .build();
+    }
+
+    /**
+     * Reports an error for every property whose codec relies on Java serialization or on the
+     * reflective <code>Parcel.writeValue()</code>, when the {@link #OPTION_STRICT} option is set.
+     *
+     * @param properties properties of the class
+     * @param codecs     codecs of the class
+     */
+    private void checkStrict(ImmutableList<Property> properties, CollectionCodecs codecs)
+    {
+        for (Property p : properties)
+        {
+            String codec = Parcelables.reflectiveCodec(p, mTypeUtils, codecs);
+            if (codec != null)
+            {
+                mErrorReporter.reportError("Property " + p.fieldName + " of type " + p.typeName
+                        + " would be written with " + codec + "; use a supported type or a @ParcelledAdapter ("
+                        + OPTION_STRICT + " is set)", p.element);
+            }
+        }
+    }
+
+    /**
+     * Marks the properties written with a length prefix when the class is annotated with
+     * {@link ParcelledProjection}: every property of the fixed layout which is neither part of the
+     * header or of the varint block, nor of fixed width.
+     *
+     * @param type       annotated class
+     * @param properties properties of the class
+     *
+     * @return whether projections are generated for the class
+     */
+    private boolean assignProjection(TypeElement type, ImmutableList<Property> properties)
+    {
+        if (type.getAnnotation(ParcelledProjection.class) == null)
+        {
+            return false;
+        }
+        if (properties.size() > Long.SIZE)
+        {
+            mErrorReporter.abortWithError("@ParcelledProjection supports up to 64 properties", type);
+        }
+        for (Property p : properties)
+        {
+            p.prefixed = !p.hasSection() && p.valueBit < 0 && !p.varint
+                    && (p.typeAdapter != null || Parcelables.fixedWidth(p.typeName) < 0);
+        }
+        return true;
+    }
+
+    /**
+     * Generates the static <code>readProjection(in, fieldMask)</code> of a
+     * {@link ParcelledProjection} class and the constructor without mask, which reads everything.
+     */
+    private List<MethodSpec> generateProjection(TypeElement type, TypeName classType, TypeName valueType, boolean projection)
+    {
+        if (!projection)
+        {
+            return ImmutableList.of();
+        }
+        MethodSpec constructor = MethodSpec.constructorBuilder()
+                .addModifiers(PRIVATE)
+                .addParameter(ClassName.get("android.os", "Parcel"), "in")
+                .addStatement("this(in, -1L)")
+                .build();
+        MethodSpec readProjection = MethodSpec.methodBuilder("readProjection")
+                .addJavadoc("Reads only the properties in the given mask of {@code FIELD_*} constants, skipping\n")
+                .addJavadoc("the others; the properties not read keep their default value.\n")
+                .addModifiers(PUBLIC, STATIC)
+                .returns(valueType)
+                .addParameter(ClassName.get("android.os", "Parcel"), "in")
+                .addParameter(long.class, "fieldMask")
+                .addStatement("return new $T(in, fieldMask)", classType)
+                .build();
+        MethodSpec readFrom = MethodSpec.methodBuilder("readFrom")
+                .addAnnotation(Override.class)
+                .addModifiers(PUBLIC)
+                .addParameter(ClassName.get("android.os", "Parcel"), "in")
+                .addStatement("readFrom(in, -1L)")
+                .build();
+        return ImmutableList.of(constructor, readProjection, readFrom);
+    }
+
+    private void assignLazyFields(ImmutableList<Property> properties)
+    {
+        NameAllocator names = new NameAllocator();
+        properties.forEach(p -> names.newName(p.fieldName, p));
+        for (Property p : properties)
+        {
+            if (p.lazy)
+            {
+                p.lazyField = names.newName("lazy" + p.getterName().substring(3));
+            }
+        }
+    }
+
+    private List<FieldSpec> generateLazyFields(ImmutableList<Property> properties)
+    {
+        List<FieldSpec> fields = new ArrayList<>();
+        for (Property p : properties)
+        {
+            if (p.lazy)
+            {
+                fields.add(FieldSpec.builder(ClassName.get("android.os", "Parcel"), p.lazyField, PRIVATE, VOLATILE).build());
+            }
+        }
+        return fields;
+    }
+
+    private List<MethodSpec> generateLazyGetters(
+            ProcessingEnvironment env,
+            ImmutableList<Property> properties,
+            ImmutableMap<TypeMirror, FieldSpec> typeAdapters,
+            CollectionCodecs codecs)
+    {
+        List<MethodSpec> getters = new ArrayList<>();
+        for (Property p : properties)
+        {
+            if (p.lazy)
+            {
+                getters.add(generateLazyGetter(env, p, typeAdapters, codecs));
+            }
+        }
+        return getters;
+    }
+
+    /**
+     * Generates the accessor of a {@link ParcelledLazy} property, which decodes the copied section
+     * on first access. The copy is published through a volatile field, cleared once decoded.
+     *
+     * @param env          processing environment
+     * @param p            lazy property
+     * @param typeAdapters type adapters of the class
+     * @param codecs       codecs of the class
+     *
+     * @return accessor of the property
+     */
+    private MethodSpec generateLazyGetter(
+            ProcessingEnvironment env,
+            Property p,
+            ImmutableMap<TypeMirror, FieldSpec> typeAdapters,
+            CollectionCodecs codecs)
+    {
+        CodeBlock.Builder block = CodeBlock.builder();
+        block.addStatement("$T in = $N", ClassName.get("android.os", "Parcel"), p.lazyField);
+        block.beginControlFlow("if (in != null)");
+        block.beginControlFlow("synchronized (this)");
+        block.addStatement("in = $N", p.lazyField);
+        block.beginControlFlow("if (in != null)");
+        block.addStatement("$T.beginDetached(in)", Parcelables.SESSION);
+        block.beginControlFlow("try");
+        readPropertyValue(env, block, p, typeAdapters, codecs);
+        block.nextControlFlow("finally");
+        block.addStatement("$T.end(in)", Parcelables.SESSION);
+        block.addStatement("in.recycle()");
+        block.addStatement("$N = null", p.lazyField);
+        block.endControlFlow();
+        block.endControlFlow();
+        block.endControlFlow();
+        block.endControlFlow();
+        block.addStatement("return $N", p.fieldName);
+
+        return MethodSpec.methodBuilder(p.getterName())
+                .addAnnotation(Override.class)
+                .addModifiers(PUBLIC)
+                .returns(p.typeName)
+                .addCode(block.build())
+                .build();
+    }
+
+    /**
+     * Generates the static writer used by the other generated classes to write a property of this
+     * type inline: a presence flag followed by {@code writeToParcel()}, without the class name
+     * written by <code>Parcel.writeParcelable</code>.
+     *
+     * <p>With {@link ParcelledIdentity}, an instance already written in the session is written as
+     * its object id plus two instead.
+     *
+     * @param valueType   annotated type
+     * @param isParcelable whether the annotated type already implements <code>Parcelable</code>
+     * @param identity     whether the instances are tracked by identity
+     *
+     * @return static <code>writeValue(value, dest, flags)</code> method
+     */
+    private MethodSpec generateWriteValue(TypeName valueType, boolean isParcelable, boolean identity)
+    {
+        ParameterSpec value = ParameterSpec.builder(valueType, "value").build();
+        ParameterSpec dest = ParameterSpec.builder(ClassName.get("android.os", "Parcel"), "dest").build();
+        ParameterSpec flags = ParameterSpec.builder(int.class, "flags").build();
+        MethodSpec.Builder builder = MethodSpec.methodBuilder("writeValue")
+                .addModifiers(PUBLIC, STATIC)
+                .addParameter(value)
+                .addParameter(dest)
+                .addParameter(flags);
+
+        builder.beginControlFlow("if ($N == null)", value);
+        builder.addStatement("$N.writeInt(1)", dest);
+        builder.addStatement("return");
+        builder.endControlFlow();
+        if (identity)
+        {
+            builder.addStatement("$T.begin($N)", Parcelables.SESSION, dest);
+            builder.beginControlFlow("try");
+            builder.addStatement("int id = $T.writtenId($N, $N)", Parcelables.SESSION, dest, value);
+            builder.beginControlFlow("if (id >= 0)");
+            builder.addStatement("$N.writeInt(id + 2)", dest);
+            builder.addStatement("return");
+            builder.endControlFlow();
+        }
+        builder.addStatement("$N.writeInt(0)", dest);
+        if (isParcelable)
+        {
+            builder.addStatement("$N.writeToParcel($N, $N)", value, dest, flags);
+        } else
+        {
+            builder.addStatement("(($T) $N).writeToParcel($N, $N)",
+                    ClassName.get("android.os", "Parcelable"), value, dest, flags);
+        }
+        if (identity)
+        {
+            builder.nextControlFlow("finally");
+            builder.addStatement("$T.end($N)", Parcelables.SESSION, dest);
+            builder.endControlFlow();
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Generates the static reader matching {@link #generateWriteValue(TypeName, boolean)}, which
+     * calls the private constructor directly instead of looking up the <code>CREATOR</code>.
+     *
+     * @param valueType annotated type
+     * @param classType generated type
+     * @param identity  whether the instances are tracked by identity
+     *
+     * @return static <code>readValue(in)</code> method
+     */
+    private MethodSpec generateReadValue(TypeName valueType, TypeName classType, boolean identity, boolean pooled)
+    {
+        CodeBlock create = pooled ? CodeBlock.of("obtain(in)") : CodeBlock.of("new $T(in)", classType);
+        MethodSpec.Builder builder = MethodSpec.methodBuilder("readValue")
+                .addModifiers(PUBLIC, STATIC)
+                .returns(valueType)
+                .addParameter(ClassName.get("android.os", "Parcel"), "in");
+        if (!identity)
+        {
+            return builder.addStatement("return in.readInt() == 0 ? $L : null", create).build();
+        }
+
+        builder.addStatement("int tag = in.readInt()");
+        builder.beginControlFlow("if (tag == 1)");
+        builder.addStatement("return null");
+        builder.endControlFlow();
+        builder.addStatement("$T.begin(in)", Parcelables.SESSION);
+        builder.beginControlFlow("try");
+        builder.addStatement("return tag == 0 ? $L : ($T) $T.readReference(in, tag - 2)",
+                create, valueType, Parcelables.SESSION);
+        builder.nextControlFlow("finally");
+        builder.addStatement("$T.end(in)", Parcelables.SESSION);
+        builder.endControlFlow();
+        return builder.build();
+    }
+
+    /**
+     * Returns the size of the pool of a {@link ParcelledPooled} class, otherwise {@code 0}.
+     */
+    private int poolSize(TypeElement type)
+    {
+        ParcelledPooled pooled = type.getAnnotation(ParcelledPooled.class);
+        if (pooled == null)
+        {
+            return 0;
+        }
+        if (pooled.value() <= 0)
+        {
+            mErrorReporter.abortWithError("@ParcelledPooled size must be positive", type);
+        }
+        return pooled.value();
+    }
+
+    /**
+     * Adds the pool of a {@link ParcelledPooled} class: the static pool, <code>obtain(in)</code>
+     * decoding into a pooled instance when there is one, and <code>release()</code>.
+     *
+     * @param subClass   generated class
+     * @param classType  generated type
+     * @param properties properties of the class
+     * @param poolSize   maximum number of pooled instances
+     * @param tracked    whether the class is {@link ParcelledTracked}, released clean
+     */
+    private void generatePool(TypeSpec.Builder subClass, TypeName classType, ImmutableList<Property> properties, int poolSize, boolean tracked)
+    {
+        TypeName poolType = ParameterizedTypeName.get(POOL, classType);
+        subClass.addField(FieldSpec.builder(poolType, "POOL", PRIVATE, STATIC, FINAL)
+                .initializer("new $T($L)", poolType, poolSize)
+                .build());
+        // claimed with a compare-and-set before the instance is published to the pool, so that
+        // two threads releasing it can not both pool it; cleared by the thread acquiring it
+        TypeName releasedType = ParameterizedTypeName.get(ClassName.get(AtomicIntegerFieldUpdater.class), classType);
+        subClass.addField(FieldSpec.builder(releasedType, "RELEASED", PRIVATE, STATIC, FINAL)
+                .initializer("$T.newUpdater($T.class, $S)", AtomicIntegerFieldUpdater.class, classType, "released")
+                .build());
+        subClass.addField(FieldSpec.builder(TypeName.INT, "released", PRIVATE, VOLATILE).build());
+
+        subClass.addMethod(MethodSpec.methodBuilder("obtain")
+                .addModifiers(PRIVATE, STATIC)
+                .returns(classType)
+                .addParameter(ClassName.get("android.os", "Parcel"), "in")
+                .addStatement("$T value = POOL.acquire()", classType)
+                .beginControlFlow("if (value == null)")
+                .addStatement("return new $T(in)", classType)
+                .endControlFlow()
+                .addStatement("value.released = 0")
+                .addStatement("value.readFrom(in)")
+                .addStatement("return value")
+                .build());
+
+        // the values are kept, their arrays being reused by the next readFrom()
+        MethodSpec.Builder release = MethodSpec.methodBuilder("release")
+                .addAnnotation(Override.class)
+                .addModifiers(PUBLIC)
+                .beginControlFlow("if (!RELEASED.compareAndSet(this, 0, 1))")
+                .addStatement("throw new $T($S)", IllegalStateException.class, "instance already released")
+                .endControlFlow();
+        for (Property p : properties)
+        {
+            if (p.lazy)
+            {
+                release.addStatement("this.$N = null", p.lazyField);
+            }
+        }
+        if (tracked)
+        {
+            release.addStatement("clearDirty()");
+        }
+        subClass.addMethod(release.addStatement("POOL.release(this)").build());
+    }
+
+    /**
+     * Adds the {@link ParcelledDelta} codec: <code>writeDelta(previous, dest)</code>, writing the
+     * changed properties, and <code>applyDelta(in)</code>. A delta is laid out as a parcel of the
+     * class, with the same per-property codecs, header, varint block, session and sections: the
+     * version, a bitmask of the changed unversioned properties, one bit per property in their
+     * declaration order, the header, the varint block of the changed varint properties, the
+     * changed unversioned properties, then a section per changed versioned property. A reader
+     * skips the sections it does not know, so a delta of an other version applies. A
+     * {@link ParcelledTracked} class also gets <code>writeDirty(dest)</code>, writing its dirty
+     * properties instead of the changed ones.
+     *
+     * @param subClass      generated class
+     * @param version       version of the class
+     * @param interfaceType generated interface, declaring the accessors of the lazy properties
+     * @param valueType     annotated type
+     * @param properties    properties of the class
+     * @param typeAdapters  type adapters of the class
+     * @param codecs        codecs of the class
+     * @param headerBits    number of header bits
+     * @param varints       whether the class writes a varint block
+     * @param session       whether the class joins the session of the parcel
+     * @param identity      whether the instances are tracked by identity
+     * @param tracked       whether the class is {@link ParcelledTracked}
+     */
+    private void generateDelta(
+            TypeSpec.Builder subClass,
+            int version,
+            TypeName interfaceType,
+            TypeName valueType,
+            ImmutableList<Property> properties,
+            ImmutableMap<TypeMirror, FieldSpec> typeAdapters,
+            CollectionCodecs codecs,
+            int headerBits,
+            boolean varints,
+            boolean session,
+            boolean identity,
+            boolean tracked)
+    {
+        ClassName parcel = ClassName.get("android.os", "Parcel");
+        ParameterSpec dest = ParameterSpec.builder(parcel, "dest").build();
+        ParameterSpec flags = ParameterSpec.builder(int.class, "flags").build();
+        int words = Parcelables.headerWords(properties.size());
+        List<Property> unversioned = new ArrayList<>();
+        List<Property> sections = new ArrayList<>();
+        for (Property p : properties)
+        {
+            if (!p.isVersioned())
+            {
+                unversioned.add(p);
+            } else if (p.isWritten(version))
+            {
+                sections.add(p);
+            }
+        }
+
+        // locals of the generated methods must not hide the properties
+        NameAllocator names = new NameAllocator();
+        properties.forEach(p -> names.newName(p.fieldName, p));
+        String start = names.newName("start");
+        String section = names.newName("section");
+
+        // writes the properties selected by the masks, one bit per property of the class
+        MethodSpec.Builder writeMasked = MethodSpec.methodBuilder("writeMasked")
+                .addModifiers(PRIVATE)
+                .addParameter(dest)
+                .addParameter(flags);
+        List<String> masks = new ArrayList<>(words);
+        for (int word = 0; word < words; word++)
+        {
+            writeMasked.addParameter(int.class, "mask" + word);
+            masks.add("mask" + word);
+        }
+        CodeBlock.Builder write = CodeBlock.builder();
+        CodeBlock.Builder read = CodeBlock.builder();
+        if (session)
+        {
+            // join the session of the parcel, as writeToParcel() does
+            write.addStatement("$T.begin($N)", Parcelables.SESSION, dest);
+            write.beginControlFlow("try");
+            read.addStatement("$T.begin(in)", Parcelables.SESSION);
+            read.beginControlFlow("try");
+        }
+        if (identity)
+        {
+            write.addStatement("$T.registerWritten($N, this)", Parcelables.SESSION, dest);
+            read.addStatement("$T.registerRead(in, this)", Parcelables.SESSION);
+        }
+        write.add(Parcelables.writeVersion(version, dest));
+        // the properties of an other version are told apart by their sections
+        read.addStatement("in.readInt()");
+
+        // the bits of the unversioned properties, which keep their order in every version
+        for (int word = 0; word < Parcelables.headerWords(unversioned.size()); word++)
+        {
+            // the bits of the properties before the first versioned one are already in place
+            int inPlace = 0;
+            CodeBlock.Builder bits = CodeBlock.builder();
+            for (int j = word * Integer.SIZE; j < Math.min(unversioned.size(), (word + 1) * Integer.SIZE); j++)
+            {
+                if (properties.indexOf(unversioned.get(j)) == j)
+                {
+                    inPlace |= 1 << j % Integer.SIZE;
+                }
+            }
+            if (inPlace != 0)
+            {
+                if (inPlace == -1)
+                {
+                    bits.add("mask$L", word);
+                } else
+                {
+                    bits.add("mask$L & 0x$L", word, Integer.toHexString(inPlace));
+                }
+            }
+            for (int j = word * Integer.SIZE; j < Math.min(unversioned.size(), (word + 1) * Integer.SIZE); j++)
+            {
+                int i = properties.indexOf(unversioned.get(j));
+                if (i != j)
+                {
+                    bits.add(bits.isEmpty() ? "" : " | ");
+                    bits.add("(mask$L >>> $L & 1) << $L", i / Integer.SIZE, i % Integer.SIZE, j % Integer.SIZE);
+                }
+            }
+            write.addStatement("$N.writeInt($L)", dest, bits.build());
+            read.addStatement("int changed$L = in.readInt()", word);
+        }
+        write.add(Parcelables.writeHeader(properties, headerBits, dest));
+        read.add(Parcelables.readHeader(headerBits));
+        if (varints)
+        {
+            write.add(Parcelables.writeVarints(-1, properties, p -> CodeBlock.of("$L", changedBit("mask", properties.indexOf(p))), dest));
+            read.add(Parcelables.openVarints());
+        }
+
+        if (unversioned.stream().anyMatch(p -> p.lazy || p.prefixed))
+        {
+            write.addStatement("int $N", start);
+        }
+        for (int j = 0; j < unversioned.size(); j++)
+        {
+            Property p = unversioned.get(j);
+            int i = properties.indexOf(p);
+            CodeBlock value = writeProperty(processingEnv, p, dest, flags, typeAdapters, codecs, start);
+            if (!value.isEmpty())
+            {
+                // not part of the header or of the varint block
+                write.beginControlFlow("if ($L)", changedBit("mask", i));
+                write.add(value);
+                write.endControlFlow();
+            }
+            read.beginControlFlow("if ($L)", changedBit("changed", j));
+            if (p.prefixed)
+            {
+                read.addStatement("int end = $T.open(in)", Parcelables.SECTIONS);
+                read.beginControlFlow("try");
+                readPropertyValue(processingEnv, read, p, typeAdapters, codecs);
+                read.nextControlFlow("finally");
+                read.addStatement("$T.close(in, end)", Parcelables.SECTIONS);
+                read.endControlFlow();
+            } else
+            {
+                readProperty(processingEnv, read, p, typeAdapters, codecs);
+            }
+            if (tracked)
+            {
+                // set from the delta, not changed on this instance
+                read.add(markClean(i, properties.size()));
+            }
+            read.endControlFlow();
+        }
+
+        // the changed versioned properties in sections, skipped by the readers not knowing them
+        CodeBlock.Builder count = CodeBlock.builder();
+        for (Property p : sections)
+        {
+            if (!count.isEmpty())
+            {
+                count.add(" + ");
+            }
+            count.add("($L ? 1 : 0)", changedBit("mask", properties.indexOf(p)));
+        }
+        write.addStatement("$N.writeInt(/* sections */ $L)", dest, count.isEmpty() ? "0" : count.build());
+        if (!sections.isEmpty())
+        {
+            write.addStatement("int $N", section);
+        }
+        for (Property p : sections)
+        {
+            write.beginControlFlow("if ($L)", changedBit("mask", properties.indexOf(p)));
+            write.addStatement("$N = $T.begin($N, /* $N */ $L)", section, Parcelables.SECTIONS, dest, p.fieldName, sectionTag(p));
+            write.add(writeProperty(processingEnv, p, dest, flags, typeAdapters, codecs, start));
+            write.addStatement("$T.end($N, $N)", Parcelables.SECTIONS, dest, section);
+            write.endControlFlow();
+        }
+        read.addStatement("int sections = in.readInt()");
+        read.beginControlFlow("for (int i = 0; i < sections; i++)");
+        read.addStatement("int tag = in.readInt()");
+        read.addStatement("int end = $T.open(in)", Parcelables.SECTIONS);
+        read.beginControlFlow("try");
+        read.beginControlFlow("switch (tag)");
+        for (Property p : properties)
+        {
+            if (p.isVersioned())
+            {
+                read.add("case $L: // $N\n", sectionTag(p), p.fieldName);
+                read.indent();
+                readProperty(processingEnv, read, p, typeAdapters, codecs);
+                if (tracked)
+                {
+                    read.add(markClean(properties.indexOf(p), properties.size()));
+                }
+                read.addStatement("break");
+                read.unindent();
+            }
+        }
+        read.endControlFlow();
+        read.nextControlFlow("finally");
+        read.addStatement("$T.close(in, end)", Parcelables.SECTIONS);
+        read.endControlFlow();
+        read.endControlFlow();
+
+        if (session)
+        {
+            write.nextControlFlow("finally");
+            write.addStatement("$T.end($N)", Parcelables.SESSION, dest);
+            write.endControlFlow();
+            read.nextControlFlow("finally");
+            read.addStatement("$T.end(in)", Parcelables.SESSION);
+            read.endControlFlow();
+        }
+        subClass.addMethod(writeMasked.addCode(write.build()).build());
+
+        CodeBlock.Builder compare = CodeBlock.builder();
+        for (int word = 0; word < words; word++)
+        {
+            compare.addStatement("int mask$L = 0", word);
+        }
+        for (int i = 0; i < properties.size(); i++)
+        {
+            Property p = properties.get(i);
+            CodeBlock current = p.lazy ? CodeBlock.of("$N()", p.getterName()) : CodeBlock.of("this.$N", p.fieldName);
+            CodeBlock previous = p.lazy
+                    ? CodeBlock.of("(($T) previous).$N()", interfaceType, p.getterName())
+                    : CodeBlock.of("previous.$N", p.fieldName);
+            compare.beginControlFlow("if (previous == null || $L)", changed(p.typeName, current, previous));
+            compare.addStatement("mask$L |= $L", i / Integer.SIZE, "1 << " + (i % Integer.SIZE));
+            compare.endControlFlow();
+        }
+        compare.addStatement("writeMasked($N, $N, $L)", dest, flags, String.join(", ", masks));
+
+        subClass.addMethod(MethodSpec.methodBuilder("writeDelta")
+                .addAnnotation(Override.class)
+                .addModifiers(PUBLIC)
+                .addParameter(valueType, "previous")
+                .addParameter(dest)
+                .addStatement("writeDelta(previous, $N, 0)", dest)
+                .build());
+        subClass.addMethod(MethodSpec.methodBuilder("writeDelta")
+                .addAnnotation(Override.class)
+                .addModifiers(PUBLIC)
+                .addParameter(valueType, "previous")
+                .addParameter(dest)
+                .addParameter(flags)
+                .addCode(compare.build())
+                .build());
+        subClass.addMethod(MethodSpec.methodBuilder("applyDelta")
+                .addAnnotation(Override.class)
+                .addModifiers(PUBLIC)
+                .addParameter(parcel, "in")
+                .addCode(read.build())
+                .build());
+
+        if (tracked)
+        {
+            // the int words of the delta out of the long words of the dirty mask
+            List<String> dirty = new ArrayList<>(words);
+            for (int word = 0; word < words; word++)
+            {
+                String value = properties.size() > Long.SIZE ? "dirty[" + word / 2 + "]" : "dirty";
+                dirty.add(word % 2 == 0 ? "(int) " + value : "(int) (" + value + " >>> 32)");
+            }
+            subClass.addMethod(MethodSpec.methodBuilder("writeDirty")
+                    .addAnnotation(Override.class)
+                    .addModifiers(PUBLIC)
+                    .addParameter(dest)
+                    .addStatement("writeMasked($N, 0, $L)", dest, String.join(", ", dirty))
+                    .build());
+        }
+    }
+
+    /**
+     * Adds the {@link ParcelledTracked} accessors: a setter per property marking its bit,
+     * <code>isDirty()</code>, <code>dirtyMask()</code> and <code>clearDirty()</code>. The mask
+     * is a <code>long</code>, or a <code>long[]</code> beyond 64 properties.
+     *
+     * @param subClass   generated class
+     * @param properties properties of the class
+     */
+    private void generateTracked(TypeSpec.Builder subClass, ImmutableList<Property> properties)
+    {
+        boolean wide = properties.size() > Long.SIZE;
+        int words = (properties.size() + Long.SIZE - 1) / Long.SIZE;
+        if (wide)
+        {
+            subClass.addField(FieldSpec.builder(long[].class, "dirty", PRIVATE, FINAL)
+                    .initializer("new long[$L]", words)
+                    .build());
+        } else
+        {
+            subClass.addField(long.class, "dirty", PRIVATE);
+        }
+
+        for (int i = 0; i < properties.size(); i++)
+        {
+            Property p = properties.get(i);
+            MethodSpec.Builder setter = MethodSpec.methodBuilder(p.setterName())
+                    .addAnnotation(Override.class)
+                    .addModifiers(PUBLIC)
+                    .addParameter(p.typeName, p.fieldName)
+                    .addStatement("this.$N = $N", p.fieldName, p.fieldName);
+            if (p.lazy)
+            {
+                // the value set wins over the copy not decoded yet
+                setter.addStatement("this.$N = null", p.lazyField);
+            }
+            subClass.addMethod(setter
+                    .addStatement("$L |= 1L << $L", wide ? "dirty[" + i / Long.SIZE + "]" : "dirty", i % Long.SIZE)
+                    .build());
+        }
+
+        MethodSpec.Builder isDirty = MethodSpec.methodBuilder("isDirty")
+                .addAnnotation(Override.class)
+                .addModifiers(PUBLIC)
+                .returns(boolean.class);
+        MethodSpec.Builder clearDirty = MethodSpec.methodBuilder("clearDirty")
+                .addAnnotation(Override.class)
+                .addModifiers(PUBLIC);
+        MethodSpec.Builder dirtyMask = MethodSpec.methodBuilder("dirtyMask")
+                .addAnnotation(Override.class)
+                .addModifiers(PUBLIC);
+        if (wide)
+        {
+            isDirty.beginControlFlow("for (long word : dirty)")
+                    .beginControlFlow("if (word != 0)")
+                    .addStatement("return true")
+                    .endControlFlow()
+                    .endControlFlow()
+                    .addStatement("return false");
+            clearDirty.addStatement("$T.fill(dirty, 0L)", Arrays.class);
+            dirtyMask.returns(long[].class).addStatement("return dirty.clone()");
+        } else
+        {
+            isDirty.addStatement("return dirty != 0");
+            clearDirty.addStatement("dirty = 0L");
+            dirtyMask.returns(long.class).addStatement("return dirty");
+        }
+        subClass.addMethod(isDirty.build());
+        subClass.addMethod(clearDirty.build());
+        subClass.addMethod(dirtyMask.build());
+    }
+
+    /**
+     * Returns the statements marking every property of a {@link ParcelledTracked} class dirty.
+     */
+    private static CodeBlock markAllDirty(int count)
+    {
+        CodeBlock.Builder block = CodeBlock.builder();
+        for (int word = 0; word * Long.SIZE < count; word++)
+        {
+            int bits = Math.min(Long.SIZE, count - word * Long.SIZE);
+            String mask = bits == Long.SIZE ? "-1L" : "0x" + Long.toHexString((1L << bits) - 1) + "L";
+            block.addStatement("$L = $L", count > Long.SIZE ? "dirty[" + word + "]" : "dirty", mask);
+        }
+        return block.build();
+    }
+
+    /**
+     * Returns the condition testing the given bit of the <code>int</code> words named after the
+     * prefix.
+     */
+    private static String changedBit(String prefix, int bit)
+    {
+        return "(" + prefix + bit / Integer.SIZE + " & 1 << " + bit % Integer.SIZE + ") != 0";
+    }
+
+    /**
+     * Returns the statement clearing the dirty bit of the given property of a
+     * {@link ParcelledTracked} class.
+     */
+    private static CodeBlock markClean(int index, int count)
+    {
+        return count > Long.SIZE
+                ? CodeBlock.builder().addStatement("dirty[$L] &= ~(1L << $L)", index / Long.SIZE, index % Long.SIZE).build()
+                : CodeBlock.builder().addStatement("dirty &= ~(1L << $L)", index).build();
+    }
+
+    /**
+     * Returns the condition under which the two values of a property differ.
+     */
+    private static CodeBlock changed(TypeName type, CodeBlock current, CodeBlock previous)
+    {
+        if (type.equals(TypeName.FLOAT))
+        {
+            return CodeBlock.of("$T.compare($L, $L) != 0", Float.class, current, previous);
+        } else if (type.equals(TypeName.DOUBLE))
+        {
+            return CodeBlock.of("$T.compare($L, $L) != 0", Double.class, current, previous);
+        } else if (type.isPrimitive())
+        {
+            return CodeBlock.of("$L != $L", current, previous);
+        } else if (type instanceof ArrayTypeName)
+        {
+            boolean nested = ((ArrayTypeName) type).componentType instanceof ArrayTypeName;
+            return CodeBlock.of("!$T.$L($L, $L)", Arrays.class, nested ? "deepEquals" : "equals", current, previous);
+        }
+        return CodeBlock.of("!$T.equals($L, $L)", Objects.class, current, previous);
+    }
+
+    /**
+     * Adds the {@link ParcelledPortable} codec: <code>writeTo(sink)</code> and
+     * <code>readFrom(source)</code>, writing the version followed by every property in place, the
+     * static writer and reader used by the other portable classes, and the static
+     * <code>RECORDS</code>, writing the properties without the version for the streams carrying it
+     * once per frame.
+     *
+     * @param subClass     generated class
+     * @param type         annotated type
+     * @param version      version of the class
+     * @param classType    generated type
+     * @param properties   properties of the class
+     * @param typeAdapters type adapters of the class
+     * @param identity     whether the instances are tracked by identity
+     * @param tracked      whether the class is {@link ParcelledTracked}, marked clean once read
+     */
+    private void generatePortable(
+            TypeSpec.Builder subClass,
+            TypeElement type,
+            int version,
+            TypeName classType,
+            ImmutableList<Property> properties,
+            ImmutableMap<TypeMirror, FieldSpec> typeAdapters,
+            boolean identity,
+            boolean tracked)
+    {
+        if (identity || !typeAdapters.isEmpty())
+        {
+            mErrorReporter.abortWithError("@ParcelledPortable does not support @ParcelledIdentity or type adapters", type);
+        }
+        TypeName valueType = ClassName.get(type);
+        PortableCodecs portable = new PortableCodecs(processingEnv, (ClassName) classType);
+
+        CodeBlock.Builder write = CodeBlock.builder();
+        CodeBlock.Builder read = CodeBlock.builder();
+        // a newer version may have properties unknown to this one
+        read.beginControlFlow("if (version > $L)", version);
+        read.addStatement("throw new $T($S + version)", IllegalArgumentException.class, "Unknown version ");
+        read.endControlFlow();
+        read.addStatement("this.version = version");
+        for (Property p : properties)
+        {
+            if (!portable.isPortable(p.element.asType()))
+            {
+                mErrorReporter.abortWithError("@ParcelledPortable does not support the type of " + p.fieldName, p.element);
+            }
+            if (!p.isVersioned() || p.isWritten(version))
+            {
+                if (p.lazy)
+                {
+                    // decodes the copied section first
+                    write.addStatement("$N()", p.getterName());
+                }
+                write.add(portable.write(p.element.asType(), "this." + p.fieldName));
+            }
+
+            if (p.lazy)
+            {
+                read.addStatement("this.$N = null", p.lazyField);
+            }
+            if (!p.isVersioned())
+            {
+                read.addStatement("this.$N = $L", p.fieldName, portable.read(p.element.asType()));
+                continue;
+            }
+            // read only if written by the version of the sink
+            String written = "version >= " + p.getAfterVersion()
+                    + (p.getBeforeVersion() == 0 ? "" : " && version <= " + p.getBeforeVersion());
+            read.beginControlFlow("if ($L)", written);
+            read.addStatement("this.$N = $L", p.fieldName, portable.read(p.element.asType()));
+            read.nextControlFlow("else");
+            read.addStatement("this.$N = $L", p.fieldName, defaultValue(p.typeName));
+            read.endControlFlow();
+        }
+
+        subClass.addMethod(MethodSpec.methodBuilder("writeTo")
+                .addAnnotation(Override.class)
+                .addModifiers(PUBLIC)
+                .addParameter(PortableCodecs.SINK, "sink")
+                .addStatement("sink.writeInt( /* version */ $L)", version)
+                .addStatement("writeFields(sink)")
+                .build());
+        MethodSpec.Builder readFrom = MethodSpec.methodBuilder("readFrom")
+                .addAnnotation(Override.class)
+                .addModifiers(PUBLIC)
+                .addParameter(PortableCodecs.SOURCE, "source");
+        if (tracked)
+        {
+            readFrom.addStatement("clearDirty()");
+        }
+        subClass.addMethod(readFrom.addStatement("readFields(source, source.readInt())").build());
+        subClass.addMethod(MethodSpec.methodBuilder("writeFields")
+                .addModifiers(PRIVATE)
+                .addParameter(PortableCodecs.SINK, "sink")
+                .addCode(write.build())
+                .build());
+        // like the constructor from Parcel, without the @Default values of the auto constructor
+        subClass.addMethod(MethodSpec.constructorBuilder()
+                .addModifiers(PRIVATE)
+                .addParameter(PortableCodecs.SOURCE, "source")
+                .addParameter(int.class, "version")
+                .addStatement("readFields(source, version)")
+                .build());
+        subClass.addMethod(MethodSpec.methodBuilder("readFields")
+                .addModifiers(PRIVATE)
+                .addParameter(PortableCodecs.SOURCE, "source")
+                .addParameter(int.class, "version")
+                .addCode(read.build())
+                .build());
+
+        TypeName recordsType = ParameterizedTypeName.get(RECORDS, valueType);
+        TypeSpec records = TypeSpec.anonymousClassBuilder("/* version */ $L", version)
+                .superclass(recordsType)
+                .addMethod(MethodSpec.methodBuilder("write")
+                        .addAnnotation(Override.class)
+                        .addModifiers(PUBLIC)
+                        .addParameter(valueType, "value")
+                        .addParameter(PortableCodecs.SINK, "sink")
+                        .addStatement("(($T) value).writeFields(sink)", classType)
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("read")
+                        .addAnnotation(Override.class)
+                        .addModifiers(PUBLIC)
+                        .returns(valueType)
+                        .addParameter(PortableCodecs.SOURCE, "source")
+                        .addParameter(int.class, "version")
+                        .addStatement("return new $T(source, version)", classType)
+                        .build())
+                .build();
+        subClass.addField(FieldSpec.builder(recordsType, "RECORDS", PUBLIC, STATIC, FINAL)
+                .initializer("$L", records)
+                .build());
+        subClass.addMethod(MethodSpec.methodBuilder("writeValue")
+                .addModifiers(PUBLIC, STATIC)
+                .addParameter(valueType, "value")
+                .addParameter(PortableCodecs.SINK, "sink")
+                .beginControlFlow("if (value == null)")
+                .addStatement("sink.writeInt(1)")
+                .nextControlFlow("else")
+                .addStatement("sink.writeInt(0)")
+                .addStatement("(($T) value).writeTo(sink)", classType)
+                .endControlFlow()
+                .build());
+        subClass.addMethod(MethodSpec.methodBuilder("readValue")
+                .addModifiers(PUBLIC, STATIC)
+                .returns(valueType)
+                .addParameter(PortableCodecs.SOURCE, "source")
+                .beginControlFlow("if (source.readInt() != 0)")
+                .addStatement("return null")
+                .endControlFlow()
+                .addStatement("return new $T(source, source.readInt())", classType)
+                .build());
+        subClass.addMethods(portable.methods());
+    }
+
+    /**
+     * Adds the {@link ParcelledColumnar} codec: the static <code>BATCH</code>, writing one column
+     * per property in a tagged section, and the instance methods writing and reading the
+     * properties without a columnar codec, one row after the other.
+     *
+     * @param subClass     generated class
+     * @param version      version of the class
+     * @param classType    generated type
+     * @param valueType    annotated type
+     * @param properties   properties of the class
+     * @param typeAdapters type adapters of the class
+     * @param codecs       codecs of the class
+     */
+    private void generateBatch(
+            TypeSpec.Builder subClass,
+            int version,
+            TypeName classType,
+            TypeName valueType,
+            ImmutableList<Property> properties,
+            ImmutableMap<TypeMirror, FieldSpec> typeAdapters,
+            CollectionCodecs codecs)
+    {
+        ClassName parcel = ClassName.get("android.os", "Parcel");
+        List<Property> columns = new ArrayList<>();
+        for (Property p : properties)
+        {
+            if (!p.isVersioned() || p.isWritten(version))
+            {
+                columns.add(p);
+            }
+        }
+
+        // the columns
+        CodeBlock.Builder write = CodeBlock.builder()
+                .beginControlFlow("if (rows == null)")
+                .addStatement("dest.writeInt(-1)")
+                .addStatement("return")
+                .endControlFlow()
+                .addStatement("int size = rows.size()")
+                .addStatement("dest.writeInt(size)")
+                .addStatement("dest.writeInt(/* version */ $L)", version)
+                .addStatement("$T[] values = rows.toArray(new $T[size])", classType, classType)
+                .addStatement("$T.writeNulls(values, dest)", BATCH)
+                .addStatement("dest.writeInt(/* columns */ $L)", columns.size());
+        if (!columns.isEmpty())
+        {
+            write.addStatement("int section");
+        }
+        CodeBlock.Builder read = CodeBlock.builder()
+                .addStatement("int size = in.readInt()")
+                .beginControlFlow("if (size < 0)")
+                .addStatement("return null")
+                .endControlFlow()
+                .addStatement("int version = in.readInt()")
+                .addStatement("$T[] values = new $T[size]", classType, classType)
+                .beginControlFlow("for (int i = 0; i < size; i++)")
+                .addStatement("values[i] = new $T(this, version)", classType)
+                .endControlFlow()
+                .addStatement("$T.readNulls(values, in)", BATCH)
+                .addStatement("int columns = in.readInt()")
+                .beginControlFlow("for (int c = 0; c < columns; c++)")
+                .addStatement("int tag = in.readInt()")
+                .addStatement("int end = $T.open(in)", Parcelables.SECTIONS)
+                .beginControlFlow("try")
+                .beginControlFlow("switch (tag)");
+
+        // the properties written row by row
+        NameAllocator names = new NameAllocator();
+        properties.forEach(p -> names.newName(p.fieldName, p));
+        String column = names.newName("column");
+        CodeBlock.Builder writeRow = CodeBlock.builder().beginControlFlow("switch ($N)", column);
+        CodeBlock.Builder readRow = CodeBlock.builder().beginControlFlow("switch ($N)", column);
+        boolean rows = false;
+
+        for (Property p : columns)
+        {
+            String value = p.lazy ? p.getterName() + "()" : p.fieldName;
+            write.addStatement("section = $T.begin(dest, /* $N */ $L)", Parcelables.SECTIONS, p.fieldName, sectionTag(p));
+            read.add("case $L: // $N\n", sectionTag(p), p.fieldName).indent();
+            String kind = columnKind(p);
+            if (kind == null)
+            {
+                // the codec of the property, one row after the other
+                int index = properties.indexOf(p);
+                write.beginControlFlow("for (int i = 0; i < size; i++)")
+                        .beginControlFlow("if (values[i] != null)")
+                        .addStatement("values[i].writeColumn(/* $N */ $L, dest, flags)", p.fieldName, index)
+                        .endControlFlow()
+                        .endControlFlow();
+                read.beginControlFlow("for (int i = 0; i < size; i++)")
+                        .beginControlFlow("if (values[i] != null)")
+                        .addStatement("values[i].readColumn(/* $N */ $L, in)", p.fieldName, index)
+                        .endControlFlow()
+                        .endControlFlow();
+
+                Property plain = plainProperty(p, codecs);
+                ParameterSpec dest = ParameterSpec.builder(parcel, "dest").build();
+                ParameterSpec flags = ParameterSpec.builder(int.class, "flags").build();
+                writeRow.add("case $L: // $N\n", index, p.fieldName).indent();
+                if (p.lazy)
+                {
+                    writeRow.addStatement("$N()", p.getterName());
+                }
+                writeRow.add(writeProperty(processingEnv, plain, dest, flags, typeAdapters, codecs, null))
+                        .addStatement("break")
+                        .unindent();
+                readRow.add("case $L: // $N\n", index, p.fieldName).indent();
+                readPropertyValue(processingEnv, readRow, plain, typeAdapters, codecs);
+                readRow.addStatement("break").unindent();
+                rows = true;
+            } else
+            {
+                TypeName columnType = kind.equals("Enum") ? ClassName.get(String.class)
+                        : kind.equals("Int") ? TypeName.INT : p.typeName;
+                String suffix = kind.equals("Enum") ? "String" : kind;
+                write.add("{\n").indent()
+                        .addStatement("$T[] column = new $T[size]", columnType, columnType)
+                        .beginControlFlow("for (int i = 0; i < size; i++)")
+                        .beginControlFlow("if (values[i] != null)");
+                if (kind.equals("Enum"))
+                {
+                    write.addStatement("column[i] = values[i].$L == null ? null : values[i].$L.name()", value, value);
+                } else
+                {
+                    write.addStatement("column[i] = values[i].$L", value);
+                }
+                write.endControlFlow()
+                        .endControlFlow()
+                        .addStatement("$T.write$LColumn(column, dest)", BATCH, suffix)
+                        .unindent().add("}\n");
+
+                read.add("{\n").indent()
+                        .addStatement("$T[] column = $T.read$LColumn(in, size)", columnType, BATCH, suffix)
+                        .beginControlFlow("for (int i = 0; i < size; i++)")
+                        .beginControlFlow("if (values[i] != null)");
+                if (kind.equals("Enum"))
+                {
+                    read.addStatement("values[i].$N = column[i] == null ? null : $T.valueOf(column[i])", p.fieldName, p.typeName);
+                } else if (!columnType.equals(p.typeName))
+                {
+                    read.addStatement("values[i].$N = ($T) column[i]", p.fieldName, p.typeName);
+                } else
+                {
+                    read.addStatement("values[i].$N = column[i]", p.fieldName);
+                }
+                read.endControlFlow()
+                        .endControlFlow()
+                        .unindent().add("}\n");
+            }
+            write.addStatement("$T.end(dest, section)", Parcelables.SECTIONS);
+            read.addStatement("break").unindent();
+        }
+
+        read.endControlFlow()
+                .nextControlFlow("finally")
+                .addStatement("$T.close(in, end)", Parcelables.SECTIONS)
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("return new $T<$T>($T.asList(values))", ArrayList.class, valueType, Arrays.class);
+
+        TypeName batchType = ParameterizedTypeName.get(BATCH, valueType);
+        TypeSpec batch = TypeSpec.anonymousClassBuilder("")
+                .superclass(batchType)
+                .addMethod(MethodSpec.methodBuilder("write")
+                        .addAnnotation(Override.class)
+                        .addModifiers(PUBLIC)
+                        .addParameter(ParameterizedTypeName.get(ClassName.get(List.class), valueType), "rows")
+                        .addParameter(parcel, "dest")
+                        .addParameter(int.class, "flags")
+                        .addCode(write.build())
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("read")
+                        .addAnnotation(Override.class)
+                        .addModifiers(PUBLIC)
+                        .returns(ParameterizedTypeName.get(ClassName.get(ArrayList.class), valueType))
+                        .addParameter(parcel, "in")
+                        .addCode(read.build())
+                        .build())
+                .build();
+        subClass.addField(FieldSpec.builder(batchType, "BATCH", PUBLIC, STATIC, FINAL)
+                .initializer("$L", batch)
+                .build());
+        // a row filled column by column, without the @Default values of the auto constructor
+        subClass.addMethod(MethodSpec.constructorBuilder()
+                .addModifiers(PRIVATE)
+                .addParameter(ParameterizedTypeName.get(BATCH, WildcardTypeName.subtypeOf(Object.class)), "batch")
+                .addParameter(int.class, "version")
+                .addStatement("this.version = version")
+                .build());
+
+        if (rows)
+        {
+            subClass.addMethod(MethodSpec.methodBuilder("writeColumn")
+                    .addModifiers(PRIVATE)
+                    .addParameter(int.class, column)
+                    .addParameter(parcel, "dest")
+                    .addParameter(int.class, "flags")
+                    .addCode(writeRow.endControlFlow().build())
+                    .build());
+            subClass.addMethod(MethodSpec.methodBuilder("readColumn")
+                    .addModifiers(PRIVATE)
+                    .addParameter(int.class, column)
+                    .addParameter(parcel, "in")
+                    .addCode(readRow.endControlFlow().build())
+                    .build());
+        }
+    }
+
+    /**
+     * Returns the suffix of the {@link ParcelledBatch} codec of the column of a property, or
+     * {@code null} when it is written row by row.
+     */
+    private String columnKind(Property p)
+    {
+        if (p.typeAdapter != null || p.compressed != null)
+        {
+            return null;
+        }
+        TypeName type = p.typeName;
+        if (type.equals(TypeName.INT) || type.equals(TypeName.SHORT) || type.equals(TypeName.BYTE) || type.equals(TypeName.CHAR))
+        {
+            return "Int";
+        } else if (type.equals(TypeName.LONG))
+        {
+            return "Long";
+        } else if (type.equals(TypeName.FLOAT))
+        {
+            return "Float";
+        } else if (type.equals(TypeName.DOUBLE))
+        {
+            return "Double";
+        } else if (type.equals(TypeName.BOOLEAN))
+        {
+            return "Boolean";
+        } else if (type.equals(ClassName.get(String.class)))
+        {
+            return "String";
+        } else if (p.element.asType().getKind() == TypeKind.DECLARED
+                && mTypeUtils.asElement(p.element.asType()).getKind() == ElementKind.ENUM)
+        {
+            return "Enum";
+        }
+        return null;
+    }
+
+    /**
+     * Returns a copy of the property written with the codec of its type alone, outside of the
+     * header, the varint block and the sections of the class.
+     */
+    private Property plainProperty(Property p, CollectionCodecs codecs)
+    {
+        Property plain = new Property(p.fieldName, p.element);
+        plain.typeAdapter = p.typeAdapter;
+        plain.lazy = false;
+        plain.nullFlag = needsNullFlag(p, codecs);
+        return plain;
+    }
+
+    /**
+     * Returns whether the property is written after a null flag: a nullable property whose codec
+     * does not encode {@code null} itself, and a <code>Date</code> without adapter, whose codec
+     * writes the bare time.
+     */
+    private static boolean needsNullFlag(Property p, CollectionCodecs codecs)
+    {
+        if (p.typeName.isPrimitive())
+        {
+            return false;
+        } else if (p.typeAdapter != null)
+        {
+            return p.isNullable();
+        }
+        return Parcelables.isDate(p) || p.isNullable() && !codecs.isNullSafe(p.element.asType(), p.element);
+    }
+
+    private MethodSpec generateDescribeContents(int spillThreshold)
+    {
+        MethodSpec.Builder builder = MethodSpec.methodBuilder("describeContents")
+                .addAnnotation(Override.class)
+                .addModifiers(PUBLIC)
+                .returns(int.class);
+        if (spillThreshold > 0)
+        {
+            // a spilled instance is written as a file descriptor
+            return builder.addStatement("return $T.describeContents(this, /* threshold */ $L)", SPILL, spillThreshold).build();
+        }
+        return builder.addStatement("return 0").build();
+    }
+
+    /**
+     * Returns the threshold of a {@link ParcelledSpillable} class, otherwise {@code 0}.
+     */
+    private int spillThreshold(TypeElement type)
+    {
+        ParcelledSpillable spillable = type.getAnnotation(ParcelledSpillable.class);
+        if (spillable == null)
+        {
+            return 0;
+        }
+        if (spillable.threshold() <= 0)
+        {
+            mErrorReporter.abortWithError("@ParcelledSpillable threshold must be positive", type);
+        }
+        return spillable.threshold();
+    }
+
+    private MethodSpec generateIParcelled(ImmutableList<Property> properties, boolean tracked)
+    {
+        MethodSpec.Builder builder = MethodSpec.methodBuilder("setValues")
+                .addAnnotation(Override.class)
+                .addModifiers(PUBLIC);
+
+        List<ParameterSpec> params = Lists.newArrayListWithCapacity(properties.size());
+        for (Property property : properties)
+        {
+            params.add(ParameterSpec.builder(property.typeName, property.fieldName).build());
+        }
+        for (ParameterSpec param : params)
+        {
+            builder.addJavadoc("\n@param " + param.name + " {@link " + param.type + "}");
+            builder.addParameter(param.type, param.name);
+            builder.addStatement("this.$N = $N", param.name, param.name);
+        }
+        for (Property property : properties)
+        {
+            if (property.lazy)
+            {
+                // the values set win over the copies not decoded yet
+                builder.addStatement("this.$N = null", property.lazyField);
+            }
+        }
+        if (tracked)
+        {
+            builder.addCode(markAllDirty(properties.size()));
+        }
+
+        return builder.build();
+    }
+
+    private FieldSpec generateCreator(TypeName type, boolean pooled)
     {
         ClassName creator = ClassName.bestGuess("android.os.Parcelable.Creator");
         TypeName creatorOfClass = ParameterizedTypeName.get(creator, type);
 
         CodeBlock.Builder ctorCall = CodeBlock.builder();
-        ctorCall.add("return new $T(in);\n", type);
+        if (pooled)
+        {
+            ctorCall.add("return obtain(in);\n");
+        } else
+        {
+            ctorCall.add("return new $T(in);\n", type);
+        }
 
         // Method createFromParcel()
         MethodSpec.Builder createFromParcel = MethodSpec.methodBuilder("createFromParcel")
@@ -659,6 +2842,24 @@ public final class ParcelledProcessor extends AbstractProcessor
         final int afterVersion;
         final int beforeVersion;
         TypeMirror typeAdapter;
+        // bit of the packed header holding the boolean value, -1 if none
+        int valueBit = -1;
+        // bit of the packed header holding the null flag, -1 if none
+        int nullBit = -1;
+        // whether the value is part of the varint block
+        boolean varint;
+        // whether the value is written through the session string table
+        boolean stringTable;
+        // whether the null flag is written inline, as for the versioned and lazy properties
+        boolean nullFlag;
+        // whether the value is decoded on first access
+        boolean lazy;
+        // field holding the copied section of a lazy property until it is decoded
+        String lazyField;
+        // whether the value is length-prefixed, so that projections can skip it
+        boolean prefixed;
+        // compression of the value, if any
+        final ParcelledCompressed compressed;
 
         Property(String fieldName, VariableElement element)
         {
@@ -690,6 +2891,9 @@ public final class ParcelledProcessor extends AbstractProcessor
             this.version = parcelledVersion == null ? 0 : parcelledVersion.after();
             this.afterVersion = parcelledVersion == null ? 0 : parcelledVersion.after();
             this.beforeVersion = parcelledVersion == null ? 0 : parcelledVersion.before();
+
+            this.lazy = element.getAnnotation(ParcelledLazy.class) != null;
+            this.compressed = element.getAnnotation(ParcelledCompressed.class);
         }
 
         public boolean isNullable()
@@ -697,6 +2901,48 @@ public final class ParcelledProcessor extends AbstractProcessor
             return this.annotations.contains("Nullable");
         }
 
+        public boolean isVersioned()
+        {
+            return this.afterVersion > 0 || this.beforeVersion > 0;
+        }
+
+        /**
+         * Returns whether a versioned property is written by the given version of the class.
+         */
+        public boolean isWritten(int version)
+        {
+            return version >= getAfterVersion() && (getBeforeVersion() == 0 || version <= getBeforeVersion());
+        }
+
+        /**
+         * Returns whether the property is written in its own length-prefixed section instead of
+         * the fixed layout of the class.
+         */
+        public boolean hasSection()
+        {
+            return isVersioned() || this.lazy;
+        }
+
+        public String fieldConstant()
+        {
+            return "FIELD_" + CaseFormat.LOWER_CAMEL.to(CaseFormat.UPPER_UNDERSCORE, this.fieldName);
+        }
+
+        public String indexConstant()
+        {
+            return "INDEX_" + CaseFormat.LOWER_CAMEL.to(CaseFormat.UPPER_UNDERSCORE, this.fieldName);
+        }
+
+        public String setterName()
+        {
+            return "set" + Character.toUpperCase(this.fieldName.charAt(0)) + this.fieldName.substring(1);
+        }
+
+        public String getterName()
+        {
+            return "get" + Character.toUpperCase(this.fieldName.charAt(0)) + this.fieldName.substring(1);
+        }
+
         public int getAfterVersion()
         {
             return this.afterVersion;
@@ -0,0 +1,249 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled.internal.codegen;
+
+import com.zeoflow.jx.file.ArrayTypeName;
+import com.zeoflow.jx.file.ClassName;
+import com.zeoflow.jx.file.CodeBlock;
+import com.zeoflow.jx.file.ParameterSpec;
+import com.zeoflow.jx.file.TypeName;
+import com.zeoflow.parcelled.Parcelled;
+import com.zeoflow.parcelled.ParcelledPortable;
+import com.zeoflow.parcelled.internal.common.Visibility;
+
+import java.util.List;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Generates the codecs of the properties of a single {@link ParcelledPortable} class, which write
+ * to a <code>ParcelledSink</code> named {@code sink} and read from a <code>ParcelledSource</code>
+ * named {@code source} instead of a <code>Parcel</code>.
+ * <p>
+ * The encoding is self-contained: there is no packed header, varint block, string table or
+ * section, every value is written in place with the primitives of the sink. The loops over lists
+ * and maps are generated by {@link ContainerCodecs}, as for a <code>Parcel</code>, and must be
+ * added to the generated class through {@link #methods()}.
+ */
+final class PortableCodecs extends ContainerCodecs
+{
+
+    static final ClassName SINK = ClassName.get("com.zeoflow.parcelled", "ParcelledSink");
+    static final ClassName SOURCE = ClassName.get("com.zeoflow.parcelled", "ParcelledSource");
+
+    private static final TypeName DATE = ClassName.get("java.util", "Date");
+
+    private final String pkg;
+
+    PortableCodecs(ProcessingEnvironment env, ClassName generatedClass)
+    {
+        super(env, ParameterSpec.builder(SINK, "sink").build(), ParameterSpec.builder(SOURCE, "source").build(), false);
+        this.pkg = generatedClass.packageName();
+    }
+
+    /**
+     * Returns whether a property of the given type can be written to a sink: a primitive, a
+     * boxed primitive, a String, a Date, an enum, an array of primitives or Strings, a reachable
+     * {@link ParcelledPortable} class, or a list or map of the non-array ones.
+     */
+    boolean isPortable(TypeMirror type)
+    {
+        if (type.getKind().isPrimitive() || arrayMethod(type) != null)
+        {
+            return true;
+        }
+        if (TypeName.get(type).equals(DATE))
+        {
+            return true;
+        }
+        return kindOf(type) != null || listElementType(type) != null || mapEntryTypes(type) != null;
+    }
+
+    /**
+     * Returns the statements writing {@code value} of the given type to {@code sink}.
+     */
+    CodeBlock write(TypeMirror type, String value)
+    {
+        CodeBlock.Builder block = CodeBlock.builder();
+        TypeName typeName = TypeName.get(type);
+        String arrayMethod = arrayMethod(type);
+        if (type.getKind().isPrimitive())
+        {
+            block.addStatement("$L", writePrimitive(typeName, value, out));
+        } else if (arrayMethod != null)
+        {
+            block.addStatement("$N.write$L($N)", out, arrayMethod, value);
+        } else if (typeName.equals(DATE))
+        {
+            block.beginControlFlow("if ($N == null)", value);
+            block.addStatement("$N.writeInt(1)", out);
+            block.nextControlFlow("else");
+            block.addStatement("$N.writeInt(0)", out);
+            block.addStatement("$N.writeLong($N.getTime())", out, value);
+            block.endControlFlow();
+        } else if (listElementType(type) != null)
+        {
+            block.addStatement("$L", callListWriter(listElementType(type), value, out, null));
+        } else if (mapEntryTypes(type) != null)
+        {
+            List<? extends TypeMirror> entryTypes = mapEntryTypes(type);
+            block.addStatement("$L", callMapWriter(entryTypes.get(0), entryTypes.get(1), value, out, null));
+        } else
+        {
+            writeElement(block, type, value, out, null);
+        }
+        return block.build();
+    }
+
+    /**
+     * Returns the expression reading a value of the given type from {@code source}.
+     */
+    CodeBlock read(TypeMirror type)
+    {
+        TypeName typeName = TypeName.get(type);
+        String arrayMethod = arrayMethod(type);
+        if (type.getKind().isPrimitive())
+        {
+            return readPrimitive(typeName);
+        } else if (arrayMethod != null)
+        {
+            return CodeBlock.of("source.create$L()", arrayMethod);
+        } else if (typeName.equals(DATE))
+        {
+            return CodeBlock.of("source.readInt() == 0 ? new $T(source.readLong()) : null", DATE);
+        } else if (listElementType(type) != null)
+        {
+            return CodeBlock.of("$N(source)", listReader(listElementType(type)));
+        } else if (mapEntryTypes(type) != null)
+        {
+            List<? extends TypeMirror> entryTypes = mapEntryTypes(type);
+            return CodeBlock.of("$N(source)", mapReader(entryTypes.get(0), entryTypes.get(1)));
+        }
+        return readElement(type);
+    }
+
+    /**
+     * Returns the suffix of the sink and source methods of an array type, {@code null} if none.
+     */
+    private static String arrayMethod(TypeMirror type)
+    {
+        if (type.getKind() != TypeKind.ARRAY)
+        {
+            return null;
+        }
+        TypeName component = ((ArrayTypeName) TypeName.get(type)).componentType;
+        if (component.equals(STRING))
+        {
+            return "StringArray";
+        }
+        if (component.equals(TypeName.BOOLEAN) || component.equals(TypeName.BYTE) || component.equals(TypeName.CHAR)
+                || component.equals(TypeName.INT) || component.equals(TypeName.LONG)
+                || component.equals(TypeName.FLOAT) || component.equals(TypeName.DOUBLE))
+        {
+            String name = component.toString();
+            return Character.toUpperCase(name.charAt(0)) + name.substring(1) + "Array";
+        }
+        return null;
+    }
+
+    @Override
+    boolean isElement(TypeMirror type)
+    {
+        return kindOf(type) != null;
+    }
+
+    @Override
+    void writeElement(CodeBlock.Builder block, TypeMirror type, String value, ParameterSpec out, ParameterSpec flags)
+    {
+        TypeName typeName = TypeName.get(type);
+        switch (kindOf(type))
+        {
+            case STRING:
+                block.addStatement("$N.writeString($N)", out, value);
+                break;
+            case BOXED:
+                writeBoxed(block, typeName, value, out);
+                break;
+            case ENUM:
+                writeEnumName(block, value, out);
+                break;
+            case PORTABLE:
+                block.addStatement("$T.writeValue($N, $N)", generatedClassOf(type), value, out);
+                break;
+        }
+    }
+
+    @Override
+    CodeBlock readElement(TypeMirror type)
+    {
+        TypeName typeName = TypeName.get(type);
+        switch (kindOf(type))
+        {
+            case STRING:
+                return CodeBlock.of("source.readString()");
+            case BOXED:
+                return readBoxed(typeName);
+            case ENUM:
+                return CodeBlock.of("$N(source)", enumNameReader(type));
+            default:
+                return CodeBlock.of("$T.readValue(source)", generatedClassOf(type));
+        }
+    }
+
+    private Kind kindOf(TypeMirror type)
+    {
+        if (type.getKind() != TypeKind.DECLARED)
+        {
+            return null;
+        }
+        TypeName typeName = TypeName.get(type);
+        if (typeName.equals(STRING))
+        {
+            return Kind.STRING;
+        }
+        if (typeName.isBoxedPrimitive())
+        {
+            return Kind.BOXED;
+        }
+        TypeElement element = (TypeElement) types.asElement(type);
+        if (element.getKind() == ElementKind.ENUM)
+        {
+            return Kind.ENUM;
+        }
+        if (element.getKind() == ElementKind.CLASS
+                && element.getTypeParameters().isEmpty()
+                && element.getAnnotation(Parcelled.class) != null
+                && element.getAnnotation(ParcelledPortable.class) != null
+                && (pkg.equals(TypeUtil.packageNameOf(element))
+                || Visibility.effectiveVisibilityOfElement(element) == Visibility.PUBLIC))
+        {
+            return Kind.PORTABLE;
+        }
+        return null;
+    }
+
+    private enum Kind
+    {
+        STRING,
+        BOXED,
+        ENUM,
+        PORTABLE
+    }
+
+}
@@ -67,4 +67,26 @@ class TypeUtil
         return type != null && typeUtils.isAssignable(cls, type);
     }
 
+    /**
+     * Returns the fully qualified name of the class generated for the given type, e.g.
+     * <code>com.foo.Parcelled_Outer_Inner</code> for <code>com.foo.Outer.Inner</code>.
+     *
+     * @param type   annotated type
+     * @param prefix generated class prefix
+     *
+     * @return fully qualified generated class name
+     */
+    static String generatedClassName(TypeElement type, String prefix)
+    {
+        StringBuilder name = new StringBuilder(type.getSimpleName().toString());
+        while (type.getEnclosingElement() instanceof TypeElement)
+        {
+            type = (TypeElement) type.getEnclosingElement();
+            name.insert(0, type.getSimpleName() + "_");
+        }
+        String pkg = packageNameOf(type);
+        String dot = pkg.isEmpty() ? "" : ".";
+        return pkg + dot + prefix + name;
+    }
+
 }
@@ -76,7 +76,8 @@ public enum Visibility
         checkNotNull(element);
         Visibility effectiveVisibility = PUBLIC;
         Element currentElement = element;
-        while (currentElement != null)
+        // stop at the package: on Java 9+ it is enclosed by a module, which has no modifiers
+        while (currentElement != null && !currentElement.getKind().equals(PACKAGE))
         {
             effectiveVisibility =
                     Ordering.natural().min(effectiveVisibility, ofElement(currentElement));
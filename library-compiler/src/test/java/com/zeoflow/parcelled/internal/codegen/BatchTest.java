@@ -0,0 +1,69 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled.internal.codegen;
+
+import android.os.Parcel;
+
+import com.zeoflow.parcelled.model.Defaults;
+import com.zeoflow.parcelled.model.Measure;
+import com.zeoflow.parcelled.model.Parcelled_Measure;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BatchTest
+{
+
+    private static List<Measure> read(List<Measure> rows)
+    {
+        Parcel parcel = Parcel.obtain();
+        Parcelled_Measure.BATCH.write(rows, parcel);
+        parcel.setDataPosition(0);
+        List<Measure> copy = Parcelled_Measure.BATCH.read(parcel);
+        assertEquals(0, parcel.dataAvail());
+        return copy;
+    }
+
+    @Test
+    public void roundtrip()
+    {
+        List<Measure> copy = read(Arrays.asList(Measure.create(1, 2.5, "cm"), null, Measure.create(2, -1, null)));
+
+        assertEquals(3, copy.size());
+        assertEquals(1, copy.get(0).id);
+        assertEquals(2.5, copy.get(0).value, 0);
+        assertEquals("cm", copy.get(0).unit);
+        assertNull(copy.get(1));
+        assertEquals(2, copy.get(2).id);
+        assertNull(copy.get(2).unit);
+    }
+
+    @Test
+    public void readSkipsDefaults()
+    {
+        List<Measure> rows = Arrays.asList(Measure.create(1, 2.5, "cm"), Measure.create(2, 3.5, "mm"));
+        int calls = Defaults.calls;
+
+        read(rows);
+
+        assertEquals(calls, Defaults.calls);
+    }
+
+}
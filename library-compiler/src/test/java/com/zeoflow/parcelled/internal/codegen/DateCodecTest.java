@@ -0,0 +1,69 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled.internal.codegen;
+
+import com.zeoflow.parcelled.model.Event;
+
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DateCodecTest
+{
+
+    @Test
+    public void roundtrip()
+    {
+        Event event = Event.create();
+        event.title = "launch";
+        event.start = new Date(1_600_000_000_000L);
+        event.end = new Date(-5L);
+
+        Event copy = Parcels.roundtrip(event);
+
+        assertEquals(event.start, copy.start);
+        assertEquals(event.end, copy.end);
+    }
+
+    @Test
+    public void extremeTimesAreNotNull()
+    {
+        Event event = Event.create();
+        event.start = new Date(Long.MIN_VALUE);
+        event.end = new Date(Long.MAX_VALUE);
+
+        Event copy = Parcels.roundtrip(event);
+
+        assertEquals(event.start, copy.start);
+        assertEquals(event.end, copy.end);
+    }
+
+    @Test
+    public void nullInPropertyNotNullable()
+    {
+        Event event = Event.create();
+        event.title = "tbd";
+
+        Event copy = Parcels.roundtrip(event);
+
+        assertNull(copy.start);
+        assertNull(copy.end);
+        assertEquals("tbd", copy.title);
+    }
+
+}
@@ -0,0 +1,169 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.zeoflow.parcelled.internal.codegen;
+
+import android.os.Parcel;
+
+import com.zeoflow.parcelled.model.IParcelled_Screen;
+import com.zeoflow.parcelled.model.IParcelled_ScreenV1;
+import com.zeoflow.parcelled.model.Point;
+import com.zeoflow.parcelled.model.Screen;
+import com.zeoflow.parcelled.model.ScreenV1;
+import com.zeoflow.parcelled.model.Ticket;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class DeltaTest
+{
+
+    private static Parcel delta(Object current, Object previous)
+    {
+        Parcel parcel = Parcel.obtain();
+        if (current instanceof Screen)
+        {
+            ((IParcelled_Screen) current).writeDelta((Screen) previous, parcel);
+        } else
+        {
+            ((IParcelled_ScreenV1) current).writeDelta((ScreenV1) previous, parcel);
+        }
+        parcel.setDataPosition(0);
+        return parcel;
+    }
+
+    @Test
+    public void appliesChangedProperties()
+    {
+        Point origin = Point.create(1, 2);
+        Screen previous = Screen.create("home");
+        previous.origin = origin;
+        Screen current = Screen.create("home");
+        current.origin = origin;
+        current.subtitle = "inbox";
+        current.visible = false;
+        current.scroll = 3;
+        current.priority = Ticket.Priority.HIGH;
+        current.note = "unread";
+
+        Screen replica = Screen.create("home");
+        replica.badge = 7;
+        replica.origin = origin;
+        Parcel parcel = delta(current, previous);
+        ((IParcelled_Screen) replica).applyDelta(parcel);
+
+        assertEquals(parcel.dataSize(), parcel.dataPosition());
+        assertEquals("home", replica.title);
+        assertEquals("inbox", replica.subtitle);
+        assertFalse(replica.visible);
+        assertEquals(3, replica.scroll);
+        assertSame(Ticket.Priority.HIGH, replica.priority);
+        assertEquals("unread", replica.note);
+        // unchanged properties keep the value of the replica
+        assertEquals(Integer.valueOf(7), replica.badge);
+        assertSame(origin, replica.origin);
+    }
+
+    @Test
+    public void appliesNullAndNestedValues()
+    {
+        Screen previous = Screen.create("home");
+        previous.badge = 7;
+        Screen current = Screen.create("home");
+        current.origin = Point.create(1, 2);
+
+        Screen replica = Screen.create("home");
+        replica.badge = 7;
+        ((IParcelled_Screen) replica).applyDelta(delta(current, previous));
+
+        assertNull(replica.badge);
+        assertEquals(1, replica.origin.x);
+        assertEquals(2, replica.origin.y);
+    }
+
+    @Test
+    public void appliedPropertiesAreClean()
+    {
+        Screen current = Screen.create("home");
+        IParcelled_Screen replica = (IParcelled_Screen) Screen.create("home");
+        replica.setScroll(5);
+        replica.setNote("draft");
+        replica.setBadge(2);
+
+        current.note = "sent";
+        current.scroll = 5;
+        current.badge = 2;
+        replica.applyDelta(delta(current, Screen.create("home")));
+
+        assertEquals(0, replica.dirtyMask());
+    }
+
+    @Test
+    public void writesDirtyProperties()
+    {
+        IParcelled_Screen source = (IParcelled_Screen) Screen.create("home");
+        source.clearDirty();
+        source.setSubtitle("inbox");
+        source.setNote("unread");
+        Parcel parcel = Parcel.obtain();
+        source.writeDirty(parcel);
+        parcel.setDataPosition(0);
+
+        Screen replica = Screen.create("home");
+        ((IParcelled_Screen) replica).applyDelta(parcel);
+
+        assertEquals("inbox", replica.subtitle);
+        assertEquals("unread", replica.note);
+        assertEquals(1L << 40, replica.scroll);
+    }
+
+    @Test
+    public void oldReaderSkipsVersionedProperties()
+    {
+        Screen current = Screen.create("home");
+        current.subtitle = "inbox";
+        current.note = "unread";
+        current.scroll = 9;
+
+        ScreenV1 replica = ScreenV1.create("home");
+        Parcel parcel = delta(current, Screen.create("home"));
+        ((IParcelled_ScreenV1) replica).applyDelta(parcel);
+
+        assertEquals(parcel.dataSize(), parcel.dataPosition());
+        assertEquals("inbox", replica.subtitle);
+        assertEquals(9, replica.scroll);
+    }
+
+    @Test
+    public void newReaderAppliesOldVersion()
+    {
+        ScreenV1 current = ScreenV1.create("home");
+        current.visible = false;
+        current.priority = Ticket.Priority.HIGH;
+
+        Screen replica = Screen.create("home");
+        replica.note = "draft";
+        ((IParcelled_Screen) replica).applyDelta(delta(current, ScreenV1.create("home")));
+
+        assertFalse(replica.visible);
+        assertSame(Ticket.Priority.HIGH, replica.priority);
+        assertEquals("draft", replica.note);
+    }
+
+}
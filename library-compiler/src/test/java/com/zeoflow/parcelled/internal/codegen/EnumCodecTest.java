@@ -0,0 +1,63 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled.internal.codegen;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import com.zeoflow.parcelled.model.Ticket;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class EnumCodecTest
+{
+
+    @Test
+    public void ordinalRoundtrip()
+    {
+        Ticket ticket = Ticket.create();
+        ticket.history = Arrays.asList(Ticket.Priority.LOW, null, Ticket.Priority.HIGH);
+        ticket.priority = Ticket.Priority.HIGH;
+
+        Ticket copy = Parcels.roundtrip(ticket);
+
+        assertEquals(ticket.history, copy.history);
+        assertEquals(Ticket.Priority.HIGH, copy.priority);
+    }
+
+    @Test
+    public void unknownOrdinalIsNull()
+    {
+        Ticket ticket = Ticket.create();
+        ticket.priority = Ticket.Priority.LOW;
+        Parcel parcel = Parcel.obtain();
+        ((Parcelable) ticket).writeToParcel(parcel, 0);
+        // the last property, before the count of no sections, as written by a newer version
+        // with more constants
+        parcel.setDataPosition(parcel.dataSize() - 8);
+        parcel.writeInt(Ticket.Priority.values().length);
+        parcel.setDataPosition(0);
+
+        Ticket copy = (Ticket) Parcels.creatorOf(ticket).createFromParcel(parcel);
+
+        assertNull(copy.priority);
+    }
+
+}
@@ -0,0 +1,69 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled.internal.codegen;
+
+import com.zeoflow.parcelled.model.VersionedNode;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class IdentityTest
+{
+
+    @Test
+    public void cycleThroughVersionedSection()
+    {
+        VersionedNode root = VersionedNode.create("root");
+        VersionedNode left = VersionedNode.create("left");
+        VersionedNode right = VersionedNode.create("right");
+        root.children = new ArrayList<>(Arrays.asList(left, right));
+        left.parent = root;
+        right.parent = root;
+        // the root refers to itself from its own section
+        root.parent = root;
+
+        VersionedNode copy = Parcels.roundtrip(root);
+
+        assertEquals("root", copy.name);
+        assertSame(copy, copy.parent);
+        assertEquals(2, copy.children.size());
+        assertSame(copy, copy.children.get(0).parent);
+        assertSame(copy, copy.children.get(1).parent);
+        assertEquals("right", copy.children.get(1).name);
+    }
+
+    @Test
+    public void sharedInstanceFirstWrittenInSection()
+    {
+        // the child is written in full in the list, then referred to from the section
+        VersionedNode root = VersionedNode.create("root");
+        VersionedNode child = VersionedNode.create("child");
+        child.parent = root;
+        root.parent = child;
+        root.children = new ArrayList<>(Arrays.asList(child, child));
+
+        VersionedNode copy = Parcels.roundtrip(root);
+
+        assertSame(copy, copy.parent.parent);
+        assertSame(copy.children.get(0), copy.children.get(1));
+        assertSame(copy, copy.children.get(0).parent);
+    }
+
+}
@@ -0,0 +1,58 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled.internal.codegen;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * Helpers of the tests of the generated classes.
+ */
+final class Parcels
+{
+
+    private Parcels()
+    {
+    }
+
+    /**
+     * Writes the value to a parcel and reads it back with the creator of its class.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T roundtrip(Object value)
+    {
+        Parcel parcel = Parcel.obtain();
+        ((Parcelable) value).writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        T copy = (T) creatorOf(value).createFromParcel(parcel);
+        if (parcel.dataAvail() != 0)
+        {
+            throw new AssertionError(parcel.dataAvail() + " bytes left unread");
+        }
+        return copy;
+    }
+
+    static Parcelable.Creator<?> creatorOf(Object value)
+    {
+        try
+        {
+            return (Parcelable.Creator<?>) value.getClass().getField("CREATOR").get(null);
+        } catch (ReflectiveOperationException e)
+        {
+            throw new AssertionError(e);
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled.internal.codegen;
+
+import com.zeoflow.parcelled.model.Parcelled_Sample;
+import com.zeoflow.parcelled.model.Sample;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class PoolTest
+{
+
+    @Test
+    public void releasedInstanceIsReused()
+    {
+        Parcelled_Sample first = Parcels.roundtrip(Sample.create(1, "one"));
+        first.release();
+
+        Parcelled_Sample second = Parcels.roundtrip(Sample.create(2, "two"));
+
+        assertSame(first, second);
+        assertEquals(2, second.value);
+        assertEquals("two", second.label);
+        second.release();
+    }
+
+    @Test
+    public void doubleReleaseThrows()
+    {
+        Parcelled_Sample sample = Parcels.roundtrip(Sample.create(1, "one"));
+        sample.release();
+        try
+        {
+            sample.release();
+            fail("released twice");
+        } catch (IllegalStateException expected)
+        {
+            // the pool still holds the instance once
+        }
+        Parcelled_Sample reused = Parcels.roundtrip(Sample.create(2, "two"));
+        Parcelled_Sample fresh = Parcels.roundtrip(Sample.create(3, "three"));
+
+        assertSame(sample, reused);
+        assertNotSame(sample, fresh);
+        assertEquals(3, fresh.value);
+        reused.release();
+    }
+
+    @Test
+    public void concurrentReleasePoolsOnce() throws InterruptedException
+    {
+        int threads = 8;
+        for (int round = 0; round < 100; round++)
+        {
+            Parcelled_Sample sample = Parcels.roundtrip(Sample.create(round, "round"));
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicInteger pooled = new AtomicInteger();
+            List<Thread> releasers = new ArrayList<>();
+            for (int i = 0; i < threads; i++)
+            {
+                Thread releaser = new Thread(() ->
+                {
+                    try
+                    {
+                        start.await();
+                        sample.release();
+                        pooled.incrementAndGet();
+                    } catch (IllegalStateException | InterruptedException expected)
+                    {
+                        // released by another thread
+                    }
+                });
+                releaser.start();
+                releasers.add(releaser);
+            }
+            start.countDown();
+            for (Thread releaser : releasers)
+            {
+                releaser.join();
+            }
+
+            assertEquals(1, pooled.get());
+        }
+    }
+
+}
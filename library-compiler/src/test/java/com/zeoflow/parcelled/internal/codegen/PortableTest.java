@@ -0,0 +1,105 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled.internal.codegen;
+
+import com.zeoflow.parcelled.ParcelledBufferSink;
+import com.zeoflow.parcelled.ParcelledBufferSource;
+import com.zeoflow.parcelled.model.Defaults;
+import com.zeoflow.parcelled.model.Parcelled_Reading;
+import com.zeoflow.parcelled.model.Reading;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PortableTest
+{
+
+    private static Reading reading()
+    {
+        Reading reading = Reading.create();
+        reading.unit = Reading.Unit.KELVIN;
+        reading.history = Arrays.asList(Reading.Unit.CELSIUS, null, Reading.Unit.KELVIN);
+        Map<String, Double> samples = new HashMap<>();
+        samples.put("min", 271.5);
+        samples.put("max", null);
+        reading.samples = samples;
+        reading.taken = null;
+        return reading;
+    }
+
+    private static ByteBuffer written(Reading reading)
+    {
+        ParcelledBufferSink sink = ParcelledBufferSink.allocate(16, false);
+        Parcelled_Reading.RECORDS.write(reading, sink);
+        ByteBuffer buffer = sink.buffer();
+        buffer.flip();
+        return buffer;
+    }
+
+    @Test
+    public void recordRoundtrip()
+    {
+        Reading reading = reading();
+        ByteBuffer buffer = written(reading);
+
+        Reading copy = Parcelled_Reading.RECORDS.read(new ParcelledBufferSource(buffer), Parcelled_Reading.RECORDS.version());
+
+        assertEquals(Reading.Unit.KELVIN, copy.unit);
+        assertEquals(reading.history, copy.history);
+        assertEquals(reading.samples, copy.samples);
+        assertNull(copy.taken);
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    public void recordReadSkipsDefaults()
+    {
+        ByteBuffer buffer = written(reading());
+        int calls = Defaults.calls;
+
+        Parcelled_Reading.RECORDS.read(new ParcelledBufferSource(buffer), Parcelled_Reading.RECORDS.version());
+
+        assertEquals(calls, Defaults.calls);
+    }
+
+    @Test
+    public void valueRoundtrip()
+    {
+        Reading reading = reading();
+        reading.taken = 1_600_000_000_000L;
+        ParcelledBufferSink sink = ParcelledBufferSink.allocate(16, false);
+        Parcelled_Reading.writeValue(reading, sink);
+        Parcelled_Reading.writeValue(null, sink);
+        ByteBuffer buffer = sink.buffer();
+        buffer.flip();
+        int calls = Defaults.calls;
+
+        ParcelledBufferSource source = new ParcelledBufferSource(buffer);
+        Reading copy = Parcelled_Reading.readValue(source);
+
+        assertEquals(reading.samples, copy.samples);
+        assertEquals(Long.valueOf(1_600_000_000_000L), copy.taken);
+        assertNull(Parcelled_Reading.readValue(source));
+        assertEquals(calls, Defaults.calls);
+    }
+
+}
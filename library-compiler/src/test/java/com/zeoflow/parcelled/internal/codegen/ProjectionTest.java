@@ -0,0 +1,121 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled.internal.codegen;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import com.zeoflow.parcelled.ParcelledSized;
+import com.zeoflow.parcelled.model.IParcelled_Row;
+import com.zeoflow.parcelled.model.Parcelled_Row;
+import com.zeoflow.parcelled.model.Row;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ProjectionTest
+{
+
+    private static Row row(Double score)
+    {
+        Row row = Row.create();
+        row.id = 7;
+        row.name = "seven";
+        row.tags = Arrays.asList("a", null, "b");
+        row.score = score;
+        row.updated = 1_600_000_000_000L;
+        return row;
+    }
+
+    private static Parcel written(Row row)
+    {
+        Parcel parcel = Parcel.obtain();
+        ((Parcelable) row).writeToParcel(parcel, 0);
+        parcel.writeInt(42);
+        parcel.setDataPosition(0);
+        return parcel;
+    }
+
+    @Test
+    public void readsEveryProperty()
+    {
+        Row copy = Parcels.roundtrip(row(2.5));
+        assertEquals(7, copy.id);
+        assertEquals("seven", copy.name);
+        assertEquals(Arrays.asList("a", null, "b"), copy.tags);
+        assertEquals(Double.valueOf(2.5), copy.score);
+        assertEquals(1_600_000_000_000L, copy.updated);
+    }
+
+    @Test
+    public void skipsPropertiesNotSelected()
+    {
+        for (Double score : new Double[]{2.5, null})
+        {
+            Parcel parcel = written(row(score));
+            Row copy = Parcelled_Row.readProjection(parcel, IParcelled_Row.FIELD_NAME | IParcelled_Row.FIELD_UPDATED);
+
+            assertEquals(0, copy.id);
+            assertEquals("seven", copy.name);
+            assertNull(copy.tags);
+            assertNull(copy.score);
+            assertEquals(1_600_000_000_000L, copy.updated);
+            // the skips end where the full read ends
+            assertEquals(42, parcel.readInt());
+        }
+    }
+
+    @Test
+    public void readsNothingFromEmptyMask()
+    {
+        Parcel parcel = written(row(2.5));
+        Row copy = Parcelled_Row.readProjection(parcel, 0L);
+
+        assertNull(copy.name);
+        assertEquals(0L, copy.updated);
+        assertEquals(42, parcel.readInt());
+    }
+
+    @Test
+    public void writesEmptySectionCountWithoutVersionedProperties()
+    {
+        Row row = row(null);
+        row.name = null;
+        row.tags = null;
+        Parcel parcel = Parcel.obtain();
+        ((Parcelable) row).writeToParcel(parcel, 0);
+
+        // version, header, id, name and tags sections, updated and the count of no sections
+        assertEquals(4 + 4 + 4 + 2 * (4 + 4) + 8 + 4, parcel.dataSize());
+        assertEquals(parcel.dataSize(), ((ParcelledSized) row).sizeOf());
+    }
+
+    @Test
+    public void readsIntoExistingInstance()
+    {
+        Row target = row(1.0);
+        target.name = "kept";
+        ((Parcelled_Row) target).readFrom(written(row(9.0)), IParcelled_Row.FIELD_SCORE | IParcelled_Row.FIELD_TAGS);
+
+        assertEquals("kept", target.name);
+        assertEquals(Double.valueOf(9.0), target.score);
+        assertEquals(Arrays.asList("a", null, "b"), target.tags);
+    }
+
+}
@@ -0,0 +1,135 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled.internal.codegen;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import com.zeoflow.parcelled.model.IParcelled_Settings;
+import com.zeoflow.parcelled.model.IParcelled_Wide;
+import com.zeoflow.parcelled.model.Settings;
+import com.zeoflow.parcelled.model.Wide;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TrackedTest
+{
+
+    private static Parcel written(Object value)
+    {
+        Parcel parcel = Parcel.obtain();
+        ((Parcelable) value).writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        return parcel;
+    }
+
+    @Test
+    public void settersMarkDirty()
+    {
+        IParcelled_Settings settings = (IParcelled_Settings) Settings.create();
+        assertFalse(settings.isDirty());
+        settings.setFontSize(12);
+        settings.setSync(true);
+        assertEquals(IParcelled_Settings.FIELD_FONT_SIZE | IParcelled_Settings.FIELD_SYNC, settings.dirtyMask());
+        settings.clearDirty();
+        assertFalse(settings.isDirty());
+    }
+
+    @Test
+    public void readFromMarksClean()
+    {
+        Settings source = Settings.create();
+        source.theme = "dark";
+        IParcelled_Settings settings = (IParcelled_Settings) Settings.create();
+        settings.setTheme("light");
+        settings.setSync(true);
+
+        settings.readFrom(written(source));
+
+        assertEquals("dark", ((Settings) settings).theme);
+        assertFalse(settings.isDirty());
+    }
+
+    @Test
+    public void applyDeltaMarksClean()
+    {
+        Settings previous = Settings.create();
+        Settings current = Settings.create();
+        current.theme = "dark";
+        Parcel delta = Parcel.obtain();
+        ((IParcelled_Settings) current).writeDelta(previous, delta);
+        delta.setDataPosition(0);
+
+        IParcelled_Settings replica = (IParcelled_Settings) Settings.create();
+        replica.setTheme("light");
+        replica.setFontSize(14);
+        replica.applyDelta(delta);
+
+        assertEquals("dark", ((Settings) replica).theme);
+        // the local change not in the delta stays dirty
+        assertEquals(IParcelled_Settings.FIELD_FONT_SIZE, replica.dirtyMask());
+    }
+
+    @Test
+    public void wideClassHasIndexConstants()
+    {
+        IParcelled_Wide wide = (IParcelled_Wide) Wide.create();
+        wide.setP3(1);
+        wide.setP69(1);
+
+        long[] mask = wide.dirtyMask();
+        assertEquals(2, mask.length);
+        assertEquals(1L << IParcelled_Wide.INDEX_P3, mask[IParcelled_Wide.INDEX_P3 / 64]);
+        assertEquals(1L << IParcelled_Wide.INDEX_P69 % 64, mask[IParcelled_Wide.INDEX_P69 / 64]);
+    }
+
+    @Test
+    public void wideApplyDeltaMarksClean()
+    {
+        Wide current = Wide.create();
+        current.p40 = 1;
+        current.p69 = 2;
+        Parcel delta = Parcel.obtain();
+        ((IParcelled_Wide) current).writeDelta(Wide.create(), delta);
+        delta.setDataPosition(0);
+
+        IParcelled_Wide replica = (IParcelled_Wide) Wide.create();
+        replica.setP40(5);
+        replica.setP65(5);
+        replica.setP69(5);
+        replica.applyDelta(delta);
+
+        assertEquals(1, ((Wide) replica).p40);
+        assertEquals(2, ((Wide) replica).p69);
+        long[] mask = replica.dirtyMask();
+        assertEquals(0L, mask[0]);
+        assertEquals(1L << IParcelled_Wide.INDEX_P65 % 64, mask[1]);
+    }
+
+    @Test
+    public void wideReadFromMarksClean()
+    {
+        IParcelled_Wide wide = (IParcelled_Wide) Wide.create();
+        wide.setP69(1);
+        assertTrue(wide.isDirty());
+        wide.readFrom(written(Wide.create()));
+        assertFalse(wide.isDirty());
+    }
+
+}
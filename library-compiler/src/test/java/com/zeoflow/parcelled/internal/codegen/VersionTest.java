@@ -0,0 +1,60 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled.internal.codegen;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import com.zeoflow.parcelled.model.Parcelled_Shape;
+import com.zeoflow.parcelled.model.PointV2;
+import com.zeoflow.parcelled.model.Shape;
+import com.zeoflow.parcelled.model.ShapeV2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class VersionTest
+{
+
+    @Test
+    public void oldReaderSkipsSectionOfNestedObject()
+    {
+        ShapeV2 shape = ShapeV2.create(PointV2.create(3, 4, "corner"), 5);
+        Parcel parcel = Parcel.obtain();
+        ((Parcelable) shape).writeToParcel(parcel, 0);
+        parcel.writeInt(42);
+        parcel.setDataPosition(0);
+
+        // a reader which knows the classes before their versioned property
+        Shape copy = Parcelled_Shape.CREATOR.createFromParcel(parcel);
+
+        assertEquals(3, copy.origin.x);
+        assertEquals(4, copy.origin.y);
+        assertEquals(5, copy.sides);
+        assertEquals(42, parcel.readInt());
+    }
+
+    @Test
+    public void newReaderReadsSectionOfNestedObject()
+    {
+        ShapeV2 copy = Parcels.roundtrip(ShapeV2.create(PointV2.create(3, 4, "corner"), 5));
+
+        assertEquals(3, copy.origin.x);
+        assertEquals("corner", copy.origin.label);
+        assertEquals(5, copy.sides);
+    }
+
+}
@@ -0,0 +1,37 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled.model;
+
+import com.zeoflow.parcelled.Parcelled;
+
+/**
+ * First version of a point, as known by the readers deployed before {@link PointV2}.
+ */
+@Parcelled
+public abstract class Point
+{
+
+    public int x;
+    public int y;
+
+    public static Point create(int x, int y)
+    {
+        Point point = new Parcelled_Point();
+        point.x = x;
+        point.y = y;
+        return point;
+    }
+
+}
@@ -0,0 +1,42 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled.model;
+
+import com.zeoflow.parcelled.Parcelled;
+import com.zeoflow.parcelled.ParcelledVersion;
+
+/**
+ * {@link Point} after its first versioned property was added.
+ */
+@Parcelled(version = 2)
+public abstract class PointV2
+{
+
+    public int x;
+    public int y;
+    @Nullable
+    @ParcelledVersion(after = 2)
+    public String label;
+
+    public static PointV2 create(int x, int y, String label)
+    {
+        PointV2 point = new Parcelled_PointV2();
+        point.x = x;
+        point.y = y;
+        point.label = label;
+        return point;
+    }
+
+}
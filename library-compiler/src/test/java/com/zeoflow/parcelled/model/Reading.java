@@ -0,0 +1,48 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled.model;
+
+import com.zeoflow.parcelled.Default;
+import com.zeoflow.parcelled.Parcelled;
+import com.zeoflow.parcelled.ParcelledPortable;
+
+import java.util.List;
+import java.util.Map;
+
+@Parcelled
+@ParcelledPortable
+public abstract class Reading
+{
+
+    public enum Unit
+    {
+        CELSIUS,
+        KELVIN
+    }
+
+    public static final double ZERO_CELSIUS = 273.15;
+
+    @Default(code = "Defaults.count(Reading.Unit.CELSIUS)")
+    public Unit unit;
+    public List<Unit> history;
+    public Map<String, Double> samples;
+    public Long taken;
+
+    public static Reading create()
+    {
+        return new Parcelled_Reading();
+    }
+
+}
@@ -0,0 +1,36 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled.model;
+
+import com.zeoflow.parcelled.Parcelled;
+import com.zeoflow.parcelled.ParcelledPooled;
+
+@Parcelled
+@ParcelledPooled(1)
+public abstract class Sample
+{
+
+    public int value;
+    public String label;
+
+    public static Sample create(int value, String label)
+    {
+        Sample sample = new Parcelled_Sample();
+        sample.value = value;
+        sample.label = label;
+        return sample;
+    }
+
+}
@@ -0,0 +1,56 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled.model;
+
+import com.zeoflow.parcelled.Parcelled;
+import com.zeoflow.parcelled.ParcelledDelta;
+import com.zeoflow.parcelled.ParcelledEnum;
+import com.zeoflow.parcelled.ParcelledStringTable;
+import com.zeoflow.parcelled.ParcelledTracked;
+import com.zeoflow.parcelled.ParcelledVarint;
+
+/**
+ * {@link Screen} before its versioned property was added.
+ */
+@Parcelled
+@ParcelledDelta
+@ParcelledTracked
+@ParcelledStringTable
+public abstract class ScreenV1
+{
+
+    public String title;
+    public String subtitle;
+    public boolean visible;
+    @Nullable
+    public Integer badge;
+    @ParcelledVarint
+    public long scroll;
+    @ParcelledEnum(ParcelledEnum.Encoding.ORDINAL)
+    public Ticket.Priority priority;
+    public Point origin;
+
+    public static ScreenV1 create(String title)
+    {
+        ScreenV1 screen = new Parcelled_ScreenV1();
+        screen.title = title;
+        screen.subtitle = title;
+        screen.visible = true;
+        screen.scroll = 1L << 40;
+        screen.priority = Ticket.Priority.LOW;
+        return screen;
+    }
+
+}
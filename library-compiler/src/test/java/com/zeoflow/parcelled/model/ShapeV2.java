@@ -0,0 +1,37 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled.model;
+
+import com.zeoflow.parcelled.Parcelled;
+
+/**
+ * {@link Shape} inlining the second version of its point.
+ */
+@Parcelled
+public abstract class ShapeV2
+{
+
+    public PointV2 origin;
+    public int sides;
+
+    public static ShapeV2 create(PointV2 origin, int sides)
+    {
+        ShapeV2 shape = new Parcelled_ShapeV2();
+        shape.origin = origin;
+        shape.sides = sides;
+        return shape;
+    }
+
+}
@@ -0,0 +1,45 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled.model;
+
+import com.zeoflow.parcelled.Parcelled;
+import com.zeoflow.parcelled.ParcelledIdentity;
+import com.zeoflow.parcelled.ParcelledVersion;
+
+import java.util.List;
+
+/**
+ * Node of a tree whose back-references to the parent go through a versioned section.
+ */
+@Parcelled(version = 2)
+@ParcelledIdentity
+public abstract class VersionedNode
+{
+
+    public String name;
+    @Nullable
+    public List<VersionedNode> children;
+    @Nullable
+    @ParcelledVersion(after = 2)
+    public VersionedNode parent;
+
+    public static VersionedNode create(String name)
+    {
+        VersionedNode node = new Parcelled_VersionedNode();
+        node.name = name;
+        return node;
+    }
+
+}
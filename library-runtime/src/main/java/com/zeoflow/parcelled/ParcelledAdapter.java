@@ -35,8 +35,9 @@ import static java.lang.annotation.RetentionPolicy.SOURCE;
  * </pre>
  * <p>
  * The generated code will instantiate and use the {@code DateTypeAdapter} class to parcel and
- * unparcel the {@code date()} property. In order for the generated code to instantiate the
- * {@link ParcelledTypeAdapter}, it needs a public, no-arg constructor.
+ * unparcel the {@code date()} property, sharing one instance through {@link ParcelledTypeAdapters}.
+ * In order for the generated code to instantiate the {@link ParcelledTypeAdapter}, it needs a
+ * no-arg constructor visible from the package of the annotated class.
  */
 @Target(FIELD)
 @Retention(SOURCE)
@@ -44,6 +45,10 @@ import static java.lang.annotation.RetentionPolicy.SOURCE;
 public @interface ParcelledAdapter
 {
 
-    Class<? extends ParcelledTypeAdapter<?>> value();
+    /**
+     * A {@link ParcelledTypeAdapter}, or for a primitive property a {@link ParcelledIntAdapter},
+     * {@link ParcelledLongAdapter} or {@link ParcelledDoubleAdapter}, which do not box the value.
+     */
+    Class<?> value();
 
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.zeoflow.parcelled;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.PACKAGE;
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.CLASS;
+
+/**
+ * An annotation that declares the default {@link ParcelledTypeAdapter}s of a {@link Parcelled}
+ * class, or of all the classes of a package when set in its {@code package-info.java}. A property
+ * without {@link ParcelledAdapter} whose type is the type converted by one of the adapters uses
+ * that adapter; the adapters of the class win over the ones of the package.
+ *
+ * <pre>
+ * <code>
+ * {@literal @}ParcelledAdapters(DateTypeAdapter.class)
+ * package com.example.model;
+ * </code>
+ * </pre>
+ */
+@Target({TYPE, PACKAGE})
+@Retention(CLASS)
+@Documented
+public @interface ParcelledAdapters
+{
+
+    /**
+     * {@link ParcelledTypeAdapter}s, {@link ParcelledIntAdapter}s, {@link ParcelledLongAdapter}s
+     * or {@link ParcelledDoubleAdapter}s.
+     */
+    Class<?>[] value();
+
+}
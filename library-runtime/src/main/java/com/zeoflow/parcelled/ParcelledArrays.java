@@ -0,0 +1,157 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.zeoflow.parcelled;
+
+import android.os.Parcel;
+
+/**
+ * Array codecs called by the generated {@code Parcelled_*} classes in place of
+ * {@link Parcel#createIntArray()}, {@link Parcel#createLongArray()} and
+ * {@link Parcel#createByteArray()}, with the same wire format.
+ *
+ * <p>When an instance is decoded again with {@code readFrom(Parcel)}, its current array is
+ * reused if it has the decoded length. Otherwise the array is taken from the {@link Pool} set with
+ * {@link #setPool(Pool)}, if any, and the replaced array is released to it.
+ */
+public final class ParcelledArrays
+{
+
+    private static volatile Pool pool;
+
+    private ParcelledArrays()
+    {
+    }
+
+    /**
+     * Sets the pool of the arrays of variable length, {@code null} to allocate them.
+     */
+    public static void setPool(Pool pool)
+    {
+        ParcelledArrays.pool = pool;
+    }
+
+    public static int[] readIntArray(Parcel in, int[] reuse)
+    {
+        int start = in.dataPosition();
+        int length = in.readInt();
+        int[] array = null;
+        if (reuse != null && reuse.length == length)
+        {
+            array = reuse;
+        } else
+        {
+            Pool pool = ParcelledArrays.pool;
+            if (pool != null)
+            {
+                if (reuse != null)
+                {
+                    pool.releaseIntArray(reuse);
+                }
+                array = length < 0 ? null : pool.obtainIntArray(length);
+            }
+        }
+        in.setDataPosition(start);
+        if (array == null)
+        {
+            return in.createIntArray();
+        }
+        in.readIntArray(array);
+        return array;
+    }
+
+    public static long[] readLongArray(Parcel in, long[] reuse)
+    {
+        int start = in.dataPosition();
+        int length = in.readInt();
+        long[] array = null;
+        if (reuse != null && reuse.length == length)
+        {
+            array = reuse;
+        } else
+        {
+            Pool pool = ParcelledArrays.pool;
+            if (pool != null)
+            {
+                if (reuse != null)
+                {
+                    pool.releaseLongArray(reuse);
+                }
+                array = length < 0 ? null : pool.obtainLongArray(length);
+            }
+        }
+        in.setDataPosition(start);
+        if (array == null)
+        {
+            return in.createLongArray();
+        }
+        in.readLongArray(array);
+        return array;
+    }
+
+    public static byte[] readByteArray(Parcel in, byte[] reuse)
+    {
+        int start = in.dataPosition();
+        int length = in.readInt();
+        byte[] array = null;
+        if (reuse != null && reuse.length == length)
+        {
+            array = reuse;
+        } else
+        {
+            Pool pool = ParcelledArrays.pool;
+            if (pool != null)
+            {
+                if (reuse != null)
+                {
+                    pool.releaseByteArray(reuse);
+                }
+                array = length < 0 ? null : pool.obtainByteArray(length);
+            }
+        }
+        in.setDataPosition(start);
+        if (array == null)
+        {
+            return in.createByteArray();
+        }
+        in.readByteArray(array);
+        return array;
+    }
+
+    /**
+     * Pool of arrays of variable length. The arrays obtained must have exactly the requested
+     * length; returning {@code null} lets the parcel allocate it.
+     *
+     * <p>An array is released once the instance holding it is decoded again with another length,
+     * so it must not be referenced outside of that instance.
+     */
+    public interface Pool
+    {
+
+        int[] obtainIntArray(int length);
+
+        long[] obtainLongArray(int length);
+
+        byte[] obtainByteArray(int length);
+
+        void releaseIntArray(int[] array);
+
+        void releaseLongArray(long[] array);
+
+        void releaseByteArray(byte[] array);
+
+    }
+
+}
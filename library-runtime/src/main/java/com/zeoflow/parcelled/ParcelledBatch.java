@@ -0,0 +1,362 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.zeoflow.parcelled;
+
+import android.os.Parcel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar codec of a list of {@link ParcelledColumnar} objects, generated as the static
+ * {@code BATCH} field of their {@code Parcelled_*} class. The list is written as its size
+ * ({@code -1} for {@code null}), the version, the indexes of the {@code null} rows and one column
+ * per property, in a tagged section like a {@link ParcelledVersion} property, so a reader skips
+ * the columns it does not know.
+ *
+ * <p>Numeric columns sorted in ascending order are written as varint deltas, String and enum
+ * columns with few distinct values as a dictionary followed by the varint index of every value.
+ * The other properties are written one row after the other with the codec of their type.
+ *
+ * <pre>
+ * <code>
+ * Parcelled_Person.BATCH.write(persons, parcel);
+ * List&lt;Person&gt; persons = Parcelled_Person.BATCH.read(parcel);
+ * </code>
+ * </pre>
+ *
+ * @param <T> type of the rows
+ */
+public abstract class ParcelledBatch<T>
+{
+
+    private static final int PLAIN = 0;
+    private static final int DELTA = 1;
+    private static final int DICTIONARY = 2;
+
+    /**
+     * Writes the rows, {@code null} included.
+     */
+    public final void write(List<T> rows, Parcel dest)
+    {
+        write(rows, dest, 0);
+    }
+
+    /**
+     * Writes the rows, {@code null} included, with the given <code>Parcelable</code> flags.
+     */
+    public abstract void write(List<T> rows, Parcel dest, int flags);
+
+    /**
+     * Reads the rows written by {@link #write(List, Parcel, int)}.
+     */
+    public abstract ArrayList<T> read(Parcel in);
+
+    /**
+     * Writes the number and the indexes of the {@code null} rows.
+     */
+    public static void writeNulls(Object[] rows, Parcel dest)
+    {
+        int nulls = 0;
+        for (Object row : rows)
+        {
+            if (row == null)
+            {
+                nulls++;
+            }
+        }
+        dest.writeInt(nulls);
+        for (int i = 0; nulls > 0 && i < rows.length; i++)
+        {
+            if (rows[i] == null)
+            {
+                dest.writeInt(i);
+                nulls--;
+            }
+        }
+    }
+
+    /**
+     * Clears the rows written as {@code null} by {@link #writeNulls(Object[], Parcel)}.
+     */
+    public static void readNulls(Object[] rows, Parcel in)
+    {
+        int nulls = in.readInt();
+        for (int i = 0; i < nulls; i++)
+        {
+            rows[in.readInt()] = null;
+        }
+    }
+
+    public static void writeIntColumn(int[] column, Parcel dest)
+    {
+        if (!isSorted(column))
+        {
+            dest.writeInt(PLAIN);
+            for (int value : column)
+            {
+                dest.writeInt(value);
+            }
+            return;
+        }
+        dest.writeInt(DELTA);
+        ParcelledVarintWriter deltas = new ParcelledVarintWriter(column.length * 2);
+        int previous = 0;
+        for (int value : column)
+        {
+            deltas.writeInt(value - previous);
+            previous = value;
+        }
+        deltas.writeTo(dest);
+    }
+
+    public static int[] readIntColumn(Parcel in, int size)
+    {
+        int[] column = new int[size];
+        if (in.readInt() == PLAIN)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                column[i] = in.readInt();
+            }
+            return column;
+        }
+        ParcelledVarintReader deltas = new ParcelledVarintReader(in);
+        int previous = 0;
+        for (int i = 0; i < size; i++)
+        {
+            previous += deltas.readInt();
+            column[i] = previous;
+        }
+        return column;
+    }
+
+    public static void writeLongColumn(long[] column, Parcel dest)
+    {
+        if (!isSorted(column))
+        {
+            dest.writeInt(PLAIN);
+            for (long value : column)
+            {
+                dest.writeLong(value);
+            }
+            return;
+        }
+        dest.writeInt(DELTA);
+        ParcelledVarintWriter deltas = new ParcelledVarintWriter(column.length * 2);
+        long previous = 0;
+        for (long value : column)
+        {
+            deltas.writeLong(value - previous);
+            previous = value;
+        }
+        deltas.writeTo(dest);
+    }
+
+    public static long[] readLongColumn(Parcel in, int size)
+    {
+        long[] column = new long[size];
+        if (in.readInt() == PLAIN)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                column[i] = in.readLong();
+            }
+            return column;
+        }
+        ParcelledVarintReader deltas = new ParcelledVarintReader(in);
+        long previous = 0;
+        for (int i = 0; i < size; i++)
+        {
+            previous += deltas.readLong();
+            column[i] = previous;
+        }
+        return column;
+    }
+
+    public static void writeFloatColumn(float[] column, Parcel dest)
+    {
+        for (float value : column)
+        {
+            dest.writeFloat(value);
+        }
+    }
+
+    public static float[] readFloatColumn(Parcel in, int size)
+    {
+        float[] column = new float[size];
+        for (int i = 0; i < size; i++)
+        {
+            column[i] = in.readFloat();
+        }
+        return column;
+    }
+
+    public static void writeDoubleColumn(double[] column, Parcel dest)
+    {
+        for (double value : column)
+        {
+            dest.writeDouble(value);
+        }
+    }
+
+    public static double[] readDoubleColumn(Parcel in, int size)
+    {
+        double[] column = new double[size];
+        for (int i = 0; i < size; i++)
+        {
+            column[i] = in.readDouble();
+        }
+        return column;
+    }
+
+    /**
+     * Writes the values packed 32 per <code>int</code>.
+     */
+    public static void writeBooleanColumn(boolean[] column, Parcel dest)
+    {
+        int bits = 0;
+        for (int i = 0; i < column.length; i++)
+        {
+            if (column[i])
+            {
+                bits |= 1 << (i & 31);
+            }
+            if ((i & 31) == 31 || i == column.length - 1)
+            {
+                dest.writeInt(bits);
+                bits = 0;
+            }
+        }
+    }
+
+    public static boolean[] readBooleanColumn(Parcel in, int size)
+    {
+        boolean[] column = new boolean[size];
+        int bits = 0;
+        for (int i = 0; i < size; i++)
+        {
+            if ((i & 31) == 0)
+            {
+                bits = in.readInt();
+            }
+            column[i] = (bits & 1 << (i & 31)) != 0;
+        }
+        return column;
+    }
+
+    /**
+     * Writes the values as a dictionary of the distinct values followed by the index of every
+     * value when there are at most half as many distinct values as rows, otherwise one by one.
+     */
+    public static void writeStringColumn(String[] column, Parcel dest)
+    {
+        Map<String, Integer> dictionary = new HashMap<>();
+        int limit = column.length / 2;
+        for (String value : column)
+        {
+            if (value != null && !dictionary.containsKey(value))
+            {
+                if (dictionary.size() == limit)
+                {
+                    dictionary = null;
+                    break;
+                }
+                dictionary.put(value, dictionary.size());
+            }
+        }
+        if (dictionary == null)
+        {
+            dest.writeInt(PLAIN);
+            for (String value : column)
+            {
+                dest.writeString(value);
+            }
+            return;
+        }
+
+        dest.writeInt(DICTIONARY);
+        String[] values = new String[dictionary.size()];
+        for (Map.Entry<String, Integer> entry : dictionary.entrySet())
+        {
+            values[entry.getValue()] = entry.getKey();
+        }
+        dest.writeInt(values.length);
+        for (String value : values)
+        {
+            dest.writeString(value);
+        }
+        // the index plus one, 0 for null
+        ParcelledVarintWriter indexes = new ParcelledVarintWriter(column.length);
+        for (String value : column)
+        {
+            indexes.writeInt(value == null ? 0 : dictionary.get(value) + 1);
+        }
+        indexes.writeTo(dest);
+    }
+
+    public static String[] readStringColumn(Parcel in, int size)
+    {
+        String[] column = new String[size];
+        if (in.readInt() == PLAIN)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                column[i] = in.readString();
+            }
+            return column;
+        }
+        String[] values = new String[in.readInt()];
+        for (int i = 0; i < values.length; i++)
+        {
+            values[i] = in.readString();
+        }
+        ParcelledVarintReader indexes = new ParcelledVarintReader(in);
+        for (int i = 0; i < size; i++)
+        {
+            int index = indexes.readInt();
+            column[i] = index == 0 ? null : values[index - 1];
+        }
+        return column;
+    }
+
+    private static boolean isSorted(int[] column)
+    {
+        for (int i = 1; i < column.length; i++)
+        {
+            if (column[i] < column[i - 1])
+            {
+                return false;
+            }
+        }
+        return column.length > 1;
+    }
+
+    private static boolean isSorted(long[] column)
+    {
+        for (int i = 1; i < column.length; i++)
+        {
+            if (column[i] < column[i - 1])
+            {
+                return false;
+            }
+        }
+        return column.length > 1;
+    }
+
+}
@@ -0,0 +1,215 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link ParcelledSink} writing to a heap, direct or memory-mapped {@link ByteBuffer}, from its
+ * position and in its byte order. Primitive arrays are bulk-copied through the views of the
+ * buffer, Strings are written as UTF-8.
+ *
+ * <p>A sink created with {@link #allocate(int, boolean)} grows its buffer when full, otherwise
+ * writing past the limit throws a {@link BufferOverflowException}.
+ *
+ * <pre>
+ * <code>
+ * MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+ * Parcelled_Quote.writeValue(quote, new ParcelledBufferSink(map));
+ * </code>
+ * </pre>
+ */
+public final class ParcelledBufferSink implements ParcelledSink
+{
+
+    private ByteBuffer buffer;
+    private final boolean growable;
+
+    public ParcelledBufferSink(ByteBuffer buffer)
+    {
+        this(buffer, false);
+    }
+
+    private ParcelledBufferSink(ByteBuffer buffer, boolean growable)
+    {
+        this.buffer = buffer;
+        this.growable = growable;
+    }
+
+    /**
+     * Returns a sink writing to a new buffer of the given initial capacity, grown when full.
+     *
+     * @param direct whether the buffer is allocated outside of the heap
+     */
+    public static ParcelledBufferSink allocate(int capacity, boolean direct)
+    {
+        return new ParcelledBufferSink(direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity), true);
+    }
+
+    /**
+     * Returns the buffer written to, positioned after the last value; it is replaced when the
+     * sink grows.
+     */
+    public ByteBuffer buffer()
+    {
+        return buffer;
+    }
+
+    @Override
+    public void writeInt(int value)
+    {
+        ensure(4).putInt(value);
+    }
+
+    @Override
+    public void writeLong(long value)
+    {
+        ensure(8).putLong(value);
+    }
+
+    @Override
+    public void writeFloat(float value)
+    {
+        ensure(4).putFloat(value);
+    }
+
+    @Override
+    public void writeDouble(double value)
+    {
+        ensure(8).putDouble(value);
+    }
+
+    @Override
+    public void writeString(String value)
+    {
+        writeByteArray(value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void writeStringArray(String[] value)
+    {
+        if (writeLength(value == null ? -1 : value.length, 0))
+        {
+            for (String element : value)
+            {
+                writeString(element);
+            }
+        }
+    }
+
+    @Override
+    public void writeBooleanArray(boolean[] value)
+    {
+        if (writeLength(value == null ? -1 : value.length, 1))
+        {
+            for (boolean element : value)
+            {
+                buffer.put(element ? (byte) 1 : (byte) 0);
+            }
+        }
+    }
+
+    @Override
+    public void writeByteArray(byte[] value)
+    {
+        if (writeLength(value == null ? -1 : value.length, 1))
+        {
+            buffer.put(value);
+        }
+    }
+
+    @Override
+    public void writeCharArray(char[] value)
+    {
+        if (writeLength(value == null ? -1 : value.length, 2))
+        {
+            buffer.asCharBuffer().put(value);
+            skip(2 * value.length);
+        }
+    }
+
+    @Override
+    public void writeIntArray(int[] value)
+    {
+        if (writeLength(value == null ? -1 : value.length, 4))
+        {
+            buffer.asIntBuffer().put(value);
+            skip(4 * value.length);
+        }
+    }
+
+    @Override
+    public void writeLongArray(long[] value)
+    {
+        if (writeLength(value == null ? -1 : value.length, 8))
+        {
+            buffer.asLongBuffer().put(value);
+            skip(8 * value.length);
+        }
+    }
+
+    @Override
+    public void writeFloatArray(float[] value)
+    {
+        if (writeLength(value == null ? -1 : value.length, 4))
+        {
+            buffer.asFloatBuffer().put(value);
+            skip(4 * value.length);
+        }
+    }
+
+    @Override
+    public void writeDoubleArray(double[] value)
+    {
+        if (writeLength(value == null ? -1 : value.length, 8))
+        {
+            buffer.asDoubleBuffer().put(value);
+            skip(8 * value.length);
+        }
+    }
+
+    /**
+     * Writes the length of an array and makes room for its elements.
+     *
+     * @return false for a {@code null} array, which has no elements
+     */
+    private boolean writeLength(int length, int width)
+    {
+        ensure(4 + Math.max(length, 0) * width).putInt(length);
+        return length >= 0;
+    }
+
+    private void skip(int bytes)
+    {
+        buffer.position(buffer.position() + bytes);
+    }
+
+    private ByteBuffer ensure(int bytes)
+    {
+        if (buffer.remaining() >= bytes || !growable)
+        {
+            return buffer;
+        }
+        int capacity = Math.max(buffer.capacity() * 2, buffer.position() + bytes);
+        ByteBuffer grown = buffer.isDirect() ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        buffer.flip();
+        grown.order(buffer.order()).put(buffer);
+        buffer = grown;
+        return buffer;
+    }
+
+}
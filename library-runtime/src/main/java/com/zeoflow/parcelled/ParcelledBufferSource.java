@@ -0,0 +1,209 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link ParcelledSource} reading from a {@link ByteBuffer} what a {@link ParcelledBufferSink}
+ * wrote, from its position and in the byte order of the writer. Primitive arrays are
+ * bulk-copied through the views of the buffer.
+ */
+public final class ParcelledBufferSource implements ParcelledSource
+{
+
+    private final ByteBuffer buffer;
+
+    public ParcelledBufferSource(ByteBuffer buffer)
+    {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Returns the buffer read from, positioned after the last value.
+     */
+    public ByteBuffer buffer()
+    {
+        return buffer;
+    }
+
+    @Override
+    public int readInt()
+    {
+        return buffer.getInt();
+    }
+
+    @Override
+    public long readLong()
+    {
+        return buffer.getLong();
+    }
+
+    @Override
+    public float readFloat()
+    {
+        return buffer.getFloat();
+    }
+
+    @Override
+    public double readDouble()
+    {
+        return buffer.getDouble();
+    }
+
+    @Override
+    public String readString()
+    {
+        int length = buffer.getInt();
+        if (length < 0)
+        {
+            return null;
+        }
+        String value;
+        if (buffer.hasArray())
+        {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            skip(length);
+        } else
+        {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    @Override
+    public String[] createStringArray()
+    {
+        int length = buffer.getInt();
+        if (length < 0)
+        {
+            return null;
+        }
+        String[] value = new String[length];
+        for (int i = 0; i < length; i++)
+        {
+            value[i] = readString();
+        }
+        return value;
+    }
+
+    @Override
+    public boolean[] createBooleanArray()
+    {
+        int length = buffer.getInt();
+        if (length < 0)
+        {
+            return null;
+        }
+        boolean[] value = new boolean[length];
+        for (int i = 0; i < length; i++)
+        {
+            value[i] = buffer.get() != 0;
+        }
+        return value;
+    }
+
+    @Override
+    public byte[] createByteArray()
+    {
+        int length = buffer.getInt();
+        if (length < 0)
+        {
+            return null;
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return value;
+    }
+
+    @Override
+    public char[] createCharArray()
+    {
+        int length = buffer.getInt();
+        if (length < 0)
+        {
+            return null;
+        }
+        char[] value = new char[length];
+        buffer.asCharBuffer().get(value);
+        skip(2 * length);
+        return value;
+    }
+
+    @Override
+    public int[] createIntArray()
+    {
+        int length = buffer.getInt();
+        if (length < 0)
+        {
+            return null;
+        }
+        int[] value = new int[length];
+        buffer.asIntBuffer().get(value);
+        skip(4 * length);
+        return value;
+    }
+
+    @Override
+    public long[] createLongArray()
+    {
+        int length = buffer.getInt();
+        if (length < 0)
+        {
+            return null;
+        }
+        long[] value = new long[length];
+        buffer.asLongBuffer().get(value);
+        skip(8 * length);
+        return value;
+    }
+
+    @Override
+    public float[] createFloatArray()
+    {
+        int length = buffer.getInt();
+        if (length < 0)
+        {
+            return null;
+        }
+        float[] value = new float[length];
+        buffer.asFloatBuffer().get(value);
+        skip(4 * length);
+        return value;
+    }
+
+    @Override
+    public double[] createDoubleArray()
+    {
+        int length = buffer.getInt();
+        if (length < 0)
+        {
+            return null;
+        }
+        double[] value = new double[length];
+        buffer.asDoubleBuffer().get(value);
+        skip(8 * length);
+        return value;
+    }
+
+    private void skip(int bytes)
+    {
+        buffer.position(buffer.position() + bytes);
+    }
+
+}
@@ -0,0 +1,45 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.zeoflow.parcelled;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * An annotation to indicate the auto-parcel to generate a {@link ParcelledBatch} for the annotated
+ * class, the static {@code BATCH} field of its {@code Parcelled_*} class, which writes a list of
+ * instances column by column instead of one instance after the other. The
+ * <code>List</code> properties of other {@link Parcelled} classes whose elements are of the
+ * annotated class are written with it.
+ *
+ * <pre>
+ * <code>
+ * {@literal @}Parcelled {@literal @}ParcelledColumnar public abstract class Person  {...}
+ *
+ * Parcelled_Person.BATCH.write(persons, parcel);
+ * </code>
+ * </pre>
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+@Documented
+public @interface ParcelledColumnar
+{
+
+}
@@ -0,0 +1,62 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.zeoflow.parcelled;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * An annotation to indicate the auto-parcel to compress the value of the annotated
+ * <code>String</code> or <code>byte[]</code> property when it reaches the given length, see
+ * {@link ParcelledCompression}. Shorter values are written as they are, after a marker, and the
+ * value is decompressed transparently on read.
+ *
+ * <pre>
+ * <code>
+ * {@literal @}ParcelledCompressed(threshold = 4096) public String json;
+ * </code>
+ * </pre>
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.CLASS)
+@Documented
+public @interface ParcelledCompressed
+{
+
+    /**
+     * Length, in chars for a <code>String</code> and in bytes for a <code>byte[]</code>, from
+     * which the value is compressed.
+     */
+    int threshold() default 1024;
+
+    Codec codec() default Codec.DEFLATE;
+
+    enum Codec
+    {
+        /**
+         * Deflate with the default compression level.
+         */
+        DEFLATE,
+        /**
+         * Deflate with the fastest compression level, which mostly finds the repeated runs.
+         */
+        FAST
+    }
+
+}
@@ -0,0 +1,147 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.zeoflow.parcelled;
+
+import android.os.BadParcelableException;
+import android.os.Parcel;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Codecs of the {@link ParcelledCompressed} properties, called by the generated
+ * {@code Parcelled_*} classes. A value is written as a marker, {@code 0} for a value written as
+ * it is or {@code 1} for a deflated value, followed by either the value or its length and the
+ * deflated bytes. A value is written as it is when it is shorter than the threshold or when it
+ * does not get smaller once deflated.
+ */
+public final class ParcelledCompression
+{
+
+    private static final int RAW = 0;
+    private static final int DEFLATED = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private ParcelledCompression()
+    {
+    }
+
+    public static void writeString(Parcel dest, String value, int threshold, ParcelledCompressed.Codec codec)
+    {
+        if (value != null && value.length() >= threshold)
+        {
+            byte[] bytes = value.getBytes(UTF_8);
+            if (writeDeflated(dest, bytes, codec))
+            {
+                return;
+            }
+        }
+        dest.writeInt(RAW);
+        dest.writeString(value);
+    }
+
+    public static String readString(Parcel in)
+    {
+        if (in.readInt() == RAW)
+        {
+            return in.readString();
+        }
+        return new String(readDeflated(in), UTF_8);
+    }
+
+    public static void writeByteArray(Parcel dest, byte[] value, int threshold, ParcelledCompressed.Codec codec)
+    {
+        if (value != null && value.length >= threshold && writeDeflated(dest, value, codec))
+        {
+            return;
+        }
+        dest.writeInt(RAW);
+        dest.writeByteArray(value);
+    }
+
+    public static byte[] createByteArray(Parcel in)
+    {
+        if (in.readInt() == RAW)
+        {
+            return in.createByteArray();
+        }
+        return readDeflated(in);
+    }
+
+    private static boolean writeDeflated(Parcel dest, byte[] bytes, ParcelledCompressed.Codec codec)
+    {
+        Deflater deflater = new Deflater(codec == ParcelledCompressed.Codec.FAST
+                ? Deflater.BEST_SPEED : Deflater.DEFAULT_COMPRESSION);
+        try
+        {
+            deflater.setInput(bytes);
+            deflater.finish();
+            // not worth it unless smaller than the value
+            byte[] buffer = new byte[bytes.length];
+            int length = 0;
+            while (!deflater.finished() && length < buffer.length)
+            {
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            if (!deflater.finished())
+            {
+                return false;
+            }
+            dest.writeInt(DEFLATED);
+            dest.writeInt(bytes.length);
+            dest.writeByteArray(buffer, 0, length);
+            return true;
+        } finally
+        {
+            deflater.end();
+        }
+    }
+
+    private static byte[] readDeflated(Parcel in)
+    {
+        byte[] bytes = new byte[in.readInt()];
+        Inflater inflater = new Inflater();
+        try
+        {
+            inflater.setInput(in.createByteArray());
+            int length = 0;
+            while (length < bytes.length && !inflater.finished())
+            {
+                int inflated = inflater.inflate(bytes, length, bytes.length - length);
+                if (inflated == 0 && inflater.needsInput())
+                {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != bytes.length)
+            {
+                throw new BadParcelableException("Truncated compressed value");
+            }
+            return bytes;
+        } catch (DataFormatException e)
+        {
+            throw new BadParcelableException(e);
+        } finally
+        {
+            inflater.end();
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled;
+
+import android.os.Parcel;
+
+import java.util.Date;
+
+/**
+ * Codec of the {@link Date} properties without adapter, called by the generated
+ * {@code Parcelled_*} classes in place of {@link Parcel#writeSerializable(java.io.Serializable)}.
+ * A date is written as its time in milliseconds; {@code null} is left to the null flag which the
+ * generated classes write for every {@code Date} property, {@code @Nullable} or not, so that
+ * every time, {@link Long#MIN_VALUE} included, reads back as the same date.
+ */
+public final class ParcelledDates
+{
+
+    private ParcelledDates()
+    {
+    }
+
+    public static void writeDate(Date value, Parcel dest)
+    {
+        dest.writeLong(value.getTime());
+    }
+
+    public static Date readDate(Parcel in)
+    {
+        return new Date(in.readLong());
+    }
+
+}
@@ -0,0 +1,55 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * An annotation to indicate the auto-parcel to generate {@code writeDelta(previous, dest)} and
+ * {@code applyDelta(in)} for the annotated class. A delta is written as the version, the bitmask
+ * of the unversioned properties which are not equal to the ones of the previous instance, one bit
+ * per property in declaration order, the header and varint block of the class, then only those
+ * properties, each with the same codec as in {@code writeToParcel()}, and a section per changed
+ * {@link ParcelledVersion} property. Applying it to a copy of the previous instance yields the
+ * current one.
+ *
+ * <p>A delta of any version applies: the reader skips the sections of the properties it does not
+ * know, and keeps the value of the ones the writer does not know.
+ *
+ * <p>Properties are compared with {@code equals()}, or {@code Arrays.equals()} for arrays; a
+ * {@code null} previous instance writes every property. A {@link Parcelled} value is not compared
+ * property by property: unless its class overrides {@code equals()} it is written whole each time
+ * it is not the same instance.
+ *
+ * <pre>
+ * <code>
+ * {@literal @}Parcelled {@literal @}ParcelledDelta public abstract class ScreenState  {...}
+ *
+ * ((IParcelled_ScreenState) state).writeDelta(sent, parcel);
+ * ((IParcelled_ScreenState) remote).applyDelta(parcel);
+ * </code>
+ * </pre>
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+@Documented
+public @interface ParcelledDelta
+{
+
+}
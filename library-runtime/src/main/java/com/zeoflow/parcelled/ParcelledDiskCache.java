@@ -0,0 +1,719 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * On-disk LRU cache of {@link ParcelledPortable} objects, written with their generated
+ * {@code writeValue(value, ParcelledSink)} and read with {@code readValue(ParcelledSource)}.
+ *
+ * <pre>
+ * <code>
+ * ParcelledDiskCache&lt;String, Quote&gt; cache = ParcelledDiskCache.open(directory, 16 * 1024 * 1024,
+ *         Parcelled_Quote::writeValue, Parcelled_Quote::readValue);
+ * </code>
+ * </pre>
+ *
+ * <p>The records are appended to memory-mapped segment files and located through an in-memory
+ * index of the keys, rebuilt from the segments when the cache is opened. A read decodes straight
+ * from the mapped segment, without a system call nor a copy of the record, and never blocks.
+ * Writers are striped by key: the writers of keys of distinct stripes do not wait for each other.
+ *
+ * <p>When the records exceed the maximum size, the least recently read or written ones are
+ * evicted. The segments left mostly empty are compacted and deleted, so the segment files may
+ * take up to a few times the maximum size on disk. A removed or evicted key is followed by a
+ * tombstone while its records remain, so it is not loaded again when the cache is reopened.
+ *
+ * <p>A record written by an older version of the class is read as usual, its missing
+ * {@link ParcelledVersion} properties being reset; a record which can not be decoded, as one
+ * written by a newer version of the class, is dropped and read as a miss.
+ *
+ * @param <K> type of the keys, with a stable {@code hashCode()}
+ * @param <T> type of the values
+ */
+public final class ParcelledDiskCache<K, T> implements Closeable
+{
+
+    private static final String SUFFIX = ".segment";
+    private static final int VALUE = 1;
+    private static final int TOMBSTONE = 2;
+    // length, sequence and kind of a record
+    private static final int HEADER = 4 + 8 + 4;
+    private static final int STRIPES = 8;
+    private static final int SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    private final File directory;
+    private final long maxSize;
+    private final Encoder<K> keyEncoder;
+    private final Decoder<K> keyDecoder;
+    private final Encoder<T> encoder;
+    private final Decoder<T> decoder;
+    private final ConcurrentHashMap<K, Entry> index = new ConcurrentHashMap<>();
+    private final Set<Segment> segments = Collections.newSetFromMap(new ConcurrentHashMap<Segment, Boolean>());
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger segmentIds = new AtomicInteger();
+    // bytes of the records in the index
+    private final AtomicLong size = new AtomicLong();
+    private final ReentrantLock maintenance = new ReentrantLock();
+    private final ThreadLocal<ParcelledBufferSink> sinks = new ThreadLocal<>();
+
+    /**
+     * Opens the cache stored in the given directory, creating it if needed.
+     *
+     * @param maxSize    maximum size of the records, in bytes
+     * @param keyEncoder writes a key
+     * @param keyDecoder reads a key
+     * @param encoder    writes a value, usually the generated {@code writeValue}
+     * @param decoder    reads a value, usually the generated {@code readValue}
+     */
+    public ParcelledDiskCache(File directory, long maxSize, Encoder<K> keyEncoder, Decoder<K> keyDecoder,
+            Encoder<T> encoder, Decoder<T> decoder) throws IOException
+    {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.keyEncoder = keyEncoder;
+        this.keyDecoder = keyDecoder;
+        this.encoder = encoder;
+        this.decoder = decoder;
+        for (int i = 0; i < STRIPES; i++)
+        {
+            stripes[i] = new Stripe();
+        }
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Can not create " + directory);
+        }
+        load();
+        maintain();
+    }
+
+    /**
+     * Opens a cache of values keyed by Strings, see
+     * {@link #ParcelledDiskCache(File, long, Encoder, Decoder, Encoder, Decoder)}.
+     */
+    public static <T> ParcelledDiskCache<String, T> open(File directory, long maxSize, Encoder<T> encoder,
+            Decoder<T> decoder) throws IOException
+    {
+        return new ParcelledDiskCache<>(directory, maxSize, new Encoder<String>()
+        {
+            @Override
+            public void encode(String value, ParcelledSink sink)
+            {
+                sink.writeString(value);
+            }
+        }, new Decoder<String>()
+        {
+            @Override
+            public String decode(ParcelledSource source)
+            {
+                return source.readString();
+            }
+        }, encoder, decoder);
+    }
+
+    /**
+     * Returns the value of the key, {@code null} if there is none.
+     */
+    public T get(K key)
+    {
+        Entry entry = index.get(key);
+        if (entry == null)
+        {
+            return null;
+        }
+        entry.access = System.nanoTime();
+        ByteBuffer buffer = entry.segment.buffer.duplicate();
+        buffer.limit(entry.offset + entry.length);
+        buffer.position(entry.valueOffset);
+        try
+        {
+            return decoder.decode(new ParcelledBufferSource(buffer));
+        } catch (RuntimeException e)
+        {
+            // written by a newer version, or by an incompatible change of the class
+            evict(key, entry);
+            return null;
+        }
+    }
+
+    /**
+     * Sets the value of the key, evicting the least recently used values beyond the maximum size.
+     */
+    public void put(K key, T value)
+    {
+        if (value == null)
+        {
+            remove(key);
+            return;
+        }
+        ByteBuffer record = encode(key, value, VALUE);
+        Stripe stripe = stripeOf(key);
+        stripe.lock.lock();
+        try
+        {
+            Entry entry = append(stripe, record);
+            size.addAndGet(entry.length);
+            release(index.put(key, entry));
+        } finally
+        {
+            stripe.lock.unlock();
+        }
+        maintain();
+    }
+
+    /**
+     * Removes the value of the key, if any.
+     */
+    public void remove(K key)
+    {
+        Stripe stripe = stripeOf(key);
+        stripe.lock.lock();
+        try
+        {
+            // keeps the older records of the key from being loaded again, even those of a key no
+            // longer in the index
+            append(stripe, encode(key, null, TOMBSTONE));
+            release(index.remove(key));
+        } finally
+        {
+            stripe.lock.unlock();
+        }
+        maintain();
+    }
+
+    /**
+     * Returns the size of the cached records, in bytes.
+     */
+    public long size()
+    {
+        return size.get();
+    }
+
+    /**
+     * Writes the segments back to the disk.
+     */
+    public void flush()
+    {
+        for (Segment segment : segments)
+        {
+            segment.buffer.force();
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        flush();
+    }
+
+    /**
+     * Encodes a record: its length, its sequence number, set when it is appended, its kind, the
+     * key and the value, if any.
+     */
+    private ByteBuffer encode(K key, T value, int kind)
+    {
+        ParcelledBufferSink sink = sinks.get();
+        if (sink == null)
+        {
+            sink = ParcelledBufferSink.allocate(256, false);
+            sinks.set(sink);
+        }
+        sink.buffer().clear();
+        sink.writeInt(0);
+        sink.writeLong(0L);
+        sink.writeInt(kind);
+        keyEncoder.encode(key, sink);
+        int valueOffset = sink.buffer().position();
+        if (value != null)
+        {
+            encoder.encode(value, sink);
+        }
+        ByteBuffer record = sink.buffer();
+        record.flip();
+        record.putInt(0, record.limit());
+        // the offset of the value is only needed until the record is appended
+        record.mark();
+        record.position(valueOffset);
+        return record;
+    }
+
+    private Stripe stripeOf(K key)
+    {
+        int hash = key.hashCode();
+        return stripes[((hash ^ (hash >>> 16)) & 0x7fffffff) % STRIPES];
+    }
+
+    /**
+     * Called when an entry leaves the index, deletes its segment once nothing in it is needed.
+     */
+    private void release(Entry entry)
+    {
+        if (entry == null)
+        {
+            return;
+        }
+        size.addAndGet(-entry.length);
+        Segment segment = entry.segment;
+        if (segment.live.addAndGet(-entry.length) == 0 && segment.sealed && segment.tombstones == 0)
+        {
+            delete(segment);
+        }
+    }
+
+    private void evict(K key, Entry entry)
+    {
+        Stripe stripe = stripeOf(key);
+        stripe.lock.lock();
+        try
+        {
+            if (index.remove(key, entry))
+            {
+                if (leavesRecords(entry))
+                {
+                    append(stripe, encode(key, null, TOMBSTONE));
+                }
+                release(entry);
+            }
+        } finally
+        {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether a record of the key of an entry leaving the index may still be loaded: its
+     * own, unless its segment is deleted with it, or an older one of another segment.
+     */
+    private boolean leavesRecords(Entry entry)
+    {
+        Segment segment = entry.segment;
+        if (!segment.sealed || segment.tombstones > 0 || segment.live.get() > entry.length)
+        {
+            return true;
+        }
+        for (Segment other : segments)
+        {
+            if (other != segment && other.firstSequence < entry.sequence)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void delete(Segment segment)
+    {
+        if (segments.remove(segment))
+        {
+            // the mapping stays valid for the readers still decoding from it
+            segment.file.delete();
+        }
+    }
+
+    /**
+     * Evicts the least recently used entries beyond the maximum size, then compacts the segments
+     * left mostly empty. Runs on one writer at a time, the others skip it.
+     */
+    private void maintain()
+    {
+        if (size.get() <= maxSize && !hasSparseSegment() || !maintenance.tryLock())
+        {
+            return;
+        }
+        try
+        {
+            if (size.get() > maxSize)
+            {
+                List<Map.Entry<K, Entry>> entries = new ArrayList<>(index.entrySet());
+                Collections.sort(entries, new Comparator<Map.Entry<K, Entry>>()
+                {
+                    @Override
+                    public int compare(Map.Entry<K, Entry> a, Map.Entry<K, Entry> b)
+                    {
+                        return Long.compare(a.getValue().access, b.getValue().access);
+                    }
+                });
+                // leaves some room, not to evict again on the next write
+                long target = maxSize - maxSize / 8;
+                for (int i = 0; i < entries.size() && size.get() > target; i++)
+                {
+                    evict(entries.get(i).getKey(), entries.get(i).getValue());
+                }
+            }
+            for (Segment segment : segments.toArray(new Segment[0]))
+            {
+                if (segment.isSparse())
+                {
+                    compact(segment);
+                }
+            }
+        } finally
+        {
+            maintenance.unlock();
+        }
+    }
+
+    private boolean hasSparseSegment()
+    {
+        for (Segment segment : segments)
+        {
+            if (segment.isSparse())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Appends the records of a sealed segment still in the index, and the tombstones still hiding
+     * a record of another segment, to the current segments, then deletes it. A tombstone is not
+     * needed anymore once the key has a newer value, which hides the older records itself.
+     */
+    private void compact(Segment segment)
+    {
+        long oldest = Long.MAX_VALUE;
+        for (Segment other : segments)
+        {
+            if (other != segment)
+            {
+                oldest = Math.min(oldest, other.firstSequence);
+            }
+        }
+        ByteBuffer buffer = segment.buffer.duplicate();
+        int offset = 0;
+        while (offset < segment.position)
+        {
+            int length = buffer.getInt(offset);
+            long recordSequence = buffer.getLong(offset + 4);
+            int kind = buffer.getInt(offset + 12);
+            buffer.limit(offset + length);
+            buffer.position(offset + HEADER);
+            K key = keyDecoder.decode(new ParcelledBufferSource(buffer));
+            int valueOffset = buffer.position() - offset;
+            if (kind == VALUE || recordSequence > oldest)
+            {
+                Stripe stripe = stripeOf(key);
+                stripe.lock.lock();
+                try
+                {
+                    Entry entry = index.get(key);
+                    if (kind == TOMBSTONE ? entry == null : entry != null && entry.segment == segment && entry.offset == offset)
+                    {
+                        ByteBuffer record = buffer.duplicate();
+                        record.position(offset);
+                        Entry moved = copy(stripe, record.slice(), recordSequence, valueOffset);
+                        if (kind == VALUE)
+                        {
+                            moved.access = entry.access;
+                            size.addAndGet(moved.length);
+                            index.put(key, moved);
+                            release(entry);
+                        }
+                    }
+                } finally
+                {
+                    stripe.lock.unlock();
+                }
+            }
+            buffer.limit(buffer.capacity());
+            offset += length;
+        }
+        delete(segment);
+    }
+
+    /**
+     * Maps the segments of the directory and indexes the latest record of every key, unless it is
+     * a tombstone. The keys which left the index while records of theirs remained, removed or
+     * evicted, have a tombstone newer than those records.
+     */
+    private void load() throws IOException
+    {
+        File[] files = directory.listFiles();
+        if (files == null)
+        {
+            return;
+        }
+        Arrays.sort(files);
+        Map<K, Entry> latest = new HashMap<>();
+        for (File file : files)
+        {
+            String name = file.getName();
+            if (!name.endsWith(SUFFIX))
+            {
+                continue;
+            }
+            int id;
+            try
+            {
+                id = Integer.parseInt(name.substring(0, name.length() - SUFFIX.length()));
+            } catch (NumberFormatException e)
+            {
+                continue;
+            }
+            segmentIds.set(Math.max(segmentIds.get(), id + 1));
+            Segment segment = new Segment(file, map(file, file.length()));
+            segment.sealed = true;
+            segments.add(segment);
+
+            ByteBuffer buffer = segment.buffer.duplicate();
+            int offset = 0;
+            while (offset + HEADER <= buffer.capacity())
+            {
+                int length = buffer.getInt(offset);
+                if (length < HEADER || offset + length > buffer.capacity())
+                {
+                    // end of the segment, or a record not written completely
+                    break;
+                }
+                long recordSequence = buffer.getLong(offset + 4);
+                int kind = buffer.getInt(offset + 12);
+                buffer.limit(offset + length);
+                buffer.position(offset + HEADER);
+                K key;
+                try
+                {
+                    key = keyDecoder.decode(new ParcelledBufferSource(buffer));
+                } catch (RuntimeException e)
+                {
+                    break;
+                }
+                Entry entry = new Entry(segment, offset, length, buffer.position(), recordSequence, kind == TOMBSTONE);
+                Entry previous = latest.get(key);
+                if (previous == null || previous.sequence < recordSequence)
+                {
+                    latest.put(key, entry);
+                }
+                if (kind == TOMBSTONE)
+                {
+                    segment.tombstones++;
+                }
+                segment.firstSequence = Math.min(segment.firstSequence, recordSequence);
+                sequence.set(Math.max(sequence.get(), recordSequence));
+                buffer.limit(buffer.capacity());
+                offset += length;
+            }
+            segment.position = offset;
+        }
+
+        for (Map.Entry<K, Entry> entry : latest.entrySet())
+        {
+            Entry value = entry.getValue();
+            if (!value.tombstone)
+            {
+                // older than any use since, in the order of the writes
+                value.access = Long.MIN_VALUE + value.sequence;
+                index.put(entry.getKey(), value);
+                value.segment.live.addAndGet(value.length);
+                size.addAndGet(value.length);
+            }
+        }
+        for (Segment segment : segments.toArray(new Segment[0]))
+        {
+            if (segment.live.get() == 0 && segment.tombstones == 0)
+            {
+                delete(segment);
+            }
+        }
+    }
+
+    /**
+     * Appends a new record, positioned at its value with its start marked, to the segment of the
+     * stripe; the lock of the stripe is held.
+     */
+    private Entry append(Stripe stripe, ByteBuffer record)
+    {
+        int valueOffset = record.position();
+        record.reset();
+        return copy(stripe, record, sequence.incrementAndGet(), valueOffset);
+    }
+
+    /**
+     * Appends a record with the given sequence number to the segment of the stripe; the lock of
+     * the stripe is held.
+     */
+    private Entry copy(Stripe stripe, ByteBuffer record, long recordSequence, int valueOffset)
+    {
+        int length = record.remaining();
+        Segment segment = stripe.current;
+        if (segment == null || segment.buffer.capacity() - segment.position < length)
+        {
+            if (segment != null)
+            {
+                segment.sealed = true;
+                if (segment.live.get() == 0 && segment.tombstones == 0)
+                {
+                    delete(segment);
+                }
+            }
+            segment = newSegment(Math.max(SEGMENT_SIZE, length));
+            stripe.current = segment;
+        }
+        int offset = segment.position;
+        ByteBuffer target = segment.buffer.duplicate();
+        target.position(offset + 4);
+        target.putLong(recordSequence);
+        record.position(record.position() + 12);
+        target.put(record);
+        // written last, a record is complete once its length is
+        segment.buffer.putInt(offset, length);
+        segment.position = offset + length;
+        segment.firstSequence = Math.min(segment.firstSequence, recordSequence);
+        boolean tombstone = segment.buffer.getInt(offset + 12) == TOMBSTONE;
+        if (tombstone)
+        {
+            segment.tombstones++;
+        } else
+        {
+            segment.live.addAndGet(length);
+        }
+        return new Entry(segment, offset, length, offset + valueOffset, recordSequence, tombstone);
+    }
+
+    private Segment newSegment(int capacity)
+    {
+        File file = new File(directory, String.format("%010d", segmentIds.getAndIncrement()) + SUFFIX);
+        try
+        {
+            Segment segment = new Segment(file, map(file, capacity));
+            segments.add(segment);
+            return segment;
+        } catch (IOException e)
+        {
+            throw new IllegalStateException("Can not create " + file, e);
+        }
+    }
+
+    private static MappedByteBuffer map(File file, long length) throws IOException
+    {
+        RandomAccessFile access = new RandomAccessFile(file, "rw");
+        try
+        {
+            if (access.length() < length)
+            {
+                access.setLength(length);
+            }
+            // the mapping outlives the channel
+            return access.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+        } finally
+        {
+            access.close();
+        }
+    }
+
+    /**
+     * Writes a value, usually the generated {@code writeValue}: {@code Parcelled_Foo::writeValue}.
+     */
+    public interface Encoder<T>
+    {
+
+        void encode(T value, ParcelledSink sink);
+
+    }
+
+    /**
+     * Reads a value, usually the generated {@code readValue}: {@code Parcelled_Foo::readValue}.
+     */
+    public interface Decoder<T>
+    {
+
+        T decode(ParcelledSource source);
+
+    }
+
+    /**
+     * Location of the latest record of a key.
+     */
+    private static final class Entry
+    {
+
+        final Segment segment;
+        final int offset;
+        final int length;
+        final int valueOffset;
+        final long sequence;
+        final boolean tombstone;
+        volatile long access = System.nanoTime();
+
+        Entry(Segment segment, int offset, int length, int valueOffset, long sequence, boolean tombstone)
+        {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.valueOffset = valueOffset;
+            this.sequence = sequence;
+            this.tombstone = tombstone;
+        }
+
+    }
+
+    private static final class Segment
+    {
+
+        final File file;
+        final MappedByteBuffer buffer;
+        // bytes of the records in the index
+        final AtomicInteger live = new AtomicInteger();
+        // written by the holder of the lock of the stripe appending to the segment
+        int position;
+        volatile int tombstones;
+        volatile long firstSequence = Long.MAX_VALUE;
+        volatile boolean sealed;
+
+        Segment(File file, MappedByteBuffer buffer)
+        {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        boolean isSparse()
+        {
+            return sealed && live.get() < buffer.capacity() / 4;
+        }
+
+    }
+
+    /**
+     * Appends the records of the keys of a stripe to its current segment.
+     */
+    private static final class Stripe
+    {
+
+        final ReentrantLock lock = new ReentrantLock();
+        Segment current;
+
+    }
+
+}
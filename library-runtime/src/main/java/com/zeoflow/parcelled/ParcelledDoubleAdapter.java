@@ -0,0 +1,55 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.zeoflow.parcelled;
+
+import android.os.Parcel;
+
+/**
+ * Converts <code>double</code> values to and from Parcels without boxing them, unlike a
+ * {@link ParcelledTypeAdapter}&lt;Double&gt;.
+ *
+ * <p>You can tell the Parcel Extension to use this adapter by using the {@link ParcelledAdapter}
+ * annotation on any <code>double</code> property.
+ *
+ * <pre>
+ * <code>
+ * {@literal @}Parcelled public abstract class Foo {
+ *   {@literal @}ParcelledAdapter(ScaledDoubleAdapter.class) public double value;
+ * }
+ * </code>
+ * </pre>
+ */
+public interface ParcelledDoubleAdapter
+{
+
+    /**
+     * Reads a value from the provided {@link Parcel}.
+     *
+     * @param in The {@link Parcel} which contains the value.
+     *
+     * @return The value read from {@code in}.
+     */
+    double fromParcel(Parcel in);
+
+    /**
+     * Writes {@code value} into {@code dest}.
+     *
+     * @param value The value to be written.
+     * @param dest  The {@link Parcel} in which to write {@code value}.
+     */
+    void toParcel(double value, Parcel dest);
+
+}
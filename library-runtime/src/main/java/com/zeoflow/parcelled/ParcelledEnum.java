@@ -0,0 +1,64 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * An annotation that selects how the auto-parcel encodes an enum. It can be set on the enum
+ * itself, applying to every property and collection element of that enum, or on a single
+ * property, overriding the encoding of the enum for that property.
+ *
+ * <pre>
+ * <code>
+ * {@literal @}ParcelledEnum(ParcelledEnum.Encoding.ID) public enum Status {
+ *   {@literal @}ParcelledEnumId(1) ACTIVE,
+ *   {@literal @}ParcelledEnumId(2) DELETED
+ * }
+ * </code>
+ * </pre>
+ */
+@Target({ElementType.TYPE, ElementType.FIELD})
+@Retention(RetentionPolicy.CLASS)
+@Documented
+public @interface ParcelledEnum
+{
+
+    Encoding value();
+
+    enum Encoding
+    {
+        /**
+         * The constant name is written as a String; this is the default encoding.
+         */
+        NAME,
+        /**
+         * The constant ordinal is written as an int and read back from a cached
+         * {@code values()} array. Reordering the constants changes the encoding; ordinals
+         * beyond the constants of the reader are read back as {@code null}.
+         */
+        ORDINAL,
+        /**
+         * The stable id declared by {@link ParcelledEnumId} on every constant is written as an
+         * int. Ids unknown to the reader are read back as {@code null}.
+         */
+        ID
+    }
+
+}
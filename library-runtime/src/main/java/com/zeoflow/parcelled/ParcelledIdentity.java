@@ -0,0 +1,47 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.zeoflow.parcelled;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * An annotation to indicate the auto-parcel that instances of the annotated class are tracked by
+ * identity in the {@link ParcelledSession}: an instance already written to the parcel is written
+ * again as a back-reference, and the reader returns the instance it already decoded. Shared
+ * instances stay shared after decoding, and cycles no longer recurse forever.
+ *
+ * <p>Back-references are resolved within one session, so the root of the object graph should be
+ * a <code>@Parcelled</code> class too. They reach across the sections of the
+ * {@link ParcelledVersion} and {@link ParcelledProjection} properties, but not into a
+ * {@link ParcelledLazy} property, which therefore can not hold tracked instances.
+ *
+ * <pre>
+ * <code>
+ * {@literal @}Parcelled {@literal @}ParcelledIdentity public abstract class Foo  {...}
+ * </code>
+ * </pre>
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+@Documented
+public @interface ParcelledIdentity
+{
+
+}
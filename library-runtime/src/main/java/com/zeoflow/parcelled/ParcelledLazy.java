@@ -0,0 +1,47 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.zeoflow.parcelled;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * An annotation to indicate the auto-parcel that the annotated property is decoded on first
+ * access instead of when the object is read. The encoded property is kept as a copy of its bytes
+ * and decoded by the {@code getFoo()} accessor generated in {@code IParcelled_*}, which the
+ * class may implement to expose it; until then the field itself is not set.
+ *
+ * <p>The copy is decoded on its own, so a lazy property can not hold {@link ParcelledIdentity}
+ * objects, which may refer back to the rest of the parcel.
+ *
+ * <pre>
+ * <code>
+ * {@literal @}Parcelled public abstract class Foo implements IParcelled_Foo {
+ *   {@literal @}ParcelledLazy public List&lt;Entry&gt; history;
+ * }
+ * </code>
+ * </pre>
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.CLASS)
+@Documented
+public @interface ParcelledLazy
+{
+
+}
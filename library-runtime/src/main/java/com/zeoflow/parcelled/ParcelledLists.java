@@ -0,0 +1,387 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled;
+
+import android.os.Parcel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Typed codecs for lists of boxed primitives, called by the generated {@code Parcelled_*} classes
+ * in place of {@link Parcel#writeList(List)} / {@link Parcel#readArrayList(ClassLoader)}.
+ *
+ * <p>A list is unboxed into a primitive array written in bulk, its size ({@code -1} for
+ * {@code null}) followed by the elements, then the indexes of the {@code null} elements, if any.
+ * Unlike {@link Parcel#writeList(List)} no type tag is written per element and the decoded list
+ * is allocated with its exact size. The {@code byte}, {@code short}, {@code char} and
+ * {@code boolean} elements take an {@code int} each, as in {@link Parcel#writeInt(int)}.
+ */
+public final class ParcelledLists
+{
+
+    private ParcelledLists()
+    {
+    }
+
+    public static void writeIntegerList(List<Integer> list, Parcel dest)
+    {
+        if (list == null)
+        {
+            dest.writeInt(-1);
+            return;
+        }
+        int[] values = new int[list.size()];
+        int nulls = 0;
+        int i = 0;
+        for (Integer value : list)
+        {
+            if (value == null)
+            {
+                nulls++;
+            } else
+            {
+                values[i] = value;
+            }
+            i++;
+        }
+        dest.writeIntArray(values);
+        writeNullIndexes(list, nulls, dest);
+    }
+
+    public static ArrayList<Integer> readIntegerList(Parcel in)
+    {
+        int[] values = in.createIntArray();
+        if (values == null)
+        {
+            return null;
+        }
+        ArrayList<Integer> list = new ArrayList<>(values.length);
+        for (int i = 0; i < values.length; i++)
+        {
+            list.add(values[i]);
+        }
+        return readNullIndexes(list, in);
+    }
+
+    public static void writeLongList(List<Long> list, Parcel dest)
+    {
+        if (list == null)
+        {
+            dest.writeInt(-1);
+            return;
+        }
+        long[] values = new long[list.size()];
+        int nulls = 0;
+        int i = 0;
+        for (Long value : list)
+        {
+            if (value == null)
+            {
+                nulls++;
+            } else
+            {
+                values[i] = value;
+            }
+            i++;
+        }
+        dest.writeLongArray(values);
+        writeNullIndexes(list, nulls, dest);
+    }
+
+    public static ArrayList<Long> readLongList(Parcel in)
+    {
+        long[] values = in.createLongArray();
+        if (values == null)
+        {
+            return null;
+        }
+        ArrayList<Long> list = new ArrayList<>(values.length);
+        for (int i = 0; i < values.length; i++)
+        {
+            list.add(values[i]);
+        }
+        return readNullIndexes(list, in);
+    }
+
+    public static void writeShortList(List<Short> list, Parcel dest)
+    {
+        if (list == null)
+        {
+            dest.writeInt(-1);
+            return;
+        }
+        int[] values = new int[list.size()];
+        int nulls = 0;
+        int i = 0;
+        for (Short value : list)
+        {
+            if (value == null)
+            {
+                nulls++;
+            } else
+            {
+                values[i] = value;
+            }
+            i++;
+        }
+        dest.writeIntArray(values);
+        writeNullIndexes(list, nulls, dest);
+    }
+
+    public static ArrayList<Short> readShortList(Parcel in)
+    {
+        int[] values = in.createIntArray();
+        if (values == null)
+        {
+            return null;
+        }
+        ArrayList<Short> list = new ArrayList<>(values.length);
+        for (int i = 0; i < values.length; i++)
+        {
+            list.add((short) values[i]);
+        }
+        return readNullIndexes(list, in);
+    }
+
+    public static void writeByteList(List<Byte> list, Parcel dest)
+    {
+        if (list == null)
+        {
+            dest.writeInt(-1);
+            return;
+        }
+        int[] values = new int[list.size()];
+        int nulls = 0;
+        int i = 0;
+        for (Byte value : list)
+        {
+            if (value == null)
+            {
+                nulls++;
+            } else
+            {
+                values[i] = value;
+            }
+            i++;
+        }
+        dest.writeIntArray(values);
+        writeNullIndexes(list, nulls, dest);
+    }
+
+    public static ArrayList<Byte> readByteList(Parcel in)
+    {
+        int[] values = in.createIntArray();
+        if (values == null)
+        {
+            return null;
+        }
+        ArrayList<Byte> list = new ArrayList<>(values.length);
+        for (int i = 0; i < values.length; i++)
+        {
+            list.add((byte) values[i]);
+        }
+        return readNullIndexes(list, in);
+    }
+
+    public static void writeCharacterList(List<Character> list, Parcel dest)
+    {
+        if (list == null)
+        {
+            dest.writeInt(-1);
+            return;
+        }
+        int[] values = new int[list.size()];
+        int nulls = 0;
+        int i = 0;
+        for (Character value : list)
+        {
+            if (value == null)
+            {
+                nulls++;
+            } else
+            {
+                values[i] = value;
+            }
+            i++;
+        }
+        dest.writeIntArray(values);
+        writeNullIndexes(list, nulls, dest);
+    }
+
+    public static ArrayList<Character> readCharacterList(Parcel in)
+    {
+        int[] values = in.createIntArray();
+        if (values == null)
+        {
+            return null;
+        }
+        ArrayList<Character> list = new ArrayList<>(values.length);
+        for (int i = 0; i < values.length; i++)
+        {
+            list.add((char) values[i]);
+        }
+        return readNullIndexes(list, in);
+    }
+
+    public static void writeFloatList(List<Float> list, Parcel dest)
+    {
+        if (list == null)
+        {
+            dest.writeInt(-1);
+            return;
+        }
+        float[] values = new float[list.size()];
+        int nulls = 0;
+        int i = 0;
+        for (Float value : list)
+        {
+            if (value == null)
+            {
+                nulls++;
+            } else
+            {
+                values[i] = value;
+            }
+            i++;
+        }
+        dest.writeFloatArray(values);
+        writeNullIndexes(list, nulls, dest);
+    }
+
+    public static ArrayList<Float> readFloatList(Parcel in)
+    {
+        float[] values = in.createFloatArray();
+        if (values == null)
+        {
+            return null;
+        }
+        ArrayList<Float> list = new ArrayList<>(values.length);
+        for (int i = 0; i < values.length; i++)
+        {
+            list.add(values[i]);
+        }
+        return readNullIndexes(list, in);
+    }
+
+    public static void writeDoubleList(List<Double> list, Parcel dest)
+    {
+        if (list == null)
+        {
+            dest.writeInt(-1);
+            return;
+        }
+        double[] values = new double[list.size()];
+        int nulls = 0;
+        int i = 0;
+        for (Double value : list)
+        {
+            if (value == null)
+            {
+                nulls++;
+            } else
+            {
+                values[i] = value;
+            }
+            i++;
+        }
+        dest.writeDoubleArray(values);
+        writeNullIndexes(list, nulls, dest);
+    }
+
+    public static ArrayList<Double> readDoubleList(Parcel in)
+    {
+        double[] values = in.createDoubleArray();
+        if (values == null)
+        {
+            return null;
+        }
+        ArrayList<Double> list = new ArrayList<>(values.length);
+        for (int i = 0; i < values.length; i++)
+        {
+            list.add(values[i]);
+        }
+        return readNullIndexes(list, in);
+    }
+
+    public static void writeBooleanList(List<Boolean> list, Parcel dest)
+    {
+        if (list == null)
+        {
+            dest.writeInt(-1);
+            return;
+        }
+        int[] values = new int[list.size()];
+        int nulls = 0;
+        int i = 0;
+        for (Boolean value : list)
+        {
+            if (value == null)
+            {
+                nulls++;
+            } else
+            {
+                values[i] = value ? 1 : 0;
+            }
+            i++;
+        }
+        dest.writeIntArray(values);
+        writeNullIndexes(list, nulls, dest);
+    }
+
+    public static ArrayList<Boolean> readBooleanList(Parcel in)
+    {
+        int[] values = in.createIntArray();
+        if (values == null)
+        {
+            return null;
+        }
+        ArrayList<Boolean> list = new ArrayList<>(values.length);
+        for (int i = 0; i < values.length; i++)
+        {
+            list.add(values[i] == 1);
+        }
+        return readNullIndexes(list, in);
+    }
+
+    private static void writeNullIndexes(List<?> list, int nulls, Parcel dest)
+    {
+        dest.writeInt(nulls);
+        if (nulls == 0)
+        {
+            return;
+        }
+        int index = 0;
+        for (Object value : list)
+        {
+            if (value == null)
+            {
+                dest.writeInt(index);
+            }
+            index++;
+        }
+    }
+
+    private static <T> ArrayList<T> readNullIndexes(ArrayList<T> list, Parcel in)
+    {
+        int nulls = in.readInt();
+        for (int i = 0; i < nulls; i++)
+        {
+            list.set(in.readInt(), null);
+        }
+        return list;
+    }
+
+}
@@ -0,0 +1,110 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled;
+
+import android.os.Parcel;
+
+/**
+ * {@link ParcelledSink} writing to a {@link Parcel}, in the format of its own array writers.
+ */
+public final class ParcelledParcelSink implements ParcelledSink
+{
+
+    private final Parcel dest;
+
+    public ParcelledParcelSink(Parcel dest)
+    {
+        this.dest = dest;
+    }
+
+    @Override
+    public void writeInt(int value)
+    {
+        dest.writeInt(value);
+    }
+
+    @Override
+    public void writeLong(long value)
+    {
+        dest.writeLong(value);
+    }
+
+    @Override
+    public void writeFloat(float value)
+    {
+        dest.writeFloat(value);
+    }
+
+    @Override
+    public void writeDouble(double value)
+    {
+        dest.writeDouble(value);
+    }
+
+    @Override
+    public void writeString(String value)
+    {
+        dest.writeString(value);
+    }
+
+    @Override
+    public void writeStringArray(String[] value)
+    {
+        dest.writeStringArray(value);
+    }
+
+    @Override
+    public void writeBooleanArray(boolean[] value)
+    {
+        dest.writeBooleanArray(value);
+    }
+
+    @Override
+    public void writeByteArray(byte[] value)
+    {
+        dest.writeByteArray(value);
+    }
+
+    @Override
+    public void writeCharArray(char[] value)
+    {
+        dest.writeCharArray(value);
+    }
+
+    @Override
+    public void writeIntArray(int[] value)
+    {
+        dest.writeIntArray(value);
+    }
+
+    @Override
+    public void writeLongArray(long[] value)
+    {
+        dest.writeLongArray(value);
+    }
+
+    @Override
+    public void writeFloatArray(float[] value)
+    {
+        dest.writeFloatArray(value);
+    }
+
+    @Override
+    public void writeDoubleArray(double[] value)
+    {
+        dest.writeDoubleArray(value);
+    }
+
+}
@@ -0,0 +1,110 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled;
+
+import android.os.Parcel;
+
+/**
+ * {@link ParcelledSource} reading from a {@link Parcel} what a {@link ParcelledParcelSink} wrote.
+ */
+public final class ParcelledParcelSource implements ParcelledSource
+{
+
+    private final Parcel in;
+
+    public ParcelledParcelSource(Parcel in)
+    {
+        this.in = in;
+    }
+
+    @Override
+    public int readInt()
+    {
+        return in.readInt();
+    }
+
+    @Override
+    public long readLong()
+    {
+        return in.readLong();
+    }
+
+    @Override
+    public float readFloat()
+    {
+        return in.readFloat();
+    }
+
+    @Override
+    public double readDouble()
+    {
+        return in.readDouble();
+    }
+
+    @Override
+    public String readString()
+    {
+        return in.readString();
+    }
+
+    @Override
+    public String[] createStringArray()
+    {
+        return in.createStringArray();
+    }
+
+    @Override
+    public boolean[] createBooleanArray()
+    {
+        return in.createBooleanArray();
+    }
+
+    @Override
+    public byte[] createByteArray()
+    {
+        return in.createByteArray();
+    }
+
+    @Override
+    public char[] createCharArray()
+    {
+        return in.createCharArray();
+    }
+
+    @Override
+    public int[] createIntArray()
+    {
+        return in.createIntArray();
+    }
+
+    @Override
+    public long[] createLongArray()
+    {
+        return in.createLongArray();
+    }
+
+    @Override
+    public float[] createFloatArray()
+    {
+        return in.createFloatArray();
+    }
+
+    @Override
+    public double[] createDoubleArray()
+    {
+        return in.createDoubleArray();
+    }
+
+}
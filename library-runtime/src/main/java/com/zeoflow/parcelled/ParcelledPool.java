@@ -0,0 +1,73 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.zeoflow.parcelled;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free bounded pool of the instances of a {@link ParcelledPooled} class, one per generated
+ * class. Every slot holds at most one instance and is claimed with a compare-and-set, so
+ * {@link #acquire()} and {@link #release(Object)} never block; they return {@code null} and
+ * {@code false} when the pool is empty or full.
+ *
+ * @param <T> type of the pooled instances
+ */
+public final class ParcelledPool<T>
+{
+
+    private final AtomicReferenceArray<T> slots;
+
+    public ParcelledPool(int size)
+    {
+        this.slots = new AtomicReferenceArray<>(size);
+    }
+
+    /**
+     * Takes an instance out of the pool.
+     *
+     * @return the instance, or {@code null} when the pool is empty
+     */
+    public T acquire()
+    {
+        for (int i = 0; i < slots.length(); i++)
+        {
+            T instance = slots.get(i);
+            if (instance != null && slots.compareAndSet(i, instance, null))
+            {
+                return instance;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns an instance to the pool.
+     *
+     * @return false when the pool is full, the instance being left to the garbage collector
+     */
+    public boolean release(T instance)
+    {
+        for (int i = 0; i < slots.length(); i++)
+        {
+            if (slots.get(i) == null && slots.compareAndSet(i, null, instance))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
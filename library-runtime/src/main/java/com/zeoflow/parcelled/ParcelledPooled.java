@@ -0,0 +1,54 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.zeoflow.parcelled;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * An annotation to indicate the auto-parcel to keep a bounded {@link ParcelledPool} of the
+ * generated class, which its {@code CREATOR} and {@code readValue(Parcel)} draw from before
+ * allocating. An instance is returned to the pool with the generated {@code release()}, and
+ * must not be used afterwards; releasing it a second time, even from another thread at the same
+ * moment, throws an {@link IllegalStateException} instead of pooling it twice.
+ *
+ * <p>A pooled instance is decoded with {@code readFrom(Parcel)}, which also reuses its arrays.
+ *
+ * <pre>
+ * <code>
+ * {@literal @}Parcelled {@literal @}ParcelledPooled(16) public abstract class Sample  {...}
+ *
+ * Sample sample = Parcelled_Sample.CREATOR.createFromParcel(parcel);
+ * ...
+ * sample.release();
+ * </code>
+ * </pre>
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+@Documented
+public @interface ParcelledPooled
+{
+
+    /**
+     * Maximum number of instances kept in the pool.
+     */
+    int value() default 8;
+
+}
@@ -0,0 +1,50 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * An annotation to indicate the auto-parcel to generate, next to <code>writeToParcel()</code>, a
+ * {@code writeTo(ParcelledSink)} and a {@code readFrom(ParcelledSource)} method, and the static
+ * {@code writeValue(value, ParcelledSink)} / {@code readValue(ParcelledSource)} of the annotated
+ * class, and its static {@code RECORDS}, see {@link ParcelledRecords}. They do not call into
+ * {@code android.os.Parcel}, so the same models can be written to a {@link java.nio.ByteBuffer}
+ * on a plain JVM, see {@link ParcelledBufferSink}.
+ *
+ * <p>The properties must be primitives, boxed primitives, Strings, Dates, enums, arrays of
+ * primitives or Strings, other {@link ParcelledPortable} classes, or lists and maps of them.
+ * Type adapters and {@link ParcelledIdentity} are not supported.
+ *
+ * <pre>
+ * <code>
+ * {@literal @}Parcelled {@literal @}ParcelledPortable public abstract class Quote  {...}
+ *
+ * ParcelledBufferSink sink = new ParcelledBufferSink(ByteBuffer.allocateDirect(4096));
+ * Parcelled_Quote.writeValue(quote, sink);
+ * </code>
+ * </pre>
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+@Documented
+public @interface ParcelledPortable
+{
+
+}
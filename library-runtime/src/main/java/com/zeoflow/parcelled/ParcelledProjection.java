@@ -0,0 +1,46 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.zeoflow.parcelled;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * An annotation to indicate the auto-parcel to generate a {@code readProjection(Parcel, long)}
+ * for the annotated class, which reads only the properties selected by the {@code FIELD_*}
+ * constants generated in {@code IParcelled_*} and skips the others without decoding them.
+ *
+ * <p>To make the skips cheap, every property without a fixed width is written with a length
+ * prefix, in its own {@link ParcelledSession}.
+ *
+ * <pre>
+ * <code>
+ * {@literal @}Parcelled {@literal @}ParcelledProjection public abstract class Foo  {...}
+ *
+ * Foo row = Parcelled_Foo.readProjection(parcel, IParcelled_Foo.FIELD_NAME | IParcelled_Foo.FIELD_AGE);
+ * </code>
+ * </pre>
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+@Documented
+public @interface ParcelledProjection
+{
+
+}
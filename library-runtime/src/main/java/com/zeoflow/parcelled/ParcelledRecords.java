@@ -0,0 +1,55 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled;
+
+/**
+ * Codec of the records of a {@link ParcelledPortable} class, generated as the static
+ * {@code RECORDS} field of its {@code Parcelled_*} class. A record is written as the properties
+ * of a non-null instance, without the version written by {@code writeTo(ParcelledSink)}: the
+ * caller writes the version once for many records, as {@link ParcelledStreamWriter} does.
+ *
+ * @param <T> type of the records
+ */
+public abstract class ParcelledRecords<T>
+{
+
+    private final int version;
+
+    protected ParcelledRecords(int version)
+    {
+        this.version = version;
+    }
+
+    /**
+     * Returns the {@link Parcelled#version()} of the class.
+     */
+    public final int version()
+    {
+        return version;
+    }
+
+    /**
+     * Writes the properties of the record.
+     */
+    public abstract void write(T value, ParcelledSink sink);
+
+    /**
+     * Reads a record written by the given version of the class.
+     *
+     * @throws IllegalArgumentException when the version is newer than the one of the class
+     */
+    public abstract T read(ParcelledSource source, int version);
+
+}
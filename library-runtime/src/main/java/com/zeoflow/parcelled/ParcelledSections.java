@@ -0,0 +1,135 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.zeoflow.parcelled;
+
+import android.os.Parcel;
+
+/**
+ * Helpers for the sections holding the {@link ParcelledVersion} properties, called by the
+ * generated {@code Parcelled_*} classes. A section is written as a tag, the length of its payload
+ * in bytes and the payload, so a reader can skip a section it does not know with one
+ * {@link Parcel#setDataPosition(int)}.
+ *
+ * <p>A section written while a {@link ParcelledSession} is open runs in a session of its own, so a
+ * skipped section does not leave the string table or the object ids of the reader behind the
+ * writer. The objects written before a section are still referred to from it, except in the
+ * detached section of a {@link ParcelledLazy} property, which is read later from a copy.
+ */
+public final class ParcelledSections
+{
+
+    private ParcelledSections()
+    {
+    }
+
+    /**
+     * Writes the tag and a placeholder for the length of a section.
+     *
+     * @return position of the length, to pass to {@link #end(Parcel, int)}
+     */
+    public static int begin(Parcel dest, int tag)
+    {
+        dest.writeInt(tag);
+        return begin(dest);
+    }
+
+    /**
+     * Writes a placeholder for the length of an untagged section, such as the one of a
+     * {@link ParcelledProjection} property.
+     *
+     * @return position of the length, to pass to {@link #end(Parcel, int)}
+     */
+    public static int begin(Parcel dest)
+    {
+        int start = dest.dataPosition();
+        dest.writeInt(0);
+        ParcelledSession.beginSection(dest);
+        return start;
+    }
+
+    /**
+     * Writes a placeholder for the length of an untagged section which refers to nothing written
+     * before it, such as the one of a {@link ParcelledLazy} property.
+     *
+     * @return position of the length, to pass to {@link #end(Parcel, int)}
+     */
+    public static int beginDetached(Parcel dest)
+    {
+        int start = dest.dataPosition();
+        dest.writeInt(0);
+        ParcelledSession.beginDetached(dest);
+        return start;
+    }
+
+    /**
+     * Writes the length of the section started at the given position.
+     */
+    public static void end(Parcel dest, int start)
+    {
+        ParcelledSession.endSection(dest);
+        int end = dest.dataPosition();
+        dest.setDataPosition(start);
+        dest.writeInt(end - start - 4);
+        dest.setDataPosition(end);
+    }
+
+    /**
+     * Reads the length of a section whose tag was just read.
+     *
+     * @return position right after the section, to pass to {@link #close(Parcel, int)}
+     */
+    public static int open(Parcel in)
+    {
+        int length = in.readInt();
+        int end = in.dataPosition() + length;
+        ParcelledSession.beginSection(in);
+        return end;
+    }
+
+    /**
+     * Moves past an untagged section without reading it.
+     */
+    public static void skip(Parcel in)
+    {
+        int length = in.readInt();
+        in.setDataPosition(in.dataPosition() + length);
+    }
+
+    /**
+     * Copies an untagged section to a new parcel, positioned at its start, and moves past it. The
+     * caller reads the copy in its own session and recycles it.
+     */
+    public static Parcel copy(Parcel in)
+    {
+        int length = in.readInt();
+        int start = in.dataPosition();
+        Parcel copy = Parcel.obtain();
+        copy.appendFrom(in, start, length);
+        copy.setDataPosition(0);
+        in.setDataPosition(start + length);
+        return copy;
+    }
+
+    /**
+     * Moves to the end of the section, whether it was read or not.
+     */
+    public static void close(Parcel in, int end)
+    {
+        ParcelledSession.endSection(in);
+        in.setDataPosition(end);
+    }
+
+}
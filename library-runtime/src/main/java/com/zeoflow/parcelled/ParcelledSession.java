@@ -0,0 +1,254 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.zeoflow.parcelled;
+
+import android.os.Parcel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * State shared by the generated {@code Parcelled_*} classes while an object graph is written to
+ * or read from one {@link Parcel}. A session is opened by the outermost {@link #begin(Parcel)} of
+ * the current thread for a parcel and closed by the matching {@link #end(Parcel)}; the nested
+ * objects written to the same parcel join it.
+ *
+ * <p>A section that a reader may skip runs in a session of its own, opened by
+ * {@link #beginSection(Parcel)} when a session is open for the parcel: it refers back to the
+ * objects of the enclosing session, while the strings and the objects written in the section are
+ * forgotten at its end, on both sides. Without an open session, as for the classes using neither
+ * {@link ParcelledStringTable} nor {@link ParcelledIdentity}, a section allocates nothing.
+ */
+public final class ParcelledSession
+{
+
+    private static final ThreadLocal<ParcelledSession> CURRENT = new ThreadLocal<>();
+
+    private final Parcel parcel;
+    private final ParcelledSession outer;
+    // session whose objects the section refers back to, null if none
+    private final ParcelledSession enclosing;
+    // number of objects read in the enclosing sessions
+    private final int readBase;
+    private int depth;
+
+    private HashMap<String, Integer> writtenStrings;
+    private ArrayList<String> readStrings;
+
+    private IdentityHashMap<Object, Integer> writtenObjects;
+    private int writtenCount;
+    private ArrayList<Object> readObjects;
+
+    private ParcelledSession(Parcel parcel, ParcelledSession outer, ParcelledSession enclosing)
+    {
+        this.parcel = parcel;
+        this.outer = outer;
+        this.enclosing = enclosing;
+        if (enclosing != null)
+        {
+            // the ids of the section follow the ones of the enclosing session
+            this.writtenCount = enclosing.writtenCount;
+            this.readBase = enclosing.readCount();
+        } else
+        {
+            this.readBase = 0;
+        }
+    }
+
+    public static void begin(Parcel parcel)
+    {
+        ParcelledSession session = CURRENT.get();
+        if (session != null && session.parcel == parcel)
+        {
+            session.depth++;
+            return;
+        }
+        CURRENT.set(new ParcelledSession(parcel, session, null));
+    }
+
+    /**
+     * Opens a new session for the parcel if one is already open, so that the strings and objects
+     * of a section that a reader may skip are not shared with the rest of the parcel. The objects
+     * written before the section in the same parcel are still referred to by id, so a cycle
+     * through the section ends. Without an open session, the writer and the reader alike have
+     * nothing to share with the section and nothing is opened; the objects of the section which
+     * need a session open their own.
+     */
+    public static void beginSection(Parcel parcel)
+    {
+        ParcelledSession session = CURRENT.get();
+        if (session != null && session.parcel == parcel)
+        {
+            CURRENT.set(new ParcelledSession(parcel, session, session));
+        }
+    }
+
+    /**
+     * Closes the session opened by {@link #beginSection(Parcel)} or
+     * {@link #beginDetached(Parcel)}, if any.
+     */
+    public static void endSection(Parcel parcel)
+    {
+        ParcelledSession session = CURRENT.get();
+        if (session != null && session.parcel == parcel)
+        {
+            end(parcel);
+        }
+    }
+
+    /**
+     * Opens a new session for the parcel which shares nothing with the enclosing one, for a
+     * section read on its own, such as the copy of a {@link ParcelledLazy} property.
+     */
+    public static void beginDetached(Parcel parcel)
+    {
+        CURRENT.set(new ParcelledSession(parcel, CURRENT.get(), null));
+    }
+
+    public static void end(Parcel parcel)
+    {
+        ParcelledSession session = current(parcel);
+        if (session.depth == 0)
+        {
+            CURRENT.set(session.outer);
+        } else
+        {
+            session.depth--;
+        }
+    }
+
+    /**
+     * Writes {@code -1} for {@code null}, the id of the string plus one if it was already written
+     * in this session, otherwise {@code 0} followed by the string.
+     */
+    public static void writeString(Parcel dest, String value)
+    {
+        if (value == null)
+        {
+            dest.writeInt(-1);
+            return;
+        }
+        ParcelledSession session = current(dest);
+        if (session.writtenStrings == null)
+        {
+            session.writtenStrings = new HashMap<>();
+        }
+        Integer id = session.writtenStrings.get(value);
+        if (id != null)
+        {
+            dest.writeInt(id + 1);
+            return;
+        }
+        session.writtenStrings.put(value, session.writtenStrings.size());
+        dest.writeInt(0);
+        dest.writeString(value);
+    }
+
+    public static String readString(Parcel in)
+    {
+        int id = in.readInt();
+        if (id < 0)
+        {
+            return null;
+        }
+        ParcelledSession session = current(in);
+        if (session.readStrings == null)
+        {
+            session.readStrings = new ArrayList<>();
+        }
+        if (id > 0)
+        {
+            return session.readStrings.get(id - 1);
+        }
+        String value = in.readString();
+        session.readStrings.add(value);
+        return value;
+    }
+
+    /**
+     * Assigns the next object id of the session to an object about to be written in full.
+     */
+    public static void registerWritten(Parcel dest, Object value)
+    {
+        ParcelledSession session = current(dest);
+        if (session.writtenObjects == null)
+        {
+            session.writtenObjects = new IdentityHashMap<>();
+        }
+        session.writtenObjects.put(value, session.writtenCount++);
+    }
+
+    /**
+     * Returns the id of an object already written in full in this session, {@code -1} if none.
+     */
+    public static int writtenId(Parcel dest, Object value)
+    {
+        for (ParcelledSession session = current(dest); session != null; session = session.enclosing)
+        {
+            Integer id = session.writtenObjects == null ? null : session.writtenObjects.get(value);
+            if (id != null)
+            {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Assigns the next object id of the session to an object about to be read in full, before its
+     * properties are read so that they can refer back to it.
+     */
+    public static void registerRead(Parcel in, Object value)
+    {
+        ParcelledSession session = current(in);
+        if (session.readObjects == null)
+        {
+            session.readObjects = new ArrayList<>();
+        }
+        session.readObjects.add(value);
+    }
+
+    public static Object readReference(Parcel in, int id)
+    {
+        ParcelledSession session = current(in);
+        while (session.enclosing != null && id < session.readBase)
+        {
+            session = session.enclosing;
+        }
+        if (id < session.readBase || id >= session.readCount())
+        {
+            throw new IllegalStateException("Unknown object reference " + id);
+        }
+        return session.readObjects.get(id - session.readBase);
+    }
+
+    private int readCount()
+    {
+        return readBase + (readObjects == null ? 0 : readObjects.size());
+    }
+
+    private static ParcelledSession current(Parcel parcel)
+    {
+        ParcelledSession session = CURRENT.get();
+        if (session == null || session.parcel != parcel)
+        {
+            throw new IllegalStateException("No session is open for " + parcel);
+        }
+        return session;
+    }
+
+}
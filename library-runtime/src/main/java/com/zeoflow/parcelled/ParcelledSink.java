@@ -0,0 +1,55 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled;
+
+/**
+ * Destination of the {@code writeTo(ParcelledSink)} methods generated for the
+ * {@link ParcelledPortable} classes, with the writers of {@code android.os.Parcel} they use.
+ * Arrays and Strings are written as their length, {@code -1} for {@code null}, followed by their
+ * content. Only a {@link ParcelledSource} of the same kind can read them back.
+ *
+ * @see ParcelledParcelSink
+ * @see ParcelledBufferSink
+ */
+public interface ParcelledSink
+{
+
+    void writeInt(int value);
+
+    void writeLong(long value);
+
+    void writeFloat(float value);
+
+    void writeDouble(double value);
+
+    void writeString(String value);
+
+    void writeStringArray(String[] value);
+
+    void writeBooleanArray(boolean[] value);
+
+    void writeByteArray(byte[] value);
+
+    void writeCharArray(char[] value);
+
+    void writeIntArray(int[] value);
+
+    void writeLongArray(long[] value);
+
+    void writeFloatArray(float[] value);
+
+    void writeDoubleArray(double[] value);
+
+}
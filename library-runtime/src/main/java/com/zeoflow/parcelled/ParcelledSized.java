@@ -0,0 +1,31 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.zeoflow.parcelled;
+
+/**
+ * Implemented by the generated {@code Parcelled_*} classes to report the number of bytes their
+ * {@code writeToParcel()} appends: exact for the fixed-width properties, estimated for strings,
+ * collections and other objects. See {@link ParcelledSizes}.
+ */
+public interface ParcelledSized
+{
+
+    /**
+     * Returns the number of bytes written by {@code writeToParcel()}, estimated.
+     */
+    int sizeOf();
+
+}
@@ -0,0 +1,223 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.zeoflow.parcelled;
+
+import android.os.Parcel;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Size estimates of the values written to a {@link Parcel}, used by the generated
+ * {@link ParcelledSized#sizeOf()} and by callers to size a parcel once before writing to it.
+ *
+ * <pre>
+ * <code>
+ * Parcel parcel = Parcel.obtain();
+ * ParcelledSizes.presize(parcel, person);
+ * person.writeToParcel(parcel, 0);
+ * </code>
+ * </pre>
+ *
+ * <p>The same estimate rejects a payload before the Binder does, see {@link #fits(Object, int)}.
+ */
+public final class ParcelledSizes
+{
+
+    /**
+     * Size assumed for the values this class knows nothing about.
+     */
+    public static final int UNKNOWN_SIZE = 64;
+
+    /**
+     * Size of the Binder transaction buffer, shared by all the transactions in progress of a
+     * process.
+     */
+    public static final int TRANSACTION_LIMIT = 1024 * 1024;
+
+    private static final ThreadLocal<Visit> VISITS = new ThreadLocal<>();
+
+    private ParcelledSizes()
+    {
+    }
+
+    /**
+     * Ensures the parcel can hold the given number of bytes after its data position without
+     * growing.
+     */
+    public static void presize(Parcel parcel, int size)
+    {
+        int required = parcel.dataPosition() + size;
+        if (parcel.dataCapacity() < required)
+        {
+            parcel.setDataCapacity(required);
+        }
+    }
+
+    /**
+     * Ensures the parcel can hold the estimated size of the given value after its data position
+     * without growing.
+     *
+     * @return the estimated size
+     */
+    public static int presize(Parcel parcel, Object value)
+    {
+        int size = value instanceof ParcelledSized ? ((ParcelledSized) value).sizeOf() : sizeOf(value);
+        presize(parcel, size);
+        return size;
+    }
+
+    /**
+     * Returns whether the estimated size of the given value is within the limit, e.g. the
+     * {@link #TRANSACTION_LIMIT} of a Binder transaction.
+     */
+    public static boolean fits(Object value, int limit)
+    {
+        return (value instanceof ParcelledSized ? ((ParcelledSized) value).sizeOf() : sizeOf(value)) <= limit;
+    }
+
+    /**
+     * Returns the size of a string written with {@link Parcel#writeString(String)}: its length,
+     * then its UTF-16 chars and a terminator, padded to 4 bytes.
+     */
+    public static int sizeOf(String value)
+    {
+        return value == null ? 4 : 4 + align((value.length() + 1) * 2);
+    }
+
+    /**
+     * Returns the estimated size of a value, including its presence flag or length.
+     */
+    public static int sizeOf(Object value)
+    {
+        if (value == null)
+        {
+            return 4;
+        } else if (value instanceof ParcelledSized)
+        {
+            return 4 + ((ParcelledSized) value).sizeOf();
+        } else if (value instanceof String)
+        {
+            return sizeOf((String) value);
+        } else if (value instanceof Long || value instanceof Double || value instanceof Date)
+        {
+            return 12;
+        } else if (value instanceof Number || value instanceof Boolean || value instanceof Character)
+        {
+            return 8;
+        } else if (value instanceof Enum)
+        {
+            return sizeOf(((Enum<?>) value).name());
+        } else if (value instanceof byte[])
+        {
+            return 4 + align(((byte[]) value).length);
+        } else if (value instanceof long[])
+        {
+            return 4 + 8 * ((long[]) value).length;
+        } else if (value instanceof double[])
+        {
+            return 4 + 8 * ((double[]) value).length;
+        } else if (value instanceof int[])
+        {
+            return 4 + 4 * ((int[]) value).length;
+        } else if (value instanceof char[])
+        {
+            return 4 + 4 * ((char[]) value).length;
+        } else if (value instanceof boolean[])
+        {
+            return 4 + 4 * ((boolean[]) value).length;
+        } else if (value instanceof float[])
+        {
+            return 4 + 4 * ((float[]) value).length;
+        } else if (value instanceof Object[])
+        {
+            int size = 4;
+            for (Object element : (Object[]) value)
+            {
+                size += sizeOf(element);
+            }
+            return size;
+        } else if (value instanceof Collection)
+        {
+            int size = 4;
+            for (Object element : (Collection<?>) value)
+            {
+                size += sizeOf(element);
+            }
+            return size;
+        } else if (value instanceof Map)
+        {
+            int size = 4;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet())
+            {
+                size += sizeOf(entry.getKey()) + sizeOf(entry.getValue());
+            }
+            return size;
+        }
+        return UNKNOWN_SIZE;
+    }
+
+    /**
+     * Called by the generated {@code sizeOf()} of a {@link ParcelledIdentity} class before sizing
+     * an instance, which must then call {@link #exit()}.
+     *
+     * @return false when the instance was already sized in the current estimate, being written as
+     * a back-reference
+     */
+    public static boolean enter(Object value)
+    {
+        Visit visit = VISITS.get();
+        if (visit == null)
+        {
+            visit = new Visit();
+            VISITS.set(visit);
+        }
+        if (visit.seen.put(value, Boolean.TRUE) != null)
+        {
+            return false;
+        }
+        visit.depth++;
+        return true;
+    }
+
+    /**
+     * Called once an instance accepted by {@link #enter(Object)} is sized.
+     */
+    public static void exit()
+    {
+        Visit visit = VISITS.get();
+        if (--visit.depth == 0)
+        {
+            VISITS.remove();
+        }
+    }
+
+    private static int align(int size)
+    {
+        return (size + 3) & ~3;
+    }
+
+    private static final class Visit
+    {
+
+        final Map<Object, Boolean> seen = new IdentityHashMap<>();
+        int depth;
+
+    }
+
+}
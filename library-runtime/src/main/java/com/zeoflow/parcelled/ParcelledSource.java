@@ -0,0 +1,53 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled;
+
+/**
+ * Origin of the {@code readFrom(ParcelledSource)} methods generated for the
+ * {@link ParcelledPortable} classes, reading what the matching {@link ParcelledSink} wrote.
+ *
+ * @see ParcelledParcelSource
+ * @see ParcelledBufferSource
+ */
+public interface ParcelledSource
+{
+
+    int readInt();
+
+    long readLong();
+
+    float readFloat();
+
+    double readDouble();
+
+    String readString();
+
+    String[] createStringArray();
+
+    boolean[] createBooleanArray();
+
+    byte[] createByteArray();
+
+    char[] createCharArray();
+
+    int[] createIntArray();
+
+    long[] createLongArray();
+
+    float[] createFloatArray();
+
+    double[] createDoubleArray();
+
+}
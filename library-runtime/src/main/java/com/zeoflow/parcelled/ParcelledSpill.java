@@ -0,0 +1,188 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.zeoflow.parcelled;
+
+import android.os.BadParcelableException;
+import android.os.Parcel;
+import android.os.ParcelFileDescriptor;
+import android.os.Parcelable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Spills the payload of the {@link ParcelledSpillable} objects, called by the generated
+ * {@code Parcelled_*} classes. An object is written as a marker, {@code 0} when it is written in
+ * place, or {@code 1} followed by the length of the payload and the descriptor of an unlinked
+ * temporary file holding it. The reader decodes the payload from a parcel of its own.
+ *
+ * <p>Spilling keeps a large payload out of the binder transaction buffer; it does not save copies.
+ * {@link Parcel#unmarshall(byte[], int, int)} is the only way to fill a parcel with raw bytes, so
+ * the reader copies the payload twice: from the file into an array, then from the array into the
+ * parcel. The writer likewise copies it out of its parcel with {@link Parcel#marshall()}.
+ *
+ * <p>Nothing nested in a spilled payload is spilled again.
+ */
+public final class ParcelledSpill
+{
+
+    private static final int INLINE = 0;
+    private static final int SPILLED = 1;
+
+    private static final ThreadLocal<Boolean> SPILLING = new ThreadLocal<>();
+    private static volatile File directory;
+
+    private ParcelledSpill()
+    {
+    }
+
+    /**
+     * Sets the directory of the temporary files, by default the one of
+     * {@link File#createTempFile(String, String)}.
+     */
+    public static void setDirectory(File directory)
+    {
+        ParcelledSpill.directory = directory;
+    }
+
+    /**
+     * Returns whether the object is large enough to be spilled.
+     */
+    public static boolean exceeds(ParcelledSized value, int threshold)
+    {
+        return SPILLING.get() == null && value.sizeOf() >= threshold;
+    }
+
+    /**
+     * Returns the {@link Parcelable#describeContents()} of an object, which holds a file descriptor
+     * once spilled.
+     */
+    public static int describeContents(ParcelledSized value, int threshold)
+    {
+        return exceeds(value, threshold) ? Parcelable.CONTENTS_FILE_DESCRIPTOR : 0;
+    }
+
+    /**
+     * Called first by <code>writeToParcel()</code>: spills the object when it is large enough,
+     * otherwise writes the marker of an object written in place.
+     *
+     * @return true when the object was spilled, the caller having nothing left to write
+     */
+    public static <T extends Parcelable & ParcelledSized> boolean write(Parcel dest, T value, int flags, int threshold)
+    {
+        if (!exceeds(value, threshold))
+        {
+            dest.writeInt(INLINE);
+            return false;
+        }
+
+        byte[] payload;
+        Parcel parcel = Parcel.obtain();
+        SPILLING.set(Boolean.TRUE);
+        try
+        {
+            value.writeToParcel(parcel, flags);
+            payload = parcel.marshall();
+        } finally
+        {
+            SPILLING.remove();
+            parcel.recycle();
+        }
+
+        try
+        {
+            File file = File.createTempFile("parcelled", ".spill", directory);
+            try
+            {
+                FileOutputStream out = new FileOutputStream(file);
+                try
+                {
+                    out.getChannel().write(ByteBuffer.wrap(payload));
+                } finally
+                {
+                    out.close();
+                }
+                ParcelFileDescriptor descriptor = ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+                try
+                {
+                    dest.writeInt(SPILLED);
+                    dest.writeInt(payload.length);
+                    dest.writeFileDescriptor(descriptor.getFileDescriptor());
+                } finally
+                {
+                    descriptor.close();
+                }
+            } finally
+            {
+                // the descriptor keeps the content reachable
+                file.delete();
+            }
+        } catch (IOException e)
+        {
+            throw new BadParcelableException(e);
+        }
+        return true;
+    }
+
+    /**
+     * Called first by the readers: reads the marker and, for a spilled object, its file.
+     *
+     * @return the payload of a spilled object, positioned at its start, to decode and recycle;
+     * otherwise {@code null}, the object being read in place
+     */
+    public static Parcel read(Parcel in)
+    {
+        if (in.readInt() == INLINE)
+        {
+            return null;
+        }
+        int length = in.readInt();
+        ParcelFileDescriptor descriptor = in.readFileDescriptor();
+        try
+        {
+            FileInputStream stream = new ParcelFileDescriptor.AutoCloseInputStream(descriptor);
+            try
+            {
+                byte[] payload = new byte[length];
+                ByteBuffer buffer = ByteBuffer.wrap(payload);
+                FileChannel channel = stream.getChannel();
+                // read from the start, whatever the position of a descriptor shared with the writer
+                while (buffer.hasRemaining())
+                {
+                    if (channel.read(buffer, buffer.position()) < 0)
+                    {
+                        throw new IOException("Spilled payload truncated at " + buffer.position() + " of " + length);
+                    }
+                }
+                Parcel parcel = Parcel.obtain();
+                parcel.unmarshall(payload, 0, length);
+                parcel.setDataPosition(0);
+                return parcel;
+            } finally
+            {
+                stream.close();
+            }
+        } catch (IOException e)
+        {
+            throw new BadParcelableException(e);
+        }
+    }
+
+}
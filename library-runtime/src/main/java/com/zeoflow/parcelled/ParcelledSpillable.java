@@ -0,0 +1,47 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.zeoflow.parcelled;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * An annotation to indicate the auto-parcel to spill the instances of the annotated class whose
+ * estimated size, see {@link ParcelledSized}, reaches the threshold to a file, passing only its
+ * descriptor in the {@code Parcel}, see {@link ParcelledSpill}. Meant for the roots of large
+ * object graphs, which would otherwise fail with a {@code TransactionTooLargeException}.
+ *
+ * <pre>
+ * <code>
+ * {@literal @}Parcelled {@literal @}ParcelledSpillable(threshold = 128 * 1024) public abstract class Catalog  {...}
+ * </code>
+ * </pre>
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+@Documented
+public @interface ParcelledSpillable
+{
+
+    /**
+     * Estimated size in bytes from which an instance is spilled.
+     */
+    int threshold() default 256 * 1024;
+
+}
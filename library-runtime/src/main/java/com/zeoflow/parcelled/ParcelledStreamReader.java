@@ -0,0 +1,196 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the records written by a {@link ParcelledStreamWriter} from a blocking channel, one frame
+ * at a time. The buffers are reused from one frame to the next; every record is decoded with the
+ * version of its frame.
+ *
+ * <pre>
+ * <code>
+ * ParcelledStreamReader&lt;Quote&gt; reader = new ParcelledStreamReader&lt;&gt;(channel, Parcelled_Quote.RECORDS);
+ * for (Quote quote = reader.read(); quote != null; quote = reader.read())  {...}
+ * </code>
+ * </pre>
+ *
+ * @param <T> type of the records
+ */
+public final class ParcelledStreamReader<T> implements Closeable
+{
+
+    private final ReadableByteChannel channel;
+    private final ParcelledRecords<T> records;
+    private final ByteBuffer header = ByteBuffer.allocate(ParcelledStreamWriter.HEADER);
+    private final CRC32 crc = new CRC32();
+    private Inflater inflater;
+    private ByteBuffer stored;
+    private ByteBuffer inflated;
+    private ParcelledBufferSource storedSource;
+    private ParcelledBufferSource inflatedSource;
+    private ParcelledBufferSource source;
+    private int version;
+    private int remaining;
+
+    public ParcelledStreamReader(ReadableByteChannel channel, ParcelledRecords<T> records)
+    {
+        this.channel = channel;
+        this.records = records;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return the record, {@code null} at the end of the stream
+     * @throws IOException when a frame is truncated or corrupted
+     */
+    public T read() throws IOException
+    {
+        while (remaining == 0)
+        {
+            if (!readFrame())
+            {
+                return null;
+            }
+        }
+        remaining--;
+        return records.read(source, version);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (inflater != null)
+        {
+            inflater.end();
+        }
+        channel.close();
+    }
+
+    private boolean readFrame() throws IOException
+    {
+        header.clear();
+        if (!readFully(header, true))
+        {
+            return false;
+        }
+        header.flip();
+        int length = header.getInt();
+        int recordsLength = header.getInt();
+        int frameVersion = header.getInt();
+        int count = header.getInt();
+        int checksum = header.getInt();
+        if (length < 0 || recordsLength < length || count < 0)
+        {
+            throw new IOException("Corrupted frame header");
+        }
+
+        if (stored == null || stored.capacity() < length)
+        {
+            stored = ByteBuffer.allocate(Math.max(length, ParcelledStreamWriter.FRAME_SIZE));
+            storedSource = new ParcelledBufferSource(stored);
+        }
+        stored.clear();
+        stored.limit(length);
+        readFully(stored, false);
+        crc.reset();
+        crc.update(stored.array(), 0, length);
+        if ((int) crc.getValue() != checksum)
+        {
+            throw new IOException("Corrupted frame, CRC mismatch");
+        }
+        stored.flip();
+        source = storedSource;
+
+        if (recordsLength != length)
+        {
+            inflate(length, recordsLength);
+            source = inflatedSource;
+        }
+        version = frameVersion;
+        remaining = count;
+        return true;
+    }
+
+    private void inflate(int length, int recordsLength) throws IOException
+    {
+        if (inflated == null || inflated.capacity() < recordsLength)
+        {
+            inflated = ByteBuffer.allocate(Math.max(recordsLength, ParcelledStreamWriter.FRAME_SIZE));
+            inflatedSource = new ParcelledBufferSource(inflated);
+        }
+        if (inflater == null)
+        {
+            inflater = new Inflater();
+        }
+        inflater.reset();
+        inflater.setInput(stored.array(), 0, length);
+        byte[] buffer = inflated.array();
+        int size = 0;
+        try
+        {
+            while (size < recordsLength && !inflater.finished())
+            {
+                int count = inflater.inflate(buffer, size, recordsLength - size);
+                if (count == 0 && inflater.needsInput())
+                {
+                    break;
+                }
+                size += count;
+            }
+        } catch (DataFormatException e)
+        {
+            throw new IOException(e);
+        }
+        if (size != recordsLength)
+        {
+            throw new IOException("Truncated compressed frame");
+        }
+        inflated.clear();
+        inflated.limit(recordsLength);
+    }
+
+    /**
+     * Fills the buffer from the channel.
+     *
+     * @param atBoundary whether the end of the stream is allowed before the first byte
+     * @return false at the end of the stream
+     */
+    private boolean readFully(ByteBuffer buffer, boolean atBoundary) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer) < 0)
+            {
+                if (atBoundary && buffer.position() == 0)
+                {
+                    return false;
+                }
+                throw new EOFException("Truncated frame");
+            }
+        }
+        return true;
+    }
+
+}
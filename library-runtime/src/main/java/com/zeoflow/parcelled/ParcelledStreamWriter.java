@@ -0,0 +1,187 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a stream of {@link ParcelledPortable} records to a blocking channel, read back by
+ * {@link ParcelledStreamReader}. The records are batched in frames of about the given size, each
+ * written as a header followed by its payload:
+ *
+ * <ul>
+ * <li>the length of the payload, as stored;</li>
+ * <li>the length of the records, which is larger when the payload is deflated;</li>
+ * <li>the version of the class, written once for all the records of the frame;</li>
+ * <li>the number of records;</li>
+ * <li>the CRC32 of the payload.</li>
+ * </ul>
+ *
+ * <p>The buffers are reused from one frame to the next, so writing a record does not allocate
+ * once the buffers have grown to the frame size.
+ *
+ * <pre>
+ * <code>
+ * ParcelledStreamWriter&lt;Quote&gt; writer = new ParcelledStreamWriter&lt;&gt;(channel, Parcelled_Quote.RECORDS);
+ * </code>
+ * </pre>
+ *
+ * @param <T> type of the records
+ */
+public final class ParcelledStreamWriter<T> implements Closeable, Flushable
+{
+
+    static final int HEADER = 5 * 4;
+    static final int FRAME_SIZE = 64 * 1024;
+
+    private final WritableByteChannel channel;
+    private final ParcelledRecords<T> records;
+    private final int frameSize;
+    private final Deflater deflater;
+    private final ParcelledBufferSink sink;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer deflated;
+    private int count;
+
+    public ParcelledStreamWriter(WritableByteChannel channel, ParcelledRecords<T> records)
+    {
+        this(channel, records, FRAME_SIZE, null);
+    }
+
+    /**
+     * @param frameSize size from which a frame is written
+     * @param codec     compression of the frames, {@code null} for none
+     */
+    public ParcelledStreamWriter(WritableByteChannel channel, ParcelledRecords<T> records, int frameSize,
+            ParcelledCompressed.Codec codec)
+    {
+        this.channel = channel;
+        this.records = records;
+        this.frameSize = frameSize;
+        this.deflater = codec == null ? null : new Deflater(codec == ParcelledCompressed.Codec.FAST
+                ? Deflater.BEST_SPEED : Deflater.DEFAULT_COMPRESSION);
+        this.sink = ParcelledBufferSink.allocate(HEADER + frameSize + frameSize / 4, false);
+        this.sink.buffer().position(HEADER);
+    }
+
+    /**
+     * Writes a record, and the frame once full.
+     */
+    public void write(T value) throws IOException
+    {
+        if (value == null)
+        {
+            throw new NullPointerException("Records can not be null");
+        }
+        records.write(value, sink);
+        count++;
+        if (sink.buffer().position() - HEADER >= frameSize)
+        {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the pending records as a frame.
+     */
+    @Override
+    public void flush() throws IOException
+    {
+        if (count == 0)
+        {
+            return;
+        }
+        ByteBuffer frame = sink.buffer();
+        int length = frame.position() - HEADER;
+        int stored = length;
+        if (deflater != null && deflate(frame.array(), length))
+        {
+            frame = deflated;
+            stored = deflated.position() - HEADER;
+        }
+        crc.reset();
+        crc.update(frame.array(), HEADER, stored);
+        frame.putInt(0, stored);
+        frame.putInt(4, length);
+        frame.putInt(8, records.version());
+        frame.putInt(12, count);
+        frame.putInt(16, (int) crc.getValue());
+        frame.limit(HEADER + stored);
+        frame.position(0);
+        while (frame.hasRemaining())
+        {
+            channel.write(frame);
+        }
+
+        count = 0;
+        sink.buffer().clear();
+        sink.buffer().position(HEADER);
+    }
+
+    /**
+     * Writes the pending records and closes the channel.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            flush();
+        } finally
+        {
+            if (deflater != null)
+            {
+                deflater.end();
+            }
+            channel.close();
+        }
+    }
+
+    /**
+     * Deflates the records after the header into {@link #deflated}.
+     *
+     * @return false when they do not get smaller
+     */
+    private boolean deflate(byte[] records, int length)
+    {
+        if (deflated == null || deflated.capacity() < HEADER + length)
+        {
+            deflated = ByteBuffer.allocate(HEADER + length);
+        }
+        deflated.clear();
+        byte[] buffer = deflated.array();
+        deflater.reset();
+        deflater.setInput(records, HEADER, length);
+        deflater.finish();
+        int size = HEADER;
+        while (!deflater.finished() && size < HEADER + length)
+        {
+            size += deflater.deflate(buffer, size, HEADER + length - size);
+        }
+        if (!deflater.finished() || size >= HEADER + length)
+        {
+            return false;
+        }
+        deflated.position(size);
+        return true;
+    }
+
+}
@@ -0,0 +1,55 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * An annotation to indicate the auto-parcel to track the properties of the annotated class set
+ * since the last {@code clearDirty()}. {@code IParcelled_*} declares a setter per property,
+ * {@code isDirty()}, {@code clearDirty()} and {@code dirtyMask()}, a {@code long} holding one bit
+ * per property in declaration order, as the {@code FIELD_*} constants, or for a class of more
+ * than 64 properties a {@code long[]} holding the bit {@code INDEX_* % 64} of every property in the
+ * word {@code INDEX_* / 64}. {@code setValues()} marks every property.
+ *
+ * <p>Only the setters are tracked, not the assignments of the fields. Decoding marks clean what it
+ * reads: {@code readFrom()} the whole instance, a projection the properties of its mask. With
+ * {@link ParcelledDelta} the class also gets {@code writeDirty(dest)}, writing a delta of the
+ * marked properties without comparing them, for {@code applyDelta(in)}, which marks clean the
+ * properties it sets.
+ *
+ * <pre>
+ * <code>
+ * {@literal @}Parcelled {@literal @}ParcelledTracked public abstract class Settings  {...}
+ *
+ * ((IParcelled_Settings) settings).setTheme("dark");
+ * if (((IParcelled_Settings) settings).isDirty()) {
+ *     store.save(settings);
+ *     ((IParcelled_Settings) settings).clearDirty();
+ * }
+ * </code>
+ * </pre>
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+@Documented
+public @interface ParcelledTracked
+{
+
+}
@@ -0,0 +1,76 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.zeoflow.parcelled;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the type adapters used by the generated {@code Parcelled_*} classes, holding a single
+ * instance per adapter class. The generated classes look their adapters up in a nested holder
+ * class, so an adapter is only created when a property using it is first parcelled or unparcelled,
+ * and then shared by every generated class.
+ *
+ * <p>Adapters must therefore be stateless. An adapter which needs to be configured can be
+ * registered with {@link #register(Class, Object)} before its first use.
+ */
+public final class ParcelledTypeAdapters
+{
+
+    private static final ConcurrentHashMap<Class<?>, Object> ADAPTERS = new ConcurrentHashMap<>();
+
+    private ParcelledTypeAdapters()
+    {
+    }
+
+    /**
+     * Returns the shared instance of the given adapter class, creating it with the given factory
+     * if none was created or registered yet.
+     */
+    public static <A> A get(Class<A> adapterClass, Factory<A> factory)
+    {
+        Object adapter = ADAPTERS.get(adapterClass);
+        if (adapter == null)
+        {
+            adapter = factory.create();
+            Object previous = ADAPTERS.putIfAbsent(adapterClass, adapter);
+            if (previous != null)
+            {
+                adapter = previous;
+            }
+        }
+        return adapterClass.cast(adapter);
+    }
+
+    /**
+     * Registers the instance of the given adapter class to be used by the generated classes. Has no
+     * effect on the generated classes which already used the adapter.
+     */
+    public static <A> void register(Class<A> adapterClass, A adapter)
+    {
+        ADAPTERS.put(adapterClass, adapter);
+    }
+
+    /**
+     * Creates an adapter, usually its constructor: {@code DateTypeAdapter::new}.
+     */
+    public interface Factory<A>
+    {
+
+        A create();
+
+    }
+
+}
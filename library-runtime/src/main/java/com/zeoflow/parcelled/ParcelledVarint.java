@@ -0,0 +1,46 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.zeoflow.parcelled;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * An annotation to indicate the auto-parcel that integral properties are written as LEB128
+ * varints, zigzag encoded for the signed types. Set on a {@link Parcelled} class it applies to
+ * every <code>byte</code>, <code>short</code>, <code>char</code>, <code>int</code>,
+ * <code>long</code>, <code>int[]</code> and <code>long[]</code> property and to the version;
+ * set on a single property it applies to that property only.
+ *
+ * <p>Since every value written to a {@link android.os.Parcel} is padded to 4 bytes, the varints
+ * of a class are packed together in one byte array, written before the other properties.
+ *
+ * <pre>
+ * <code>
+ * {@literal @}Parcelled {@literal @}ParcelledVarint public abstract class Foo  {...}
+ * </code>
+ * </pre>
+ */
+@Target({ElementType.TYPE, ElementType.FIELD})
+@Retention(RetentionPolicy.CLASS)
+@Documented
+public @interface ParcelledVarint
+{
+
+}
@@ -0,0 +1,114 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.zeoflow.parcelled;
+
+import android.os.Parcel;
+
+/**
+ * Reads the varint block written by {@link ParcelledVarintWriter}, called by the generated
+ * {@code Parcelled_*} classes.
+ */
+public final class ParcelledVarintReader
+{
+
+    private final byte[] buffer;
+    private int position;
+
+    public ParcelledVarintReader(Parcel in)
+    {
+        buffer = in.createByteArray();
+    }
+
+    public byte readByte()
+    {
+        return (byte) readInt();
+    }
+
+    public short readShort()
+    {
+        return (short) readInt();
+    }
+
+    public char readChar()
+    {
+        return (char) readUnsigned();
+    }
+
+    public int readInt()
+    {
+        int zigzag = readUnsigned();
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    public long readLong()
+    {
+        long zigzag = 0;
+        int shift = 0;
+        byte b;
+        do
+        {
+            b = buffer[position++];
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    public int[] createIntArray()
+    {
+        int length = readUnsigned() - 1;
+        if (length < 0)
+        {
+            return null;
+        }
+        int[] value = new int[length];
+        for (int i = 0; i < length; i++)
+        {
+            value[i] = readInt();
+        }
+        return value;
+    }
+
+    public long[] createLongArray()
+    {
+        int length = readUnsigned() - 1;
+        if (length < 0)
+        {
+            return null;
+        }
+        long[] value = new long[length];
+        for (int i = 0; i < length; i++)
+        {
+            value[i] = readLong();
+        }
+        return value;
+    }
+
+    private int readUnsigned()
+    {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do
+        {
+            b = buffer[position++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+}
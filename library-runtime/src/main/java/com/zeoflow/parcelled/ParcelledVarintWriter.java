@@ -0,0 +1,129 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.zeoflow.parcelled;
+
+import android.os.Parcel;
+
+import java.util.Arrays;
+
+/**
+ * Writes the varint block of the {@link ParcelledVarint} properties, called by the generated
+ * {@code Parcelled_*} classes. Signed values are zigzag encoded, so small negative numbers stay
+ * small; <code>char</code> values are written unsigned. The block is written to the
+ * {@link Parcel} as one byte array by {@link #writeTo(Parcel)}.
+ */
+public final class ParcelledVarintWriter
+{
+
+    private byte[] buffer;
+    private int size;
+
+    public ParcelledVarintWriter(int capacity)
+    {
+        buffer = new byte[Math.max(capacity, 1)];
+    }
+
+    public void writeByte(byte value)
+    {
+        writeInt(value);
+    }
+
+    public void writeShort(short value)
+    {
+        writeInt(value);
+    }
+
+    public void writeChar(char value)
+    {
+        writeUnsigned(value);
+    }
+
+    public void writeInt(int value)
+    {
+        writeUnsigned((value << 1) ^ (value >> 31));
+    }
+
+    public void writeLong(long value)
+    {
+        long zigzag = (value << 1) ^ (value >> 63);
+        ensureCapacity(10);
+        while ((zigzag & ~0x7FL) != 0)
+        {
+            buffer[size++] = (byte) ((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        buffer[size++] = (byte) zigzag;
+    }
+
+    /**
+     * Writes the length of the array plus one ({@code 0} for {@code null}) followed by the elements.
+     */
+    public void writeIntArray(int[] value)
+    {
+        if (value == null)
+        {
+            writeUnsigned(0);
+            return;
+        }
+        writeUnsigned(value.length + 1);
+        for (int element : value)
+        {
+            writeInt(element);
+        }
+    }
+
+    /**
+     * Writes the length of the array plus one ({@code 0} for {@code null}) followed by the elements.
+     */
+    public void writeLongArray(long[] value)
+    {
+        if (value == null)
+        {
+            writeUnsigned(0);
+            return;
+        }
+        writeUnsigned(value.length + 1);
+        for (long element : value)
+        {
+            writeLong(element);
+        }
+    }
+
+    public void writeTo(Parcel dest)
+    {
+        dest.writeByteArray(buffer, 0, size);
+    }
+
+    private void writeUnsigned(int value)
+    {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0)
+        {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    private void ensureCapacity(int bytes)
+    {
+        if (size + bytes > buffer.length)
+        {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + bytes));
+        }
+    }
+
+}
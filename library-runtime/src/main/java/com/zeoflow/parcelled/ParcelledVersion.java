@@ -20,6 +20,24 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+/**
+ * An annotation to indicate the auto-parcel the range of <code>@Parcelled</code> versions in which
+ * the annotated property exists. The property is written only when the class version is in the
+ * range, in a section that readers which do not know the property skip, so that new properties
+ * should be added with this annotation rather than in the unversioned layout.
+ *
+ * <p>The sections are preceded by their count, written by every class even when it is
+ * {@code 0}, so that a reader of a class without versioned properties still skips the sections
+ * which a later version of the class adds.
+ *
+ * <pre>
+ * <code>
+ * {@literal @}Parcelled(version = 2) public abstract class Foo {
+ *   {@literal @}ParcelledVersion(after = 2) public String nickname;
+ * }
+ * </code>
+ * </pre>
+ */
 @Target(ElementType.FIELD)
 @Retention(RetentionPolicy.SOURCE)
 @Documented
@@ -0,0 +1,35 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package android.os;
+
+/**
+ * JVM stand-in for {@code android.os.BadParcelableException}.
+ */
+public class BadParcelableException extends RuntimeException
+{
+
+    private static final long serialVersionUID = 1L;
+
+    public BadParcelableException(String message)
+    {
+        super(message);
+    }
+
+    public BadParcelableException(Exception cause)
+    {
+        super(cause);
+    }
+
+}
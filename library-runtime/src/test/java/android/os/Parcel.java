@@ -0,0 +1,809 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package android.os;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory stand-in for {@code android.os.Parcel}, so that the runtime and the generated classes
+ * can be tested on the JVM. It keeps the layout of the platform parcel: little-endian values
+ * padded to 4 bytes, strings as UTF-16 with a length and a terminator, and {@code -1} for the
+ * {@code null} arrays. Only the methods the library calls are implemented.
+ */
+public final class Parcel
+{
+
+    private static final int VAL_NULL = -1;
+    private static final int VAL_STRING = 0;
+    private static final int VAL_INTEGER = 1;
+    private static final int VAL_MAP = 2;
+    private static final int VAL_PARCELABLE = 4;
+    private static final int VAL_LONG = 6;
+    private static final int VAL_LIST = 11;
+
+    private ByteBuffer buffer = allocate(64);
+    private int size;
+    private final List<ParcelFileDescriptor> descriptors = new ArrayList<>();
+
+    private Parcel()
+    {
+    }
+
+    public static Parcel obtain()
+    {
+        return new Parcel();
+    }
+
+    private static ByteBuffer allocate(int capacity)
+    {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public void recycle()
+    {
+    }
+
+    public int dataSize()
+    {
+        return size;
+    }
+
+    public int dataAvail()
+    {
+        return size - buffer.position();
+    }
+
+    public int dataPosition()
+    {
+        return buffer.position();
+    }
+
+    public int dataCapacity()
+    {
+        return buffer.capacity();
+    }
+
+    public void setDataPosition(int position)
+    {
+        buffer.position(position);
+    }
+
+    public void setDataSize(int size)
+    {
+        setDataCapacity(size);
+        this.size = size;
+    }
+
+    public void setDataCapacity(int capacity)
+    {
+        if (capacity <= buffer.capacity())
+        {
+            return;
+        }
+        ByteBuffer grown = allocate(capacity);
+        grown.put(buffer.array(), 0, Math.max(size, buffer.position()));
+        grown.position(buffer.position());
+        buffer = grown;
+    }
+
+    public byte[] marshall()
+    {
+        return Arrays.copyOf(buffer.array(), size);
+    }
+
+    public void unmarshall(byte[] data, int offset, int length)
+    {
+        buffer = allocate(Math.max(length, 4));
+        buffer.put(data, offset, length);
+        buffer.position(0);
+        size = length;
+    }
+
+    public void appendFrom(Parcel parcel, int offset, int length)
+    {
+        ensure(length);
+        buffer.put(parcel.buffer.array(), offset, length);
+        grown();
+    }
+
+    private void ensure(int length)
+    {
+        if (buffer.position() + length > buffer.capacity())
+        {
+            setDataCapacity(Math.max(buffer.capacity() * 2, buffer.position() + length));
+        }
+    }
+
+    private void grown()
+    {
+        size = Math.max(size, buffer.position());
+    }
+
+    private void pad()
+    {
+        while ((buffer.position() & 3) != 0)
+        {
+            ensure(1);
+            buffer.put((byte) 0);
+        }
+        grown();
+    }
+
+    private void align()
+    {
+        buffer.position((buffer.position() + 3) & ~3);
+    }
+
+    private void check(int length)
+    {
+        if (length < 0 || buffer.position() + length > size)
+        {
+            throw new BadParcelableException("Reading " + length + " bytes at " + buffer.position() + " of " + size);
+        }
+    }
+
+    public void writeInt(int value)
+    {
+        ensure(4);
+        buffer.putInt(value);
+        grown();
+    }
+
+    public int readInt()
+    {
+        check(4);
+        return buffer.getInt();
+    }
+
+    public void writeLong(long value)
+    {
+        ensure(8);
+        buffer.putLong(value);
+        grown();
+    }
+
+    public long readLong()
+    {
+        check(8);
+        return buffer.getLong();
+    }
+
+    public void writeFloat(float value)
+    {
+        writeInt(Float.floatToRawIntBits(value));
+    }
+
+    public float readFloat()
+    {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    public void writeDouble(double value)
+    {
+        writeLong(Double.doubleToRawLongBits(value));
+    }
+
+    public double readDouble()
+    {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    public void writeByte(byte value)
+    {
+        writeInt(value);
+    }
+
+    public byte readByte()
+    {
+        return (byte) readInt();
+    }
+
+    public void writeString(String value)
+    {
+        if (value == null)
+        {
+            writeInt(-1);
+            return;
+        }
+        writeInt(value.length());
+        ensure(2 * value.length() + 2);
+        for (int i = 0; i < value.length(); i++)
+        {
+            buffer.putChar(value.charAt(i));
+        }
+        buffer.putChar((char) 0);
+        pad();
+    }
+
+    public String readString()
+    {
+        int length = readInt();
+        if (length < 0)
+        {
+            return null;
+        }
+        check(2 * length + 2);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++)
+        {
+            chars[i] = buffer.getChar();
+        }
+        buffer.getChar();
+        align();
+        return new String(chars);
+    }
+
+    public void writeByteArray(byte[] value)
+    {
+        if (value == null)
+        {
+            writeInt(-1);
+            return;
+        }
+        writeByteArray(value, 0, value.length);
+    }
+
+    public void writeByteArray(byte[] value, int offset, int length)
+    {
+        writeInt(length);
+        ensure(length);
+        buffer.put(value, offset, length);
+        pad();
+    }
+
+    public byte[] createByteArray()
+    {
+        int length = readInt();
+        if (length < 0)
+        {
+            return null;
+        }
+        check(length);
+        byte[] value = new byte[length];
+        buffer.get(value);
+        align();
+        return value;
+    }
+
+    public void readByteArray(byte[] value)
+    {
+        readLength(value.length);
+        check(value.length);
+        buffer.get(value);
+        align();
+    }
+
+    private void readLength(int expected)
+    {
+        if (readInt() != expected)
+        {
+            throw new RuntimeException("bad array lengths");
+        }
+    }
+
+    private int createLength()
+    {
+        int length = readInt();
+        if (length > dataAvail())
+        {
+            throw new BadParcelableException("Array of " + length + " elements at " + dataPosition());
+        }
+        return length;
+    }
+
+    public void writeIntArray(int[] value)
+    {
+        if (value == null)
+        {
+            writeInt(-1);
+            return;
+        }
+        writeInt(value.length);
+        for (int v : value)
+        {
+            writeInt(v);
+        }
+    }
+
+    public int[] createIntArray()
+    {
+        int length = createLength();
+        if (length < 0)
+        {
+            return null;
+        }
+        int[] value = new int[length];
+        for (int i = 0; i < length; i++)
+        {
+            value[i] = readInt();
+        }
+        return value;
+    }
+
+    public void readIntArray(int[] value)
+    {
+        readLength(value.length);
+        for (int i = 0; i < value.length; i++)
+        {
+            value[i] = readInt();
+        }
+    }
+
+    public void writeLongArray(long[] value)
+    {
+        if (value == null)
+        {
+            writeInt(-1);
+            return;
+        }
+        writeInt(value.length);
+        for (long v : value)
+        {
+            writeLong(v);
+        }
+    }
+
+    public long[] createLongArray()
+    {
+        int length = createLength();
+        if (length < 0)
+        {
+            return null;
+        }
+        long[] value = new long[length];
+        for (int i = 0; i < length; i++)
+        {
+            value[i] = readLong();
+        }
+        return value;
+    }
+
+    public void readLongArray(long[] value)
+    {
+        readLength(value.length);
+        for (int i = 0; i < value.length; i++)
+        {
+            value[i] = readLong();
+        }
+    }
+
+    public void writeBooleanArray(boolean[] value)
+    {
+        if (value == null)
+        {
+            writeInt(-1);
+            return;
+        }
+        writeInt(value.length);
+        for (boolean v : value)
+        {
+            writeInt(v ? 1 : 0);
+        }
+    }
+
+    public boolean[] createBooleanArray()
+    {
+        int length = createLength();
+        if (length < 0)
+        {
+            return null;
+        }
+        boolean[] value = new boolean[length];
+        for (int i = 0; i < length; i++)
+        {
+            value[i] = readInt() != 0;
+        }
+        return value;
+    }
+
+    public void readBooleanArray(boolean[] value)
+    {
+        readLength(value.length);
+        for (int i = 0; i < value.length; i++)
+        {
+            value[i] = readInt() != 0;
+        }
+    }
+
+    public void writeCharArray(char[] value)
+    {
+        if (value == null)
+        {
+            writeInt(-1);
+            return;
+        }
+        writeInt(value.length);
+        for (char v : value)
+        {
+            writeInt(v);
+        }
+    }
+
+    public char[] createCharArray()
+    {
+        int length = createLength();
+        if (length < 0)
+        {
+            return null;
+        }
+        char[] value = new char[length];
+        for (int i = 0; i < length; i++)
+        {
+            value[i] = (char) readInt();
+        }
+        return value;
+    }
+
+    public void readCharArray(char[] value)
+    {
+        readLength(value.length);
+        for (int i = 0; i < value.length; i++)
+        {
+            value[i] = (char) readInt();
+        }
+    }
+
+    public void writeFloatArray(float[] value)
+    {
+        if (value == null)
+        {
+            writeInt(-1);
+            return;
+        }
+        writeInt(value.length);
+        for (float v : value)
+        {
+            writeFloat(v);
+        }
+    }
+
+    public float[] createFloatArray()
+    {
+        int length = createLength();
+        if (length < 0)
+        {
+            return null;
+        }
+        float[] value = new float[length];
+        for (int i = 0; i < length; i++)
+        {
+            value[i] = readFloat();
+        }
+        return value;
+    }
+
+    public void readFloatArray(float[] value)
+    {
+        readLength(value.length);
+        for (int i = 0; i < value.length; i++)
+        {
+            value[i] = readFloat();
+        }
+    }
+
+    public void writeDoubleArray(double[] value)
+    {
+        if (value == null)
+        {
+            writeInt(-1);
+            return;
+        }
+        writeInt(value.length);
+        for (double v : value)
+        {
+            writeDouble(v);
+        }
+    }
+
+    public double[] createDoubleArray()
+    {
+        int length = createLength();
+        if (length < 0)
+        {
+            return null;
+        }
+        double[] value = new double[length];
+        for (int i = 0; i < length; i++)
+        {
+            value[i] = readDouble();
+        }
+        return value;
+    }
+
+    public void readDoubleArray(double[] value)
+    {
+        readLength(value.length);
+        for (int i = 0; i < value.length; i++)
+        {
+            value[i] = readDouble();
+        }
+    }
+
+    public void writeStringArray(String[] value)
+    {
+        if (value == null)
+        {
+            writeInt(-1);
+            return;
+        }
+        writeInt(value.length);
+        for (String v : value)
+        {
+            writeString(v);
+        }
+    }
+
+    public String[] createStringArray()
+    {
+        int length = createLength();
+        if (length < 0)
+        {
+            return null;
+        }
+        String[] value = new String[length];
+        for (int i = 0; i < length; i++)
+        {
+            value[i] = readString();
+        }
+        return value;
+    }
+
+    public String[] readStringArray()
+    {
+        return createStringArray();
+    }
+
+    public void writeStringList(List<String> value)
+    {
+        if (value == null)
+        {
+            writeInt(-1);
+            return;
+        }
+        writeInt(value.size());
+        for (String v : value)
+        {
+            writeString(v);
+        }
+    }
+
+    public ArrayList<String> createStringArrayList()
+    {
+        int length = createLength();
+        if (length < 0)
+        {
+            return null;
+        }
+        ArrayList<String> value = new ArrayList<>(length);
+        for (int i = 0; i < length; i++)
+        {
+            value.add(readString());
+        }
+        return value;
+    }
+
+    public void writeParcelable(Parcelable value, int flags)
+    {
+        if (value == null)
+        {
+            writeString(null);
+            return;
+        }
+        writeString(value.getClass().getName());
+        value.writeToParcel(this, flags);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Parcelable> T readParcelable(ClassLoader loader)
+    {
+        String name = readString();
+        if (name == null)
+        {
+            return null;
+        }
+        try
+        {
+            Field creator = Class.forName(name, true, loader).getField("CREATOR");
+            return (T) ((Parcelable.Creator<?>) creator.get(null)).createFromParcel(this);
+        } catch (ReflectiveOperationException e)
+        {
+            throw new BadParcelableException(e);
+        }
+    }
+
+    public void writeSerializable(Serializable value)
+    {
+        if (value == null)
+        {
+            writeString(null);
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+        {
+            out.writeObject(value);
+        } catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+        writeString(value.getClass().getName());
+        writeByteArray(bytes.toByteArray());
+    }
+
+    public Serializable readSerializable()
+    {
+        if (readString() == null)
+        {
+            return null;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(createByteArray())))
+        {
+            return (Serializable) in.readObject();
+        } catch (IOException | ClassNotFoundException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void writeValue(Object value)
+    {
+        if (value == null)
+        {
+            writeInt(VAL_NULL);
+        } else if (value instanceof String)
+        {
+            writeInt(VAL_STRING);
+            writeString((String) value);
+        } else if (value instanceof Integer)
+        {
+            writeInt(VAL_INTEGER);
+            writeInt((Integer) value);
+        } else if (value instanceof Long)
+        {
+            writeInt(VAL_LONG);
+            writeLong((Long) value);
+        } else if (value instanceof Parcelable)
+        {
+            writeInt(VAL_PARCELABLE);
+            writeParcelable((Parcelable) value, 0);
+        } else if (value instanceof List)
+        {
+            writeInt(VAL_LIST);
+            writeList((List<?>) value);
+        } else if (value instanceof Map)
+        {
+            writeInt(VAL_MAP);
+            writeMap((Map<?, ?>) value);
+        } else
+        {
+            throw new RuntimeException("Parcel: unable to marshal value " + value);
+        }
+    }
+
+    public Object readValue(ClassLoader loader)
+    {
+        int type = readInt();
+        switch (type)
+        {
+            case VAL_NULL:
+                return null;
+            case VAL_STRING:
+                return readString();
+            case VAL_INTEGER:
+                return readInt();
+            case VAL_LONG:
+                return readLong();
+            case VAL_PARCELABLE:
+                return readParcelable(loader);
+            case VAL_LIST:
+                return readArrayList(loader);
+            case VAL_MAP:
+                return readHashMap(loader);
+            default:
+                throw new BadParcelableException("Parcel: unmarshalling unknown type code " + type);
+        }
+    }
+
+    public void writeList(List<?> value)
+    {
+        if (value == null)
+        {
+            writeInt(-1);
+            return;
+        }
+        writeInt(value.size());
+        for (Object v : value)
+        {
+            writeValue(v);
+        }
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public ArrayList readArrayList(ClassLoader loader)
+    {
+        int length = createLength();
+        if (length < 0)
+        {
+            return null;
+        }
+        ArrayList value = new ArrayList(length);
+        for (int i = 0; i < length; i++)
+        {
+            value.add(readValue(loader));
+        }
+        return value;
+    }
+
+    public void writeMap(Map<?, ?> value)
+    {
+        if (value == null)
+        {
+            writeInt(-1);
+            return;
+        }
+        writeInt(value.size());
+        for (Map.Entry<?, ?> entry : value.entrySet())
+        {
+            writeValue(entry.getKey());
+            writeValue(entry.getValue());
+        }
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public HashMap readHashMap(ClassLoader loader)
+    {
+        int length = createLength();
+        if (length < 0)
+        {
+            return null;
+        }
+        HashMap value = new HashMap();
+        for (int i = 0; i < length; i++)
+        {
+            value.put(readValue(loader), readValue(loader));
+        }
+        return value;
+    }
+
+    /**
+     * Writes a duplicate of the descriptor, as the platform parcel does, so the caller may close
+     * its own.
+     */
+    public void writeFileDescriptor(FileDescriptor descriptor)
+    {
+        descriptors.add(ParcelFileDescriptor.dup(descriptor));
+        writeInt(descriptors.size() - 1);
+    }
+
+    public ParcelFileDescriptor readFileDescriptor()
+    {
+        return descriptors.get(readInt());
+    }
+
+}
@@ -0,0 +1,98 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package android.os;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * JVM stand-in for {@code android.os.ParcelFileDescriptor}, for the read-only descriptors of files.
+ * The JVM can not duplicate a descriptor, so {@link #dup(FileDescriptor)} opens the file again,
+ * which must still be linked at that time.
+ */
+public class ParcelFileDescriptor implements Closeable
+{
+
+    public static final int MODE_READ_ONLY = 0x10000000;
+
+    private static final Map<FileDescriptor, File> FILES = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private final FileDescriptor descriptor;
+    // keeps the descriptor open while it is reachable
+    private final FileInputStream stream;
+
+    private ParcelFileDescriptor(FileInputStream stream) throws IOException
+    {
+        this.descriptor = stream.getFD();
+        this.stream = stream;
+    }
+
+    public static ParcelFileDescriptor open(File file, int mode) throws FileNotFoundException
+    {
+        try
+        {
+            ParcelFileDescriptor descriptor = new ParcelFileDescriptor(new FileInputStream(file));
+            FILES.put(descriptor.descriptor, file);
+            return descriptor;
+        } catch (FileNotFoundException e)
+        {
+            throw e;
+        } catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static ParcelFileDescriptor dup(FileDescriptor descriptor)
+    {
+        try
+        {
+            return new ParcelFileDescriptor(new FileInputStream(FILES.get(descriptor)));
+        } catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public FileDescriptor getFileDescriptor()
+    {
+        return descriptor;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        FILES.remove(descriptor);
+        stream.close();
+    }
+
+    public static class AutoCloseInputStream extends FileInputStream
+    {
+
+        public AutoCloseInputStream(ParcelFileDescriptor descriptor)
+        {
+            super(descriptor.getFileDescriptor());
+        }
+
+    }
+
+}
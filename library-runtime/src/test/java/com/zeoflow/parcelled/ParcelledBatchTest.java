@@ -0,0 +1,191 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled;
+
+import android.os.Parcel;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ParcelledBatchTest
+{
+
+    // the markers of ParcelledBatch
+    private static final int PLAIN = 0;
+    private static final int DELTA = 1;
+    private static final int DICTIONARY = 2;
+
+    private static Parcel rewound(Parcel parcel)
+    {
+        parcel.setDataPosition(0);
+        return parcel;
+    }
+
+    @Test
+    public void sortedIntColumnIsDeltaEncoded()
+    {
+        int[] column = new int[100];
+        for (int i = 0; i < column.length; i++)
+        {
+            column[i] = 1_000_000 + i * 3;
+        }
+        Parcel parcel = Parcel.obtain();
+        ParcelledBatch.writeIntColumn(column, parcel);
+        // the marker plus a byte array far smaller than 4 bytes per value
+        assertTrue(parcel.dataSize() < 4 * column.length / 2);
+
+        rewound(parcel);
+        assertEquals(DELTA, parcel.readInt());
+        rewound(parcel);
+        assertArrayEquals(column, ParcelledBatch.readIntColumn(parcel, column.length));
+        assertEquals(parcel.dataSize(), parcel.dataPosition());
+    }
+
+    @Test
+    public void sortedColumnWithExtremesRoundTrips()
+    {
+        int[] ints = {Integer.MIN_VALUE, -1, 0, 0, Integer.MAX_VALUE};
+        long[] longs = {Long.MIN_VALUE, 0L, Long.MAX_VALUE};
+        Parcel parcel = Parcel.obtain();
+        ParcelledBatch.writeIntColumn(ints, parcel);
+        ParcelledBatch.writeLongColumn(longs, parcel);
+        rewound(parcel);
+        assertArrayEquals(ints, ParcelledBatch.readIntColumn(parcel, ints.length));
+        assertArrayEquals(longs, ParcelledBatch.readLongColumn(parcel, longs.length));
+    }
+
+    @Test
+    public void unsortedColumnsArePlain()
+    {
+        int[] ints = {5, 3, 9};
+        long[] longs = {5L, 3L, 9L};
+        Parcel parcel = Parcel.obtain();
+        ParcelledBatch.writeIntColumn(ints, parcel);
+        ParcelledBatch.writeLongColumn(longs, parcel);
+        assertEquals(4 + 3 * 4 + 4 + 3 * 8, parcel.dataSize());
+
+        rewound(parcel);
+        assertEquals(PLAIN, parcel.readInt());
+        rewound(parcel);
+        assertArrayEquals(ints, ParcelledBatch.readIntColumn(parcel, ints.length));
+        assertArrayEquals(longs, ParcelledBatch.readLongColumn(parcel, longs.length));
+    }
+
+    @Test
+    public void emptyAndSingleColumnsArePlain()
+    {
+        Parcel parcel = Parcel.obtain();
+        ParcelledBatch.writeIntColumn(new int[0], parcel);
+        ParcelledBatch.writeLongColumn(new long[]{7L}, parcel);
+        rewound(parcel);
+        assertEquals(PLAIN, parcel.readInt());
+        rewound(parcel);
+        assertArrayEquals(new int[0], ParcelledBatch.readIntColumn(parcel, 0));
+        assertArrayEquals(new long[]{7L}, ParcelledBatch.readLongColumn(parcel, 1));
+    }
+
+    @Test
+    public void booleansArePackedPerInt()
+    {
+        for (int size : new int[]{0, 1, 31, 32, 33, 64, 70})
+        {
+            boolean[] column = new boolean[size];
+            for (int i = 0; i < size; i++)
+            {
+                column[i] = i % 3 == 0 || i == size - 1;
+            }
+            Parcel parcel = Parcel.obtain();
+            ParcelledBatch.writeBooleanColumn(column, parcel);
+            assertEquals("size " + size, 4 * ((size + 31) / 32), parcel.dataSize());
+            rewound(parcel);
+            assertArrayEquals("size " + size, column, ParcelledBatch.readBooleanColumn(parcel, size));
+        }
+    }
+
+    @Test
+    public void repeatedStringsUseDictionary()
+    {
+        String[] column = new String[40];
+        for (int i = 0; i < column.length; i++)
+        {
+            column[i] = i % 7 == 0 ? null : (i % 2 == 0 ? "even" : "odd");
+        }
+        Parcel parcel = Parcel.obtain();
+        ParcelledBatch.writeStringColumn(column, parcel);
+        rewound(parcel);
+        assertEquals(DICTIONARY, parcel.readInt());
+        assertEquals(2, parcel.readInt());
+
+        rewound(parcel);
+        assertArrayEquals(column, ParcelledBatch.readStringColumn(parcel, column.length));
+        assertEquals(parcel.dataSize(), parcel.dataPosition());
+    }
+
+    @Test
+    public void distinctStringsArePlain()
+    {
+        String[] column = {"a", "b", null, "c"};
+        Parcel parcel = Parcel.obtain();
+        ParcelledBatch.writeStringColumn(column, parcel);
+        rewound(parcel);
+        assertEquals(PLAIN, parcel.readInt());
+        rewound(parcel);
+        assertArrayEquals(column, ParcelledBatch.readStringColumn(parcel, column.length));
+    }
+
+    @Test
+    public void allNullStringsUseEmptyDictionary()
+    {
+        String[] column = {null, null, null};
+        Parcel parcel = Parcel.obtain();
+        ParcelledBatch.writeStringColumn(column, parcel);
+        rewound(parcel);
+        assertArrayEquals(column, ParcelledBatch.readStringColumn(parcel, column.length));
+    }
+
+    @Test
+    public void nullRowsRoundTrip()
+    {
+        Object[] rows = {"a", null, "b", null, null};
+        Parcel parcel = Parcel.obtain();
+        ParcelledBatch.writeNulls(rows, parcel);
+        rewound(parcel);
+        Object[] read = {1, 2, 3, 4, 5};
+        ParcelledBatch.readNulls(read, parcel);
+        assertEquals(1, read[0]);
+        assertNull(read[1]);
+        assertEquals(3, read[2]);
+        assertNull(read[3]);
+        assertNull(read[4]);
+    }
+
+    @Test
+    public void floatingPointColumnsRoundTrip()
+    {
+        float[] floats = {1.5f, Float.NaN, -0f, Float.MAX_VALUE};
+        double[] doubles = {Double.MIN_VALUE, Double.NEGATIVE_INFINITY, 3.25};
+        Parcel parcel = Parcel.obtain();
+        ParcelledBatch.writeFloatColumn(floats, parcel);
+        ParcelledBatch.writeDoubleColumn(doubles, parcel);
+        rewound(parcel);
+        assertArrayEquals(floats, ParcelledBatch.readFloatColumn(parcel, floats.length), 0f);
+        assertArrayEquals(doubles, ParcelledBatch.readDoubleColumn(parcel, doubles.length), 0d);
+    }
+
+}
@@ -0,0 +1,152 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled;
+
+import org.junit.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ParcelledBufferTest
+{
+
+    private static void writeAll(ParcelledSink sink)
+    {
+        sink.writeInt(Integer.MIN_VALUE);
+        sink.writeLong(Long.MAX_VALUE);
+        sink.writeFloat(1.5f);
+        sink.writeDouble(-2.25);
+        sink.writeString("caf\u00e9 \u4e2d");
+        sink.writeString(null);
+        sink.writeString("");
+        sink.writeStringArray(new String[]{"a", null, "b"});
+        sink.writeStringArray(null);
+        sink.writeBooleanArray(new boolean[]{true, false, true});
+        sink.writeByteArray(new byte[]{-1, 0, 1});
+        sink.writeByteArray(null);
+        sink.writeCharArray(new char[]{'x', '\u4e2d'});
+        sink.writeIntArray(new int[]{1, -2, 3});
+        sink.writeIntArray(new int[0]);
+        sink.writeLongArray(new long[]{Long.MIN_VALUE});
+        sink.writeFloatArray(new float[]{Float.NaN, 0.5f});
+        sink.writeDoubleArray(new double[]{Double.MAX_VALUE});
+        sink.writeDoubleArray(null);
+        sink.writeInt(42);
+    }
+
+    private static void readAll(ParcelledSource source)
+    {
+        assertEquals(Integer.MIN_VALUE, source.readInt());
+        assertEquals(Long.MAX_VALUE, source.readLong());
+        assertEquals(1.5f, source.readFloat(), 0f);
+        assertEquals(-2.25, source.readDouble(), 0d);
+        assertEquals("caf\u00e9 \u4e2d", source.readString());
+        assertNull(source.readString());
+        assertEquals("", source.readString());
+        assertArrayEquals(new String[]{"a", null, "b"}, source.createStringArray());
+        assertNull(source.createStringArray());
+        assertArrayEquals(new boolean[]{true, false, true}, source.createBooleanArray());
+        assertArrayEquals(new byte[]{-1, 0, 1}, source.createByteArray());
+        assertNull(source.createByteArray());
+        assertArrayEquals(new char[]{'x', '\u4e2d'}, source.createCharArray());
+        assertArrayEquals(new int[]{1, -2, 3}, source.createIntArray());
+        assertArrayEquals(new int[0], source.createIntArray());
+        assertArrayEquals(new long[]{Long.MIN_VALUE}, source.createLongArray());
+        assertArrayEquals(new float[]{Float.NaN, 0.5f}, source.createFloatArray(), 0f);
+        assertArrayEquals(new double[]{Double.MAX_VALUE}, source.createDoubleArray(), 0d);
+        assertNull(source.createDoubleArray());
+        assertEquals(42, source.readInt());
+    }
+
+    private static void roundTrip(ParcelledBufferSink sink)
+    {
+        writeAll(sink);
+        ByteBuffer buffer = sink.buffer();
+        buffer.flip();
+        ParcelledBufferSource source = new ParcelledBufferSource(buffer);
+        readAll(source);
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    public void heapBufferRoundTrips()
+    {
+        roundTrip(new ParcelledBufferSink(ByteBuffer.allocate(1024)));
+    }
+
+    @Test
+    public void directBufferRoundTrips()
+    {
+        roundTrip(new ParcelledBufferSink(ByteBuffer.allocateDirect(1024)));
+    }
+
+    @Test
+    public void littleEndianBufferRoundTrips()
+    {
+        roundTrip(new ParcelledBufferSink(ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN)));
+    }
+
+    @Test
+    public void readsFromPositionOfSlicedBuffer()
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        buffer.position(100);
+        ParcelledBufferSink sink = new ParcelledBufferSink(buffer.slice());
+        writeAll(sink);
+        ByteBuffer written = sink.buffer();
+        written.flip();
+        readAll(new ParcelledBufferSource(written));
+    }
+
+    @Test
+    public void allocatedSinkGrows()
+    {
+        for (boolean direct : new boolean[]{false, true})
+        {
+            ParcelledBufferSink sink = ParcelledBufferSink.allocate(4, direct);
+            ByteBuffer initial = sink.buffer();
+            sink.buffer().order(ByteOrder.LITTLE_ENDIAN);
+            roundTrip(sink);
+            assertEquals(direct, sink.buffer().isDirect());
+            assertEquals(ByteOrder.LITTLE_ENDIAN, sink.buffer().order());
+            assertNotSame(initial, sink.buffer());
+        }
+    }
+
+    @Test
+    public void wrappedSinkDoesNotGrow()
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        ParcelledBufferSink sink = new ParcelledBufferSink(buffer);
+        sink.writeLong(1L);
+        assertSame(buffer, sink.buffer());
+        try
+        {
+            sink.writeIntArray(new int[]{1});
+            throw new AssertionError("wrote past the end of the buffer");
+        } catch (BufferOverflowException expected)
+        {
+            assertEquals(8, buffer.position());
+        }
+    }
+
+}
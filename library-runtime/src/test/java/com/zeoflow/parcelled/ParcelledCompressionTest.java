@@ -0,0 +1,129 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled;
+
+import android.os.BadParcelableException;
+import android.os.Parcel;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ParcelledCompressionTest
+{
+
+    // the markers of ParcelledCompression
+    private static final int RAW = 0;
+    private static final int DEFLATED = 1;
+
+    private static String repeated(int length)
+    {
+        char[] chars = new char[length];
+        Arrays.fill(chars, 'z');
+        return new String(chars);
+    }
+
+    private static Parcel rewound(Parcel parcel)
+    {
+        parcel.setDataPosition(0);
+        return parcel;
+    }
+
+    @Test
+    public void compressibleStringIsDeflated()
+    {
+        String value = repeated(10_000) + "\u00e9\u4e2d";
+        for (ParcelledCompressed.Codec codec : ParcelledCompressed.Codec.values())
+        {
+            Parcel parcel = Parcel.obtain();
+            ParcelledCompression.writeString(parcel, value, 1024, codec);
+            assertTrue(parcel.dataSize() < 1024);
+            assertEquals(DEFLATED, rewound(parcel).readInt());
+            assertEquals(value, ParcelledCompression.readString(rewound(parcel)));
+            assertEquals(parcel.dataSize(), parcel.dataPosition());
+        }
+    }
+
+    @Test
+    public void shortStringIsRaw()
+    {
+        Parcel parcel = Parcel.obtain();
+        ParcelledCompression.writeString(parcel, repeated(100), 1024, ParcelledCompressed.Codec.DEFLATE);
+        ParcelledCompression.writeString(parcel, null, 0, ParcelledCompressed.Codec.DEFLATE);
+        ParcelledCompression.writeString(parcel, "", 0, ParcelledCompressed.Codec.DEFLATE);
+        assertEquals(RAW, rewound(parcel).readInt());
+        rewound(parcel);
+        assertEquals(repeated(100), ParcelledCompression.readString(parcel));
+        assertNull(ParcelledCompression.readString(parcel));
+        assertEquals("", ParcelledCompression.readString(parcel));
+    }
+
+    @Test
+    public void incompressibleBytesAreRaw()
+    {
+        byte[] value = new byte[4096];
+        new Random(4096).nextBytes(value);
+        Parcel parcel = Parcel.obtain();
+        ParcelledCompression.writeByteArray(parcel, value, 16, ParcelledCompressed.Codec.DEFLATE);
+        assertEquals(RAW, rewound(parcel).readInt());
+        assertArrayEquals(value, ParcelledCompression.createByteArray(rewound(parcel)));
+    }
+
+    @Test
+    public void compressibleBytesRoundTrip()
+    {
+        byte[] value = new byte[64 * 1024];
+        Parcel parcel = Parcel.obtain();
+        ParcelledCompression.writeByteArray(parcel, value, 16, ParcelledCompressed.Codec.FAST);
+        ParcelledCompression.writeByteArray(parcel, null, 16, ParcelledCompressed.Codec.FAST);
+        assertEquals(DEFLATED, rewound(parcel).readInt());
+        rewound(parcel);
+        assertArrayEquals(value, ParcelledCompression.createByteArray(parcel));
+        assertNull(ParcelledCompression.createByteArray(parcel));
+    }
+
+    @Test(expected = BadParcelableException.class)
+    public void truncatedValueIsRejected()
+    {
+        Parcel parcel = Parcel.obtain();
+        ParcelledCompression.writeByteArray(parcel, new byte[8192], 16, ParcelledCompressed.Codec.DEFLATE);
+        rewound(parcel).readInt();
+        int length = parcel.readInt();
+        byte[] deflated = parcel.createByteArray();
+
+        Parcel truncated = Parcel.obtain();
+        truncated.writeInt(DEFLATED);
+        truncated.writeInt(length);
+        truncated.writeByteArray(deflated, 0, deflated.length / 2);
+        ParcelledCompression.createByteArray(rewound(truncated));
+    }
+
+    @Test(expected = BadParcelableException.class)
+    public void corruptedValueIsRejected()
+    {
+        Parcel parcel = Parcel.obtain();
+        parcel.writeInt(DEFLATED);
+        parcel.writeInt(100);
+        parcel.writeByteArray(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        ParcelledCompression.createByteArray(rewound(parcel));
+    }
+
+}
@@ -0,0 +1,247 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ParcelledDiskCacheTest
+{
+
+    // keys of equal hash codes, appended to the segments of the same stripe
+    private static final String SMALL = "AaAa";
+    private static final String KEY = "BBBB";
+    private static final String OTHER = "AaBB";
+    // a small and a large record fill most of a segment, so the next large one goes to a new one,
+    // while the small one keeps the segment from being compacted
+    private static final int SMALL_SIZE = 1_100_000;
+    private static final int LARGE_SIZE = 2_500_000;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static ParcelledDiskCache<String, String> open(File directory, long maxSize) throws IOException
+    {
+        return ParcelledDiskCache.open(directory, maxSize, (value, sink) -> sink.writeString(value),
+                source -> {
+                    String value = source.readString();
+                    if (value.equals("bad"))
+                    {
+                        throw new IllegalStateException("written by a newer version");
+                    }
+                    return value;
+                });
+    }
+
+    private static String filled(char c, int length)
+    {
+        char[] chars = new char[length];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    private static String large(char c)
+    {
+        return filled(c, LARGE_SIZE);
+    }
+
+    @Test
+    public void putGetRemove() throws IOException
+    {
+        ParcelledDiskCache<String, String> cache = open(folder.newFolder(), 1 << 20);
+        assertNull(cache.get("a"));
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("a", "3");
+        assertEquals("3", cache.get("a"));
+        assertEquals("2", cache.get("b"));
+        cache.remove("a");
+        cache.remove("missing");
+        assertNull(cache.get("a"));
+        cache.put("b", null);
+        assertNull(cache.get("b"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void reopen() throws IOException
+    {
+        File directory = folder.newFolder();
+        ParcelledDiskCache<String, String> cache = open(directory, 1 << 20);
+        for (int i = 0; i < 100; i++)
+        {
+            cache.put("k" + i, "v" + i);
+        }
+        cache.put("k7", "updated");
+        cache.remove("k8");
+        long size = cache.size();
+        cache.close();
+
+        cache = open(directory, 1 << 20);
+        assertEquals("updated", cache.get("k7"));
+        assertNull(cache.get("k8"));
+        assertEquals("v99", cache.get("k99"));
+        assertEquals(size, cache.size());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws IOException
+    {
+        ParcelledDiskCache<String, String> cache = open(folder.newFolder(), 64 * 1024);
+        char[] value = new char[1000];
+        Arrays.fill(value, 'x');
+        for (int i = 0; i < 200; i++)
+        {
+            cache.put("k" + i, new String(value));
+            // the first key stays in use
+            cache.get("k0");
+        }
+        assertTrue(cache.size() <= 64 * 1024);
+        assertEquals(new String(value), cache.get("k0"));
+        assertEquals(new String(value), cache.get("k199"));
+        assertNull(cache.get("k1"));
+    }
+
+    @Test
+    public void evictedKeyIsNotReloadedWithAnOlderValue() throws IOException
+    {
+        File directory = folder.newFolder();
+        ParcelledDiskCache<String, String> cache = open(directory, 5_000_000);
+        cache.put(SMALL, filled('s', SMALL_SIZE));
+        // the first record of the key stays in the segment of the small one
+        cache.put(KEY, large('1'));
+        cache.put(KEY, large('2'));
+        cache.get(SMALL);
+        // evicts the key, and deletes the segment of its latest record
+        cache.put(OTHER, large('3'));
+        assertTrue("stale value of the key", cache.get(KEY) == null);
+        cache.close();
+
+        // large enough not to evict anything when reopened
+        cache = open(directory, 20_000_000);
+        assertTrue("stale value of the key", cache.get(KEY) == null);
+        assertTrue(filled('s', SMALL_SIZE).equals(cache.get(SMALL)));
+        assertTrue(large('3').equals(cache.get(OTHER)));
+    }
+
+    @Test
+    public void evictedThenRemovedKeyIsNotReloaded() throws IOException
+    {
+        File directory = folder.newFolder();
+        ParcelledDiskCache<String, String> cache = open(directory, 5_000_000);
+        cache.put(SMALL, filled('s', SMALL_SIZE));
+        cache.put(KEY, large('1'));
+        cache.put(KEY, large('2'));
+        cache.get(SMALL);
+        cache.put(OTHER, large('3'));
+        cache.remove(KEY);
+        cache.close();
+
+        cache = open(directory, 20_000_000);
+        assertTrue("stale value of the key", cache.get(KEY) == null);
+
+        // and still once the segment of the tombstone is compacted
+        cache.remove(OTHER);
+        cache.put(SMALL, "updated");
+        cache.close();
+        cache = open(directory, 20_000_000);
+        assertTrue("stale value of the key", cache.get(KEY) == null);
+        assertNull(cache.get(OTHER));
+        assertEquals("updated", cache.get(SMALL));
+    }
+
+    @Test
+    public void undecodableValueIsAMiss() throws IOException
+    {
+        File directory = folder.newFolder();
+        ParcelledDiskCache<String, String> cache = open(directory, 1 << 20);
+        cache.put("a", "bad");
+        cache.put("b", "good");
+        long size = cache.size();
+        assertNull(cache.get("a"));
+        assertTrue(cache.size() < size);
+        cache.close();
+
+        cache = open(directory, 1 << 20);
+        assertNull(cache.get("a"));
+        assertEquals("good", cache.get("b"));
+    }
+
+    @Test
+    public void compactsSparseSegments() throws IOException
+    {
+        File directory = folder.newFolder();
+        ParcelledDiskCache<String, String> cache = open(directory, 2_000_000);
+        char[] value = new char[100_000];
+        for (int round = 0; round < 20; round++)
+        {
+            Arrays.fill(value, (char) ('a' + round));
+            for (int i = 0; i < 16; i++)
+            {
+                cache.put("k" + i, new String(value));
+            }
+        }
+        assertTrue(cache.size() <= 2_000_000);
+        // 32 MB were written, to 4 MB segments
+        File[] segments = directory.listFiles();
+        assertTrue(Arrays.toString(segments), segments.length <= 8 + 2);
+        cache.close();
+
+        cache = open(directory, 2_000_000);
+        for (int i = 0; i < 16; i++)
+        {
+            String read = cache.get("k" + i);
+            assertTrue(read == null || read.equals(new String(value)));
+        }
+        assertEquals(new String(value), cache.get("k15"));
+    }
+
+    @Test
+    public void concurrentWriters() throws Exception
+    {
+        ParcelledDiskCache<String, String> cache = open(folder.newFolder(), 1 << 20);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++)
+        {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 2000; i++)
+                {
+                    cache.put("t" + id + "-" + (i % 100), "v" + i);
+                    cache.get("t" + ((id + 1) % 8) + "-" + (i % 100));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        for (int t = 0; t < threads.length; t++)
+        {
+            assertEquals("v1999", cache.get("t" + t + "-99"));
+        }
+    }
+
+}
@@ -0,0 +1,104 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled;
+
+import android.os.Parcel;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ParcelledListsTest
+{
+
+    private static Parcel rewind(Parcel parcel)
+    {
+        parcel.setDataPosition(0);
+        return parcel;
+    }
+
+    @Test
+    public void integersRoundTrip()
+    {
+        List<Integer> list = Arrays.asList(1, null, Integer.MIN_VALUE, Integer.MAX_VALUE, null);
+        Parcel parcel = Parcel.obtain();
+        ParcelledLists.writeIntegerList(list, parcel);
+
+        assertEquals(list, ParcelledLists.readIntegerList(rewind(parcel)));
+        assertEquals(0, parcel.dataAvail());
+    }
+
+    @Test
+    public void elementsAreOneBulkArray()
+    {
+        Parcel parcel = Parcel.obtain();
+        ParcelledLists.writeLongList(Arrays.asList(7L, null, -7L), parcel);
+        rewind(parcel);
+
+        // the elements, nulls as 0, read back as one array, then the null indexes
+        assertArrayEquals(new long[]{7L, 0L, -7L}, parcel.createLongArray());
+        assertEquals(1, parcel.readInt());
+        assertEquals(1, parcel.readInt());
+        assertEquals(0, parcel.dataAvail());
+    }
+
+    @Test
+    public void narrowTypesRoundTrip()
+    {
+        Parcel parcel = Parcel.obtain();
+        ParcelledLists.writeShortList(Arrays.asList((short) -2, null, Short.MAX_VALUE), parcel);
+        ParcelledLists.writeByteList(Arrays.asList(Byte.MIN_VALUE, (byte) 3, null), parcel);
+        ParcelledLists.writeCharacterList(Arrays.asList(null, 'a', '\uffff'), parcel);
+        ParcelledLists.writeBooleanList(Arrays.asList(true, null, false), parcel);
+        rewind(parcel);
+
+        assertEquals(Arrays.asList((short) -2, null, Short.MAX_VALUE), ParcelledLists.readShortList(parcel));
+        assertEquals(Arrays.asList(Byte.MIN_VALUE, (byte) 3, null), ParcelledLists.readByteList(parcel));
+        assertEquals(Arrays.asList(null, 'a', '\uffff'), ParcelledLists.readCharacterList(parcel));
+        assertEquals(Arrays.asList(true, null, false), ParcelledLists.readBooleanList(parcel));
+        assertEquals(0, parcel.dataAvail());
+    }
+
+    @Test
+    public void floatingPointRoundTrip()
+    {
+        Parcel parcel = Parcel.obtain();
+        ParcelledLists.writeFloatList(Arrays.asList(1.5f, null, Float.NaN), parcel);
+        ParcelledLists.writeDoubleList(Arrays.asList(null, -0.0, Double.MAX_VALUE), parcel);
+        rewind(parcel);
+
+        assertEquals(Arrays.asList(1.5f, null, Float.NaN), ParcelledLists.readFloatList(parcel));
+        assertEquals(Arrays.asList(null, -0.0, Double.MAX_VALUE), ParcelledLists.readDoubleList(parcel));
+    }
+
+    @Test
+    public void nullAndEmptyLists()
+    {
+        Parcel parcel = Parcel.obtain();
+        ParcelledLists.writeIntegerList(null, parcel);
+        ParcelledLists.writeDoubleList(Arrays.<Double>asList(), parcel);
+        rewind(parcel);
+
+        assertNull(ParcelledLists.readIntegerList(parcel));
+        assertEquals(Arrays.<Double>asList(), ParcelledLists.readDoubleList(parcel));
+        assertEquals(0, parcel.dataAvail());
+    }
+
+}
@@ -0,0 +1,76 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled;
+
+import android.os.Parcel;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ParcelledSectionsTest
+{
+
+    @Test
+    public void sectionWithoutSessionOpensNone()
+    {
+        Parcel parcel = Parcel.obtain();
+        int start = ParcelledSections.begin(parcel, 7);
+        try
+        {
+            ParcelledSession.writeString(parcel, "value");
+            fail("a session is open");
+        } catch (IllegalStateException expected)
+        {
+            // nothing was opened for the section
+        }
+        parcel.writeInt(42);
+        ParcelledSections.end(parcel, start);
+        parcel.setDataPosition(0);
+
+        assertEquals(7, parcel.readInt());
+        int end = ParcelledSections.open(parcel);
+        assertEquals(42, parcel.readInt());
+        ParcelledSections.close(parcel, end);
+        assertEquals(0, parcel.dataAvail());
+    }
+
+    @Test
+    public void sectionForgetsItsStrings()
+    {
+        Parcel parcel = Parcel.obtain();
+        ParcelledSession.begin(parcel);
+        ParcelledSession.writeString(parcel, "outer");
+        int start = ParcelledSections.begin(parcel, 7);
+        ParcelledSession.writeString(parcel, "inner");
+        ParcelledSections.end(parcel, start);
+        // written in full again, the section being skippable
+        ParcelledSession.writeString(parcel, "inner");
+        ParcelledSession.writeString(parcel, "outer");
+        ParcelledSession.end(parcel);
+        parcel.setDataPosition(0);
+
+        ParcelledSession.begin(parcel);
+        assertEquals("outer", ParcelledSession.readString(parcel));
+        parcel.readInt();
+        ParcelledSections.skip(parcel);
+        assertEquals("inner", ParcelledSession.readString(parcel));
+        assertEquals("outer", ParcelledSession.readString(parcel));
+        ParcelledSession.end(parcel);
+        assertEquals(0, parcel.dataAvail());
+    }
+
+}
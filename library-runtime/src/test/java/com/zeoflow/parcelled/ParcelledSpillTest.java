@@ -0,0 +1,164 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ParcelledSpillTest
+{
+
+    private static final int THRESHOLD = 1024;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        directory = folder.newFolder();
+        ParcelledSpill.setDirectory(directory);
+    }
+
+    @After
+    public void tearDown()
+    {
+        ParcelledSpill.setDirectory(null);
+    }
+
+    @Test
+    public void spillsThroughTemporaryFile()
+    {
+        Blob blob = new Blob(random(64 * 1024), "large");
+        assertEquals(Parcelable.CONTENTS_FILE_DESCRIPTOR, blob.describeContents());
+
+        Parcel parcel = Parcel.obtain();
+        blob.writeToParcel(parcel, 0);
+        // the marker, the length and the descriptor only
+        assertEquals(12, parcel.dataSize());
+        // the file is unlinked once its descriptor is written
+        assertEquals(0, directory.list().length);
+
+        parcel.setDataPosition(0);
+        Blob copy = Blob.read(parcel);
+        assertArrayEquals(blob.data, copy.data);
+        assertEquals("large", copy.name);
+        assertEquals(parcel.dataSize(), parcel.dataPosition());
+    }
+
+    @Test
+    public void writesSmallPayloadInPlace()
+    {
+        Blob blob = new Blob(random(16), "small");
+        assertEquals(0, blob.describeContents());
+
+        Parcel parcel = Parcel.obtain();
+        blob.writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        Blob copy = Blob.read(parcel);
+
+        assertArrayEquals(blob.data, copy.data);
+        assertEquals("small", copy.name);
+    }
+
+    @Test
+    public void readsInPlaceMarker()
+    {
+        Parcel parcel = Parcel.obtain();
+        parcel.writeInt(0);
+        parcel.setDataPosition(0);
+        assertNull(ParcelledSpill.read(parcel));
+        assertEquals(4, parcel.dataPosition());
+    }
+
+    private static byte[] random(int length)
+    {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Spilled the way the generated classes spill the {@link ParcelledSpillable} ones.
+     */
+    private static final class Blob implements Parcelable, ParcelledSized
+    {
+
+        final byte[] data;
+        final String name;
+
+        Blob(byte[] data, String name)
+        {
+            this.data = data;
+            this.name = name;
+        }
+
+        static Blob read(Parcel in)
+        {
+            Parcel spilled = ParcelledSpill.read(in);
+            if (spilled != null)
+            {
+                try
+                {
+                    return read(spilled);
+                } finally
+                {
+                    spilled.recycle();
+                }
+            }
+            return new Blob(in.createByteArray(), in.readString());
+        }
+
+        @Override
+        public int sizeOf()
+        {
+            return 4 + 4 + data.length + ParcelledSizes.sizeOf(name);
+        }
+
+        @Override
+        public int describeContents()
+        {
+            return ParcelledSpill.describeContents(this, THRESHOLD);
+        }
+
+        @Override
+        public void writeToParcel(Parcel dest, int flags)
+        {
+            if (ParcelledSpill.write(dest, this, flags, THRESHOLD))
+            {
+                return;
+            }
+            dest.writeByteArray(data);
+            dest.writeString(name);
+        }
+
+    }
+
+}
@@ -0,0 +1,286 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParcelledStreamTest
+{
+
+    private static final int HEADER = ParcelledStreamWriter.HEADER;
+
+    private static final class Quote
+    {
+
+        final String symbol;
+        final long time;
+        final double price;
+
+        Quote(String symbol, long time, double price)
+        {
+            this.symbol = symbol;
+            this.time = time;
+            this.price = price;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Quote))
+            {
+                return false;
+            }
+            Quote quote = (Quote) o;
+            return symbol.equals(quote.symbol) && time == quote.time && price == quote.price;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return symbol.hashCode();
+        }
+
+    }
+
+    /**
+     * Written like the {@code RECORDS} of a {@link ParcelledPortable} class of version 2, which
+     * added the price.
+     */
+    private static final ParcelledRecords<Quote> RECORDS = new ParcelledRecords<Quote>(2)
+    {
+        @Override
+        public void write(Quote value, ParcelledSink sink)
+        {
+            sink.writeString(value.symbol);
+            sink.writeLong(value.time);
+            sink.writeDouble(value.price);
+        }
+
+        @Override
+        public Quote read(ParcelledSource source, int version)
+        {
+            if (version > version())
+            {
+                throw new IllegalArgumentException("Version " + version + " is newer than " + version());
+            }
+            return new Quote(source.readString(), source.readLong(), version >= 2 ? source.readDouble() : 0);
+        }
+    };
+
+    private static List<Quote> quotes(int count)
+    {
+        List<Quote> quotes = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+        {
+            quotes.add(new Quote(i % 2 == 0 ? "ZEO" : "FLOW", 1_600_000_000_000L + i, i / 4d));
+        }
+        return quotes;
+    }
+
+    private static byte[] written(List<Quote> quotes, int frameSize, ParcelledCompressed.Codec codec) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ParcelledStreamWriter<Quote> writer = new ParcelledStreamWriter<>(Channels.newChannel(out), RECORDS,
+                frameSize, codec);
+        for (Quote quote : quotes)
+        {
+            writer.write(quote);
+        }
+        writer.close();
+        return out.toByteArray();
+    }
+
+    private static List<Quote> read(byte[] stream) throws IOException
+    {
+        ParcelledStreamReader<Quote> reader = new ParcelledStreamReader<>(
+                Channels.newChannel(new ByteArrayInputStream(stream)), RECORDS);
+        List<Quote> quotes = new ArrayList<>();
+        for (Quote quote = reader.read(); quote != null; quote = reader.read())
+        {
+            quotes.add(quote);
+        }
+        reader.close();
+        return quotes;
+    }
+
+    @Test
+    public void recordsRoundTripAcrossFrames() throws IOException
+    {
+        List<Quote> quotes = quotes(1000);
+        byte[] stream = written(quotes, 1024, null);
+        // about 30 bytes a record, so many frames
+        assertTrue(ByteBuffer.wrap(stream).getInt(0) < stream.length / 10);
+        assertEquals(quotes, read(stream));
+    }
+
+    @Test
+    public void deflatedFramesRoundTrip() throws IOException
+    {
+        List<Quote> quotes = quotes(5000);
+        for (ParcelledCompressed.Codec codec : ParcelledCompressed.Codec.values())
+        {
+            byte[] stream = written(quotes, 16 * 1024, codec);
+            ByteBuffer header = ByteBuffer.wrap(stream);
+            assertTrue("stored length below the length of the records", header.getInt(0) < header.getInt(4));
+            assertTrue(stream.length < written(quotes, 16 * 1024, null).length);
+            assertEquals(quotes, read(stream));
+        }
+    }
+
+    @Test
+    public void emptyStreamHasNoRecords() throws IOException
+    {
+        byte[] stream = written(new ArrayList<Quote>(), 1024, ParcelledCompressed.Codec.DEFLATE);
+        assertEquals(0, stream.length);
+        assertEquals(0, read(stream).size());
+    }
+
+    @Test
+    public void olderFramesAreReadWithTheirVersion() throws IOException
+    {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER + 4 + 3 + 8);
+        frame.position(HEADER);
+        frame.putInt(3).put("OLD".getBytes("UTF-8")).putLong(42L);
+        CRC32 crc = new CRC32();
+        crc.update(frame.array(), HEADER, frame.capacity() - HEADER);
+        frame.putInt(0, frame.capacity() - HEADER);
+        frame.putInt(4, frame.capacity() - HEADER);
+        frame.putInt(8, 1);
+        frame.putInt(12, 1);
+        frame.putInt(16, (int) crc.getValue());
+        assertEquals(Arrays.asList(new Quote("OLD", 42L, 0)), read(frame.array()));
+    }
+
+    @Test
+    public void corruptedPayloadIsRejected() throws IOException
+    {
+        byte[] stream = written(quotes(10), 1024, null);
+        stream[HEADER + 5] ^= 1;
+        try
+        {
+            read(stream);
+            fail("read a corrupted frame");
+        } catch (IOException e)
+        {
+            assertTrue(e.getMessage().contains("CRC"));
+        }
+    }
+
+    @Test
+    public void truncatedPayloadIsRejected() throws IOException
+    {
+        byte[] stream = written(quotes(10), 1024, null);
+        try
+        {
+            read(Arrays.copyOf(stream, stream.length - 1));
+            fail("read a truncated frame");
+        } catch (EOFException expected)
+        {
+        }
+    }
+
+    @Test
+    public void truncatedHeaderIsRejected() throws IOException
+    {
+        byte[] stream = written(quotes(10), 1024, null);
+        try
+        {
+            read(Arrays.copyOf(stream, HEADER - 1));
+            fail("read a truncated header");
+        } catch (EOFException expected)
+        {
+        }
+    }
+
+    @Test
+    public void corruptedHeaderIsRejected() throws IOException
+    {
+        byte[] stream = written(quotes(10), 1024, null);
+        ByteBuffer.wrap(stream).putInt(0, -1);
+        try
+        {
+            read(stream);
+            fail("read a corrupted header");
+        } catch (IOException e)
+        {
+            assertTrue(e.getMessage().contains("header"));
+        }
+    }
+
+    @Test
+    public void truncatedDeflatedFrameIsRejected() throws IOException
+    {
+        byte[] stream = written(quotes(1000), 64 * 1024, ParcelledCompressed.Codec.DEFLATE);
+        ByteBuffer header = ByteBuffer.wrap(stream);
+        // claims more records than the payload inflates to, with a valid checksum
+        header.putInt(4, header.getInt(4) + 1);
+        try
+        {
+            read(stream);
+            fail("read a truncated compressed frame");
+        } catch (IOException e)
+        {
+            assertTrue(e.getMessage().contains("Truncated"));
+        }
+    }
+
+    @Test
+    public void nullRecordIsRejected() throws IOException
+    {
+        ParcelledStreamWriter<Quote> writer = new ParcelledStreamWriter<>(
+                Channels.newChannel(new ByteArrayOutputStream()), RECORDS);
+        try
+        {
+            writer.write(null);
+            fail("wrote a null record");
+        } catch (NullPointerException expected)
+        {
+        } finally
+        {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void readerReturnsNullOnceDone() throws IOException
+    {
+        ParcelledStreamReader<Quote> reader = new ParcelledStreamReader<>(
+                Channels.newChannel(new ByteArrayInputStream(written(quotes(3), 1024, null))), RECORDS);
+        for (int i = 0; i < 3; i++)
+        {
+            reader.read();
+        }
+        assertNull(reader.read());
+        assertNull(reader.read());
+        reader.close();
+    }
+
+}
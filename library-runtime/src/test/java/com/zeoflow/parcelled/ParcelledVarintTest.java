@@ -0,0 +1,151 @@
+// Copyright 2021 ZeoFlow SRL
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.zeoflow.parcelled;
+
+import android.os.Parcel;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ParcelledVarintTest
+{
+
+    private static ParcelledVarintReader written(ParcelledVarintWriter writer)
+    {
+        Parcel parcel = Parcel.obtain();
+        writer.writeTo(parcel);
+        parcel.setDataPosition(0);
+        return new ParcelledVarintReader(parcel);
+    }
+
+    private static int encodedLength(ParcelledVarintWriter writer)
+    {
+        Parcel parcel = Parcel.obtain();
+        writer.writeTo(parcel);
+        parcel.setDataPosition(0);
+        return parcel.createByteArray().length;
+    }
+
+    @Test
+    public void intsRoundTrip()
+    {
+        int[] values = {0, 1, -1, 63, -64, 64, -65, 127, 128, 8191, 16384, -16385,
+                1 << 28, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        ParcelledVarintWriter writer = new ParcelledVarintWriter(1);
+        for (int value : values)
+        {
+            writer.writeInt(value);
+        }
+        ParcelledVarintReader reader = written(writer);
+        for (int value : values)
+        {
+            assertEquals(value, reader.readInt());
+        }
+    }
+
+    @Test
+    public void longsRoundTrip()
+    {
+        long[] values = {0L, 1L, -1L, 1L << 35, -(1L << 35), 1L << 62, Long.MAX_VALUE, Long.MIN_VALUE};
+        ParcelledVarintWriter writer = new ParcelledVarintWriter(1);
+        for (long value : values)
+        {
+            writer.writeLong(value);
+        }
+        ParcelledVarintReader reader = written(writer);
+        for (long value : values)
+        {
+            assertEquals(value, reader.readLong());
+        }
+    }
+
+    @Test
+    public void narrowTypesRoundTrip()
+    {
+        ParcelledVarintWriter writer = new ParcelledVarintWriter(4);
+        writer.writeByte(Byte.MIN_VALUE);
+        writer.writeByte(Byte.MAX_VALUE);
+        writer.writeShort(Short.MIN_VALUE);
+        writer.writeShort(Short.MAX_VALUE);
+        writer.writeChar('a');
+        writer.writeChar(Character.MAX_VALUE);
+        ParcelledVarintReader reader = written(writer);
+        assertEquals(Byte.MIN_VALUE, reader.readByte());
+        assertEquals(Byte.MAX_VALUE, reader.readByte());
+        assertEquals(Short.MIN_VALUE, reader.readShort());
+        assertEquals(Short.MAX_VALUE, reader.readShort());
+        assertEquals('a', reader.readChar());
+        assertEquals(Character.MAX_VALUE, reader.readChar());
+    }
+
+    @Test
+    public void smallMagnitudesTakeOneByte()
+    {
+        ParcelledVarintWriter writer = new ParcelledVarintWriter(1);
+        writer.writeInt(63);
+        writer.writeInt(-64);
+        writer.writeLong(-1L);
+        writer.writeChar((char) 127);
+        assertEquals(4, encodedLength(writer));
+    }
+
+    @Test
+    public void extremesTakeTheMaximumLength()
+    {
+        ParcelledVarintWriter ints = new ParcelledVarintWriter(1);
+        ints.writeInt(Integer.MIN_VALUE);
+        assertEquals(5, encodedLength(ints));
+
+        ParcelledVarintWriter longs = new ParcelledVarintWriter(1);
+        longs.writeLong(Long.MIN_VALUE);
+        assertEquals(10, encodedLength(longs));
+    }
+
+    @Test
+    public void arraysRoundTrip()
+    {
+        int[] ints = {3, -3, Integer.MAX_VALUE};
+        long[] longs = {Long.MIN_VALUE, 0L, 42L};
+        ParcelledVarintWriter writer = new ParcelledVarintWriter(1);
+        writer.writeIntArray(ints);
+        writer.writeIntArray(null);
+        writer.writeIntArray(new int[0]);
+        writer.writeLongArray(longs);
+        writer.writeLongArray(null);
+        writer.writeLongArray(new long[0]);
+        ParcelledVarintReader reader = written(writer);
+        assertArrayEquals(ints, reader.createIntArray());
+        assertNull(reader.createIntArray());
+        assertArrayEquals(new int[0], reader.createIntArray());
+        assertArrayEquals(longs, reader.createLongArray());
+        assertNull(reader.createLongArray());
+        assertArrayEquals(new long[0], reader.createLongArray());
+    }
+
+    @Test
+    public void emptyWriterRoundTrips()
+    {
+        Parcel parcel = Parcel.obtain();
+        new ParcelledVarintWriter(0).writeTo(parcel);
+        parcel.writeInt(7);
+        parcel.setDataPosition(0);
+        new ParcelledVarintReader(parcel);
+        assertEquals(7, parcel.readInt());
+    }
+
+}